@@ -0,0 +1,237 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author geoaldana
+ * This class decides which searches the server takes on when it is overloaded,
+ * so that under a peak some requests are turned away quickly instead of every
+ * request getting slow. While the queue of searches keeps emptying, a search
+ * may wait up to an interval for a thread. When the queue has not been empty
+ * for a whole interval, it is only adding latency and the server is
+ * overloaded, so a search may only wait up to the target. Searches that waited
+ * longer are shed when they reach a thread, and a new search is turned away as
+ * soon as it arrives if the searches ahead of it would take longer than that,
+ * estimated from the average time of a search. The server leaves this state as
+ * soon as the queue empties again.
+ */
+public class AdmissionControl {
+
+	/**
+	 * The default target of the time a search waits in milliseconds.
+	 */
+	public static final long DEFAULT_TARGET = 20;
+
+	/**
+	 * The default interval in milliseconds over which the waits are watched.
+	 */
+	public static final long DEFAULT_INTERVAL = 100;
+
+	/**
+	 * target of the time a search waits in nanoseconds
+	 */
+	private final long target;
+
+	/**
+	 * interval over which the waits are watched in nanoseconds
+	 */
+	private final long interval;
+
+	/**
+	 * Marks a queue that is empty in {@link #busy}.
+	 */
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	/**
+	 * when searches started waiting since the queue was last empty, or
+	 * {@link #EMPTY}
+	 */
+	private volatile long busy;
+
+	/**
+	 * average time of a search in nanoseconds, weighted towards recent searches
+	 */
+	private volatile double average;
+
+	/**
+	 * number of admitted searches
+	 */
+	private final LongAdder admitted;
+
+	/**
+	 * number of searches turned away when they arrived
+	 */
+	private final LongAdder rejected;
+
+	/**
+	 * number of admitted searches shed after waiting too long
+	 */
+	private final LongAdder shed;
+
+	/**
+	 * number of waits that were watched
+	 */
+	private final LongAdder waits;
+
+	/**
+	 * total of the waits in nanoseconds
+	 */
+	private final LongAdder waited;
+
+	/**
+	 * @param target the target of the time a search waits in milliseconds
+	 * @param interval the interval over which the waits are watched in milliseconds
+	 */
+	public AdmissionControl(long target, long interval) {
+		this.target = Math.max(0, target) * 1000000;
+		this.interval = Math.max(1, interval) * 1000000;
+		this.busy = EMPTY;
+		this.average = 0;
+		this.admitted = new LongAdder();
+		this.rejected = new LongAdder();
+		this.shed = new LongAdder();
+		this.waits = new LongAdder();
+		this.waited = new LongAdder();
+	}
+
+	/**
+	 * Initializes the control with the default target and interval.
+	 */
+	public AdmissionControl() {
+		this(DEFAULT_TARGET, DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * Decides whether a new search is admitted.
+	 *
+	 * @param queued the number of searches waiting for a thread
+	 * @param free whether a thread is free and no search is waiting
+	 * @param threads the number of search threads
+	 * @return whether the search is admitted
+	 */
+	public boolean admit(int queued, boolean free, int threads) {
+		if (free) {
+			emptied();
+		}
+		// a search that would wait longer than allowed is turned away before it waits
+		else if (queued * average / Math.max(1, threads) > allowed()) {
+			rejected.increment();
+			return false;
+		}
+		else if (busy == EMPTY) {
+			busy = System.nanoTime();
+		}
+		admitted.increment();
+		return true;
+	}
+
+	/**
+	 * Notes that the queue emptied, like when the last waiting search finished,
+	 * so an idle server is never taken to be overloaded.
+	 */
+	public void emptied() {
+		busy = EMPTY;
+	}
+
+	/**
+	 * @return the nanoseconds a search may wait for a thread
+	 */
+	private long allowed() {
+		return overloaded() ? target : interval;
+	}
+
+	/**
+	 * Counts a search that was turned away for another reason, like a full queue.
+	 */
+	public void reject() {
+		rejected.increment();
+	}
+
+	/**
+	 * Watches the wait of a search that is about to run and decides whether it is
+	 * shed instead.
+	 *
+	 * @param wait the nanoseconds the search waited for a thread
+	 * @return whether the search is shed
+	 */
+	public boolean shed(long wait) {
+		waits.increment();
+		waited.add(wait);
+		if (wait > allowed()) {
+			shed.increment();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Watches the time of a search that was answered.
+	 *
+	 * @param time the nanoseconds the search took
+	 */
+	public synchronized void served(long time) {
+		average = average == 0 ? time : average + (time - average) / 16;
+	}
+
+	/**
+	 * @return the average time of a search in milliseconds
+	 */
+	public double averageTime() {
+		return average / 1e6;
+	}
+
+	/**
+	 * @return whether the server is overloaded
+	 */
+	public boolean overloaded() {
+		long since = busy;
+		return since != EMPTY && System.nanoTime() - since > interval;
+	}
+
+	/**
+	 * @return the number of admitted searches
+	 */
+	public long admitted() {
+		return admitted.sum();
+	}
+
+	/**
+	 * @return the number of searches turned away when they arrived
+	 */
+	public long rejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 * @return the number of admitted searches shed after waiting too long
+	 */
+	public long shed() {
+		return shed.sum();
+	}
+
+	/**
+	 * @return the average wait of a search for a thread in milliseconds
+	 */
+	public double averageWait() {
+		long count = waits.sum();
+		return count == 0 ? 0 : waited.sum() / 1e6 / count;
+	}
+
+	/**
+	 * @return the target of the time a search waits in milliseconds
+	 */
+	public long target() {
+		return target / 1000000;
+	}
+
+	/**
+	 * @return the interval over which the waits are watched in milliseconds
+	 */
+	public long interval() {
+		return interval / 1000000;
+	}
+
+	@Override
+	public String toString() {
+		return "AdmissionControl with " + admitted() + " admitted, " + rejected() + " rejected and " + shed()
+				+ " shed searches" + (overloaded() ? ", overloaded" : "");
+	}
+}
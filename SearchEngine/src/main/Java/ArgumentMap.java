@@ -202,17 +202,14 @@ public class ArgumentMap {
 	 *         value if there is no valid mapping
 	 */
 	public int getInteger(String flag, int defaultValue) {
-		if (map.containsKey(flag)) {
-			try {
-				//tries to parse string into int
-				Integer.parseInt(map.get(flag));
-			}
-			//Exception that is called when not able to convert string to a number
-			catch(NumberFormatException e) {
-				return defaultValue;
-			}
+		try {
+			//tries to parse string into int
+			return Integer.parseInt(map.get(flag));
+		}
+		//Exception that is called when not able to convert string to a number or the flag is missing
+		catch(NumberFormatException e) {
+			return defaultValue;
 		}
-		return Integer.parseInt(map.get(flag));
 	}
 
 	@Override
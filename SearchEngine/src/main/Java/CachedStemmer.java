@@ -0,0 +1,170 @@
+import java.util.concurrent.atomic.LongAdder;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * @author geoaldana
+ * This is a stemmer that remembers the stems of the words it has seen. Most of
+ * the words in a text are the same few thousand words, so most words are
+ * looked up instead of stemmed again. The cache is a fixed size table where
+ * every word has one slot picked by its hash, and a new word replaces the word
+ * in its slot, so the memory used is bounded. Words are compared by their
+ * characters, so looking up a word from a reused buffer like
+ * {@link TextTokenizer#token()} does not create a string.
+ *
+ * Like {@link SnowballStemmer}, a cached stemmer is not thread-safe. Use
+ * {@link #get()} for a cached stemmer that belongs to the current thread.
+ *
+ * @see Stemmer
+ */
+public class CachedStemmer implements Stemmer {
+
+	/**
+	 * The default number of slots in the cache.
+	 */
+	public static final int DEFAULT_SIZE = 1 << 15;
+
+	/**
+	 * Whether the default stemmer algorithm is stemmed by {@link EnglishStemmer}
+	 * instead of {@link SnowballStemmer}
+	 */
+	private static volatile boolean english = false;
+
+	/**
+	 * Cached stemmer of every thread using the default stemmer algorithm
+	 */
+	private static final ThreadLocal<CachedStemmer> LOCAL = ThreadLocal
+			.withInitial(() -> new CachedStemmer(english && TextFileStemmer.DEFAULT == SnowballStemmer.ALGORITHM.ENGLISH
+					? new EnglishStemmer() : new SnowballStemmer(TextFileStemmer.DEFAULT), DEFAULT_SIZE));
+
+	/**
+	 * Number of words found in a cache, for every cached stemmer
+	 */
+	private static final LongAdder HITS = new LongAdder();
+
+	/**
+	 * Number of words that had to be stemmed, for every cached stemmer
+	 */
+	private static final LongAdder MISSES = new LongAdder();
+
+	/**
+	 * stemmer used for words that are not in the cache
+	 */
+	private final Stemmer stemmer;
+
+	/**
+	 * words in the cache by slot
+	 */
+	private final String[] words;
+
+	/**
+	 * stems of the words in the cache by slot
+	 */
+	private final String[] stems;
+
+	/**
+	 * hashes of the words in the cache by slot
+	 */
+	private final int[] hashes;
+
+	/**
+	 * used to find the slot of a hash
+	 */
+	private final int mask;
+
+	/**
+	 * @param stemmer used for words that are not in the cache
+	 * @param size number of slots in the cache, rounded up to a power of two
+	 */
+	public CachedStemmer(Stemmer stemmer, int size) {
+		int slots = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+		this.stemmer = stemmer;
+		this.words = new String[slots];
+		this.stems = new String[slots];
+		this.hashes = new int[slots];
+		this.mask = slots - 1;
+	}
+
+	/**
+	 * Returns the cached stemmer of the current thread, which uses the default
+	 * stemmer algorithm.
+	 *
+	 * @return the cached stemmer of the current thread
+	 *
+	 * @see TextFileStemmer#DEFAULT
+	 */
+	public static CachedStemmer get() {
+		return LOCAL.get();
+	}
+
+	/**
+	 * Chooses whether the default stemmer algorithm is stemmed by
+	 * {@link EnglishStemmer}, which returns the same stems without creating
+	 * objects, instead of {@link SnowballStemmer}. Only threads that have not
+	 * stemmed yet are affected, so it is chosen before anything is stemmed.
+	 *
+	 * @param english whether to use {@link EnglishStemmer}
+	 */
+	public static void useEnglishStemmer(boolean english) {
+		CachedStemmer.english = english;
+	}
+
+	/**
+	 * Returns the stem of the word. The stem is always a {@link String}, so
+	 * calling {@link Object#toString()} on it does not create a copy.
+	 *
+	 * @param word the word to stem
+	 * @return the stem of the word
+	 */
+	@Override
+	public String stem(CharSequence word) {
+		int hash = hash(word);
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		String cached = words[slot];
+		if (cached != null && hashes[slot] == hash && cached.contentEquals(word)) {
+			HITS.increment();
+			return stems[slot];
+		}
+
+		MISSES.increment();
+		String stem = stemmer.stem(word).toString();
+		words[slot] = word.toString();
+		stems[slot] = stem;
+		hashes[slot] = hash;
+		return stem;
+	}
+
+	/**
+	 * Number of words found in a cache so far, for every cached stemmer
+	 *
+	 * @return the number of cache hits
+	 */
+	public static long hits() {
+		return HITS.sum();
+	}
+
+	/**
+	 * Number of words that had to be stemmed so far, for every cached stemmer
+	 *
+	 * @return the number of cache misses
+	 */
+	public static long misses() {
+		return MISSES.sum();
+	}
+
+	/**
+	 * Returns the same hash as {@link String#hashCode()} of the word without
+	 * creating a string.
+	 *
+	 * @param word the word to hash
+	 * @return the hash of the word
+	 */
+	private static int hash(CharSequence word) {
+		int hash = 0;
+		for (int i = 0; i < word.length(); i++) {
+			hash = 31 * hash + word.charAt(i);
+		}
+		return hash;
+	}
+}
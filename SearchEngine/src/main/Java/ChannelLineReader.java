@@ -0,0 +1,267 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author geoaldana
+ * This is a reader that reads the lines of a part of a file the same way
+ * {@link java.io.BufferedReader#readLine()} does for a reader from
+ * {@link java.nio.file.Files#newBufferedReader(java.nio.file.Path)}, without
+ * creating a string for every line. The file is read from a {@link FileChannel}
+ * in blocks of a given size, and the UTF-8 bytes are decoded straight into a
+ * buffer that is reused for every line. Like a buffered reader, it throws an
+ * exception for bytes that are not valid UTF-8.
+ */
+public class ChannelLineReader {
+
+	/**
+	 * The default number of bytes read from the file at a time.
+	 */
+	public static final int DEFAULT_SIZE = 1 << 16;
+
+	/**
+	 * channel of the file, or {@code null} if the bytes are already in memory
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * position in the file of the next byte to read
+	 */
+	private long position;
+
+	/**
+	 * position in the file after the last byte to read
+	 */
+	private final long end;
+
+	/**
+	 * bytes read from the file that are not decoded yet
+	 */
+	private final ByteBuffer bytes;
+
+	/**
+	 * decoder that reports bytes that are not valid UTF-8
+	 */
+	private final CharsetDecoder decoder;
+
+	/**
+	 * characters decoded from the file
+	 */
+	private char[] chars;
+
+	/**
+	 * the decoded characters wrapped for the decoder
+	 */
+	private CharBuffer decoded;
+
+	/**
+	 * position in the characters of the start of the next line
+	 */
+	private int start;
+
+	/**
+	 * position in the characters after the last decoded character
+	 */
+	private int limit;
+
+	/**
+	 * whether every byte was read and decoded
+	 */
+	private boolean finished;
+
+	/**
+	 * whether the last line ended with a carriage return, so a line feed right
+	 * after it is part of the same line break
+	 */
+	private boolean skipLineFeed;
+
+	/**
+	 * the current line
+	 */
+	private final Line line;
+
+	/**
+	 * @param channel channel of the file
+	 * @param start position in the file of the first byte to read
+	 * @param end position in the file after the last byte to read
+	 * @param size number of bytes read from the file at a time
+	 */
+	public ChannelLineReader(FileChannel channel, long start, long end, int size) {
+		this.channel = channel;
+		this.position = start;
+		this.end = end;
+		this.bytes = ByteBuffer.allocate(Math.max(16, size));
+		this.bytes.flip();
+		this.decoder = StandardCharsets.UTF_8.newDecoder();
+		this.chars = new char[Math.max(16, size)];
+		this.decoded = CharBuffer.wrap(chars);
+		this.start = 0;
+		this.limit = 0;
+		this.finished = false;
+		this.skipLineFeed = false;
+		this.line = new Line();
+	}
+
+	/**
+	 * Reads the lines of bytes that are already in memory.
+	 *
+	 * @param data the UTF-8 bytes
+	 * @param length number of bytes to read
+	 */
+	public ChannelLineReader(byte[] data, int length) {
+		this.channel = null;
+		this.position = 0;
+		this.end = 0;
+		this.bytes = ByteBuffer.wrap(data, 0, length);
+		this.decoder = StandardCharsets.UTF_8.newDecoder();
+		// every byte decodes to at most one char, so the bytes are decoded at once
+		this.chars = new char[length + 2];
+		this.decoded = CharBuffer.wrap(chars);
+		this.start = 0;
+		this.limit = 0;
+		this.finished = false;
+		this.skipLineFeed = false;
+		this.line = new Line();
+	}
+
+	/**
+	 * Reads the next line, which ends at a line feed, a carriage return, or a
+	 * carriage return followed by a line feed. The line is reused, so it must be
+	 * copied (for example with {@link Object#toString()}) if it is needed after
+	 * the next call.
+	 *
+	 * @return the next line without the line break, or {@code null} if the end
+	 *         was reached
+	 * @throws IOException if an IO error occurs or the bytes are not valid UTF-8
+	 */
+	public CharSequence readLine() throws IOException {
+		if (skipLineFeed) {
+			if (start == limit && !finished) {
+				fill();
+			}
+			if (start < limit && chars[start] == '\n') {
+				start++;
+			}
+			skipLineFeed = false;
+		}
+
+		int i = start;
+		while (true) {
+			for (; i < limit; i++) {
+				char c = chars[i];
+				if (c == '\n' || c == '\r') {
+					line.end = i;
+					line.start = start;
+					start = i + 1;
+					skipLineFeed = c == '\r';
+					return line;
+				}
+			}
+			if (finished) {
+				if (start == limit) {
+					return null;
+				}
+				line.start = start;
+				line.end = limit;
+				start = limit;
+				return line;
+			}
+			i -= start;
+			fill();
+		}
+	}
+
+	/**
+	 * Moves the characters of the current line to the start of the buffer, or
+	 * grows the buffer if the line fills almost all of it, then reads and decodes
+	 * more bytes after them.
+	 *
+	 * @throws IOException if an IO error occurs or the bytes are not valid UTF-8
+	 */
+	private void fill() throws IOException {
+		int length = limit - start;
+		// a character outside the BMP takes two chars, so the decoder needs room for two
+		if (chars.length - length < 2) {
+			char[] grown = new char[chars.length * 2];
+			System.arraycopy(chars, start, grown, 0, length);
+			chars = grown;
+			decoded = CharBuffer.wrap(chars);
+		}
+		else {
+			System.arraycopy(chars, start, chars, 0, length);
+		}
+		start = 0;
+		limit = length;
+
+		bytes.compact();
+		int room = (int) Math.min(bytes.remaining(), end - position);
+		bytes.limit(bytes.position() + room);
+		boolean last = false;
+		while (bytes.hasRemaining()) {
+			int read = channel.read(bytes, position);
+			if (read < 0) {
+				// the file is shorter than expected
+				last = true;
+				break;
+			}
+			position += read;
+		}
+		bytes.flip();
+		last |= position >= end;
+
+		decoded.limit(chars.length).position(limit);
+		CoderResult result = decoder.decode(bytes, decoded, last);
+		if (result.isError()) {
+			result.throwException();
+		}
+		if (last && result.isUnderflow()) {
+			result = decoder.flush(decoded);
+			if (result.isError()) {
+				result.throwException();
+			}
+			finished = result.isUnderflow();
+		}
+		limit = decoded.position();
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is the current line as a view of the decoded characters.
+	 */
+	private class Line implements CharSequence {
+
+		/**
+		 * position in the characters of the start of the line
+		 */
+		private int start;
+
+		/**
+		 * position in the characters after the end of the line
+		 */
+		private int end;
+
+		@Override
+		public int length() {
+			return end - start;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return chars[start + index];
+		}
+
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			return new String(chars, start + from, to - from);
+		}
+
+		@Override
+		public String toString() {
+			return new String(chars, start, end - start);
+		}
+	}
+}
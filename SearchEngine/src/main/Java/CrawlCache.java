@@ -0,0 +1,296 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author geoaldana
+ * This is an on-disk cache of crawled pages. For every normalized URL it keeps
+ * the response validators (ETag and Last-Modified), a hash of the content, and
+ * the links, clean words and stems that were extracted from it. A recrawl can
+ * then send a conditional request and reuse the cached links, words and stems
+ * when the server answers "304 Not Modified" or sends back the same content,
+ * skipping the cleaning and stemming of that page.
+ */
+public class CrawlCache {
+
+	/**
+	 * The default file the cache is stored in.
+	 */
+	public static final Path DEFAULT = Path.of("crawl-cache.txt");
+
+	/**
+	 * HashMap that will store the cached pages by url
+	 */
+	private final HashMap<String, Page> pages;
+
+	/**
+	 * Initializes an empty cache.
+	 */
+	public CrawlCache() {
+		this.pages = new HashMap<>();
+	}
+
+	/**
+	 * Returns the cached page for the url if there is one.
+	 *
+	 * @param url the normalized url
+	 * @return the cached page or {@code null} if the url is not cached
+	 */
+	public synchronized Page get(String url) {
+		return pages.get(url);
+	}
+
+	/**
+	 * Adds or replaces the cached page for a url.
+	 *
+	 * @param url the normalized url
+	 * @param page the page that will be cached
+	 */
+	public synchronized void put(String url, Page page) {
+		pages.put(url, page);
+	}
+
+	/**
+	 * Number of pages in the cache
+	 *
+	 * @return the number of cached pages
+	 */
+	public synchronized int size() {
+		return pages.size();
+	}
+
+	/**
+	 * Returns the request headers for a conditional request of the url, which is
+	 * empty if the url is not cached or has no validators.
+	 *
+	 * @param url the normalized url
+	 * @return the "If-None-Match" and "If-Modified-Since" request headers
+	 */
+	public Map<String, String> conditionalHeaders(String url) {
+		Map<String, String> request = new LinkedHashMap<>();
+		Page page = get(url);
+		if (page != null) {
+			if (!page.etag.isEmpty()) {
+				request.put("If-None-Match", page.etag);
+			}
+			if (!page.lastModified.isEmpty()) {
+				request.put("If-Modified-Since", page.lastModified);
+			}
+		}
+		return request;
+	}
+
+	/**
+	 * Reads the cache from a file written by {@link #save(Path)}. Every line
+	 * holds one page as tab separated fields: url, ETag, Last-Modified, hash,
+	 * links, stems and words, where links, stems and words are separated by
+	 * spaces. Files written before the words were kept have no words field, and
+	 * their pages are loaded without words.
+	 *
+	 * @param path the file the cache is read from
+	 * @throws IOException if an IO error occurs
+	 */
+	public void load(Path path) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				if (fields.length != 6 && fields.length != 7) {
+					continue;
+				}
+				List<String> words = fields.length == 7 ? split(fields[6]) : null;
+				put(fields[0], new Page(fields[1], fields[2], fields[3], split(fields[4]), split(fields[5]), words));
+			}
+		}
+	}
+
+	/**
+	 * Writes the cache to a file that can be read back by {@link #load(Path)}.
+	 *
+	 * @param path the file the cache is written to
+	 * @throws IOException if an IO error occurs
+	 */
+	public synchronized void save(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			for (Map.Entry<String, Page> entry : pages.entrySet()) {
+				Page page = entry.getValue();
+				writer.write(entry.getKey());
+				writer.write('\t');
+				writer.write(page.etag);
+				writer.write('\t');
+				writer.write(page.lastModified);
+				writer.write('\t');
+				writer.write(page.hash);
+				writer.write('\t');
+				writer.write(String.join(" ", page.links));
+				writer.write('\t');
+				writer.write(String.join(" ", page.stems));
+				if (page.words != null) {
+					writer.write('\t');
+					writer.write(String.join(" ", page.words));
+				}
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Returns the SHA-256 hash of the content as a hex string.
+	 *
+	 * @param content the content to hash
+	 * @return the hash of the content
+	 */
+	public static String hash(String content) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] bytes = digest.digest(content.getBytes(StandardCharsets.UTF_8));
+			StringBuilder builder = new StringBuilder(bytes.length * 2);
+			for (byte b : bytes) {
+				builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+				builder.append(Character.forDigit(b & 0xF, 16));
+			}
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the first value of a response header, ignoring the case of the
+	 * header name.
+	 *
+	 * @param headers the response headers
+	 * @param name the header name
+	 * @return the first value of the header or an empty string if not present
+	 */
+	public static String header(Map<String, List<String>> headers, String name) {
+		for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+			if (name.equalsIgnoreCase(entry.getKey()) && !entry.getValue().isEmpty()) {
+				// tabs and newlines would break the cache file
+				return entry.getValue().get(0).replaceAll("[\t\r\n]", " ");
+			}
+		}
+		return "";
+	}
+
+	/**
+	 * Splits a space separated field of the cache file.
+	 *
+	 * @param field the field to split
+	 * @return the values in the field
+	 */
+	private static List<String> split(String field) {
+		return field.isEmpty() ? new ArrayList<>() : Arrays.asList(field.split(" "));
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a class that stores what is cached for a single page.
+	 */
+	public static class Page {
+
+		/**
+		 * ETag validator of the response or an empty string
+		 */
+		private final String etag;
+
+		/**
+		 * Last-Modified validator of the response or an empty string
+		 */
+		private final String lastModified;
+
+		/**
+		 * hash of the content
+		 */
+		private final String hash;
+
+		/**
+		 * normalized links found in the page in the order they were found
+		 */
+		private final List<String> links;
+
+		/**
+		 * stems found in the page in the order they were found
+		 */
+		private final List<String> stems;
+
+		/**
+		 * clean words of the page in the order they were found, or {@code null} if
+		 * the page was cached without them
+		 */
+		private final List<String> words;
+
+		/**
+		 * @param etag ETag validator of the response or an empty string
+		 * @param lastModified Last-Modified validator of the response or an empty string
+		 * @param hash hash of the content
+		 * @param links normalized links found in the page
+		 * @param stems stems found in the page
+		 * @param words clean words of the page, or {@code null} if not kept
+		 */
+		public Page(String etag, String lastModified, String hash, List<String> links, List<String> stems,
+				List<String> words) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.hash = hash;
+			this.links = links;
+			this.stems = stems;
+			this.words = words;
+		}
+
+		/**
+		 * @return the hash of the content
+		 */
+		public String getHash() {
+			return hash;
+		}
+
+		/**
+		 * @return the normalized links found in the page
+		 */
+		public List<String> getLinks() {
+			return links;
+		}
+
+		/**
+		 * @return the stems found in the page
+		 */
+		public List<String> getStems() {
+			return stems;
+		}
+
+		/**
+		 * @return the clean words of the page, one for every stem, or {@code null}
+		 *         if the page was cached without them
+		 */
+		public List<String> getWords() {
+			return words;
+		}
+
+		/**
+		 * Returns a copy of this page with the validators of a newer response, used
+		 * when the content did not change. Validators missing from the newer
+		 * response are kept from this page.
+		 *
+		 * @param etag ETag validator of the response or an empty string
+		 * @param lastModified Last-Modified validator of the response or an empty string
+		 * @return the page with the new validators
+		 */
+		public Page revalidate(String etag, String lastModified) {
+			return new Page(etag.isEmpty() ? this.etag : etag,
+					lastModified.isEmpty() ? this.lastModified : lastModified, hash, links, stems, words);
+		}
+	}
+}
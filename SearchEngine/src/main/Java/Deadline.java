@@ -0,0 +1,67 @@
+/**
+ * @author geoaldana
+ * This is the time a search has to answer. A search checks its deadline
+ * between the words it reads, and once the deadline has passed it stops and
+ * returns the results found so far, so one slow query can not hold a thread
+ * for long. A deadline that stopped a search stays expired, which tells the
+ * caller the results are partial.
+ */
+public class Deadline {
+
+	/**
+	 * the time of the deadline in nanoseconds
+	 */
+	private final long end;
+
+	/**
+	 * whether a search stopped because of the deadline
+	 */
+	private volatile boolean expired;
+
+	/**
+	 * @param milliseconds the time from now to the deadline
+	 */
+	public Deadline(long milliseconds) {
+		this.end = System.nanoTime() + Math.max(0, milliseconds) * 1000000;
+		this.expired = false;
+	}
+
+	/**
+	 * Checks whether the deadline has passed, which marks it expired.
+	 *
+	 * @return whether the deadline has passed
+	 */
+	public boolean passed() {
+		if (!expired && end - System.nanoTime() <= 0) {
+			expired = true;
+		}
+		return expired;
+	}
+
+	/**
+	 * @return whether a search stopped because of the deadline
+	 */
+	public boolean expired() {
+		return expired;
+	}
+
+	/**
+	 * Marks the deadline expired, like when the request of a search timed out or
+	 * its connection is gone.
+	 */
+	public void expire() {
+		expired = true;
+	}
+
+	/**
+	 * @return the milliseconds left until the deadline, or 0 if it has passed
+	 */
+	public long remaining() {
+		return Math.max(0, (end - System.nanoTime()) / 1000000);
+	}
+
+	@Override
+	public String toString() {
+		return expired ? "Deadline expired" : "Deadline in " + remaining() + " ms";
+	}
+}
@@ -0,0 +1,427 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * @author geoaldana
+ * This is an inverted index that keeps its positions in a file instead of in
+ * memory. Only the sorted words with the place of their positions in the file
+ * and the word counts of every location are kept in memory. Searching reads
+ * the positions of the matching words from the file, and writing the index as
+ * JSON streams it from the file one word at a time, so both give the same
+ * results as an {@link InvertedIndex} built from the same files. It shares the
+ * methods for writing, counts and searching with that index, but only ever
+ * gets its words from {@link #write(String, Map)}.
+ *
+ * The file is written once, one word at a time in sorted order, and can only be
+ * read after {@link #finish()}. Every word is stored as its length and UTF-8
+ * bytes followed by the number of locations, and every location as its name,
+ * the number of positions and the positions.
+ */
+public class DiskInvertedIndex implements InvertedIndexInterface {
+
+	/**
+	 * the file the positions are stored in
+	 */
+	private final Path file;
+
+	/**
+	 * output of the file while it is written
+	 */
+	private DataOutputStream output;
+
+	/**
+	 * number of bytes written to the file
+	 */
+	private long written;
+
+	/**
+	 * the words in sorted order
+	 */
+	private final ArrayList<String> words;
+
+	/**
+	 * place in the file where every word starts, followed by the size of the file
+	 */
+	private long[] offsets;
+
+	/**
+	 * channel of the file after it is written
+	 */
+	private FileChannel channel;
+
+	/**
+	 * word counts of every location
+	 */
+	private final TreeMap<String, Integer> counts;
+
+	/**
+	 * @param file the file the positions are stored in
+	 * @throws IOException if an IO error occurs
+	 */
+	public DiskInvertedIndex(Path file) throws IOException {
+		this.file = file;
+		this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+		this.written = 0;
+		this.words = new ArrayList<>();
+		this.offsets = new long[16];
+		this.counts = new TreeMap<>();
+	}
+
+	/**
+	 * Adds the next word and its positions to the file. Words have to be added in
+	 * sorted order.
+	 *
+	 * @param word the word
+	 * @param postings the positions of the word by location
+	 * @throws IOException if an IO error occurs
+	 */
+	public synchronized void write(String word, Map<String, int[]> postings) throws IOException {
+		if (words.size() + 1 >= offsets.length) {
+			offsets = Arrays.copyOf(offsets, offsets.length * 2);
+		}
+		offsets[words.size()] = written;
+		words.add(word);
+		written += write(output, word, postings);
+	}
+
+	/**
+	 * Sets the word count of a location.
+	 *
+	 * @param location the location
+	 * @param count number of words in the location
+	 */
+	public synchronized void count(String location, int count) {
+		counts.put(location, Math.max(counts.getOrDefault(location, 0), count));
+	}
+
+	/**
+	 * Closes the file for writing and opens it for reading.
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	public synchronized void finish() throws IOException {
+		output.close();
+		offsets[words.size()] = written;
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+	}
+
+	/**
+	 * Writes a word and its positions.
+	 *
+	 * @param out where to write
+	 * @param word the word
+	 * @param postings the positions of the word by location
+	 * @return the number of bytes written
+	 * @throws IOException if an IO error occurs
+	 */
+	public static long write(DataOutput out, String word, Map<String, int[]> postings) throws IOException {
+		long bytes = writeString(out, word) + Integer.BYTES;
+		out.writeInt(postings.size());
+		for (Map.Entry<String, int[]> entry : postings.entrySet()) {
+			bytes += writeString(out, entry.getKey()) + Integer.BYTES * (1 + entry.getValue().length);
+			out.writeInt(entry.getValue().length);
+			for (int position : entry.getValue()) {
+				out.writeInt(position);
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Reads the positions written after a word by
+	 * {@link #write(DataOutput, String, Map)}.
+	 *
+	 * @param in where to read
+	 * @return the positions of the word by location
+	 * @throws IOException if an IO error occurs
+	 */
+	public static TreeMap<String, int[]> readPostings(DataInput in) throws IOException {
+		TreeMap<String, int[]> postings = new TreeMap<>();
+		int locations = in.readInt();
+		for (int i = 0; i < locations; i++) {
+			String location = readString(in);
+			int[] positions = new int[in.readInt()];
+			for (int j = 0; j < positions.length; j++) {
+				positions[j] = in.readInt();
+			}
+			postings.put(location, positions);
+		}
+		return postings;
+	}
+
+	/**
+	 * Writes a string as its length and UTF-8 bytes, which unlike
+	 * {@link DataOutput#writeUTF(String)} has no limit on the length.
+	 *
+	 * @param out where to write
+	 * @param text the string
+	 * @return the number of bytes written
+	 * @throws IOException if an IO error occurs
+	 */
+	public static int writeString(DataOutput out, String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+		return Integer.BYTES + bytes.length;
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString(DataOutput, String)}.
+	 *
+	 * @param in where to read
+	 * @return the string
+	 * @throws IOException if an IO error occurs
+	 */
+	public static String readString(DataInput in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads the positions of the word at an index of the sorted words.
+	 *
+	 * @param index the index of the word
+	 * @return the positions of the word by location
+	 */
+	private TreeMap<String, int[]> postings(int index) {
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(offsets[index + 1] - offsets[index]));
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, offsets[index] + buffer.position()) < 0) {
+					throw new IOException("Unexpected end of " + file);
+				}
+			}
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array()));
+			readString(in);
+			return readPostings(in);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Finds a word in the sorted words.
+	 *
+	 * @param word the word
+	 * @return the index of the word, or where it would be inserted as a negative
+	 *         number minus one
+	 */
+	private int find(String word) {
+		return Collections.binarySearch(words, word);
+	}
+
+	/**
+	 * Adds the matches of a word to the search results.
+	 *
+	 * @param index the index of the word
+	 * @param results search results
+	 * @param lookup to determine if search result is already in map
+	 */
+	private void resultHandler(int index, ArrayList<InvertedIndex.SearchResult> results,
+			HashMap<String, InvertedIndex.SearchResult> lookup) {
+		for (Map.Entry<String, int[]> entry : postings(index).entrySet()) {
+			InvertedIndex.SearchResult result = lookup.get(entry.getKey());
+			if (result == null) {
+				result = new InvertedIndex.SearchResult(entry.getKey(), counts.get(entry.getKey()));
+				results.add(result);
+				lookup.put(entry.getKey(), result);
+			}
+			result.updateResults(entry.getValue().length);
+		}
+	}
+
+	@Override
+	public ArrayList<InvertedIndex.SearchResult> exactSearch(Collection<String> queries, Deadline deadline) {
+		HashMap<String, InvertedIndex.SearchResult> lookup = new HashMap<>();
+		ArrayList<InvertedIndex.SearchResult> results = new ArrayList<>();
+		for (String queryKey : queries) {
+			// the results found so far are returned once the deadline passes
+			if (deadline != null && deadline.passed()) {
+				break;
+			}
+			int index = find(queryKey);
+			if (index >= 0) {
+				resultHandler(index, results, lookup);
+			}
+		}
+		Collections.sort(results);
+		return results;
+	}
+
+	@Override
+	public ArrayList<InvertedIndex.SearchResult> partialSearch(Collection<String> queries, Deadline deadline) {
+		HashMap<String, InvertedIndex.SearchResult> lookup = new HashMap<>();
+		ArrayList<InvertedIndex.SearchResult> results = new ArrayList<>();
+		for (String queryKey : queries) {
+			int index = find(queryKey);
+			for (int i = index >= 0 ? index : -index - 1; i < words.size() && words.get(i).startsWith(queryKey); i++) {
+				// the results found so far are returned once the deadline passes
+				if (deadline != null && deadline.passed()) {
+					break;
+				}
+				resultHandler(i, results, lookup);
+			}
+		}
+		Collections.sort(results);
+		return results;
+	}
+
+	@Override
+	public ArrayList<InvertedIndex.SearchResult> fuzzySearch(Collection<String> queries, Deadline deadline) {
+		HashMap<String, InvertedIndex.SearchResult> lookup = new HashMap<>();
+		ArrayList<InvertedIndex.SearchResult> results = new ArrayList<>();
+		for (String queryKey : queries) {
+			// the results found so far are returned once the deadline passes
+			if (deadline != null && deadline.passed()) {
+				break;
+			}
+			LevenshteinAutomaton automaton = new LevenshteinAutomaton(queryKey, LevenshteinAutomaton.distance(queryKey));
+			// running out of words ends the intersection when the deadline passes
+			for (String word : automaton.intersect(w -> deadline != null && deadline.passed() ? null : ceiling(w))) {
+				resultHandler(find(word), results, lookup);
+			}
+		}
+		Collections.sort(results);
+		return results;
+	}
+
+	/**
+	 * Returns the smallest word that is greater than or equal to a string.
+	 *
+	 * @param string the string
+	 * @return the word or {@code null} if there is none
+	 */
+	private String ceiling(String string) {
+		int index = find(string);
+		index = index >= 0 ? index : -index - 1;
+		return index < words.size() ? words.get(index) : null;
+	}
+
+	/**
+	 * Writes the index in the same pretty JSON format as
+	 * {@link SimpleJsonWriter#asInverted(TreeMap, Path)}, reading one word at a
+	 * time from the file.
+	 */
+	@Override
+	public void writeFile(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			writer.write("{");
+			for (int i = 0; i < words.size(); i++) {
+				writer.write(i == 0 ? "\n" : ",\n");
+				SimpleJsonWriter.indentAndQuote(words.get(i), writer, 0);
+				writer.write(": ");
+				TreeMap<String, ArrayList<Integer>> locations = new TreeMap<>();
+				for (Map.Entry<String, int[]> entry : postings(i).entrySet()) {
+					ArrayList<Integer> positions = new ArrayList<>(entry.getValue().length);
+					for (int position : entry.getValue()) {
+						positions.add(position);
+					}
+					locations.put(entry.getKey(), positions);
+				}
+				SimpleJsonWriter.asNestedArray(locations, writer, 1);
+			}
+			SimpleJsonWriter.indent("\n}", writer, 0);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	@Override
+	public void countsWriter(Path path) throws IOException {
+		SimpleJsonWriter.asObject(counts, path);
+	}
+
+	@Override
+	public int wordCount(String location) {
+		return counts.get(location);
+	}
+
+	@Override
+	public boolean contains(String word) {
+		return find(word) >= 0;
+	}
+
+	@Override
+	public boolean contains(String word, String location) {
+		return getLocations(word).contains(location);
+	}
+
+	@Override
+	public boolean contains(String word, String location, int position) {
+		return getPositions(word, location).contains(position);
+	}
+
+	@Override
+	public int words() {
+		return words.size();
+	}
+
+	@Override
+	public int paths(String word) {
+		return getLocations(word).size();
+	}
+
+	@Override
+	public int positions(String word, String path) {
+		return getPositions(word, path).size();
+	}
+
+	@Override
+	public Set<String> getWords() {
+		return Collections.unmodifiableSet(new TreeSet<>(words));
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		int index = find(word);
+		if (index < 0) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(postings(index).keySet());
+	}
+
+	@Override
+	public Set<Integer> getPositions(String word, String location) {
+		int index = find(word);
+		if (index < 0) {
+			return Collections.emptySet();
+		}
+		int[] positions = postings(index).get(location);
+		if (positions == null) {
+			return Collections.emptySet();
+		}
+		TreeSet<Integer> set = new TreeSet<>();
+		for (int position : positions) {
+			set.add(position);
+		}
+		return Collections.unmodifiableSet(set);
+	}
+
+	@Override
+	public String toString() {
+		return "DiskInvertedIndex " + file + " with " + words.size() + " words";
+	}
+}
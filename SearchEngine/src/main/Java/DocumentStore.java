@@ -0,0 +1,478 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * @author geoaldana
+ * This is a store of the clean words of the indexed documents, used to show
+ * snippets of the results. Every document gets an id and its words are kept in
+ * small blocks that are compressed separately, so a snippet only has to
+ * decompress the one or two blocks around its positions. Words are numbered
+ * from 1 like the positions of the index.
+ */
+public class DocumentStore {
+
+	/**
+	 * The number of words in a block.
+	 */
+	public static final int BLOCK = 128;
+
+	/**
+	 * The default number of words in a snippet.
+	 */
+	public static final int DEFAULT_WIDTH = 30;
+
+	/**
+	 * the documents by id
+	 */
+	private final ArrayList<Document> documents;
+
+	/**
+	 * the ids by location
+	 */
+	private final HashMap<String, Integer> ids;
+
+	/**
+	 * ids of removed documents that are given to the next new documents
+	 */
+	private final ArrayDeque<Integer> free;
+
+	/**
+	 * Initializes an empty store.
+	 */
+	public DocumentStore() {
+		this.documents = new ArrayList<>();
+		this.ids = new HashMap<>();
+		this.free = new ArrayDeque<>();
+	}
+
+	/**
+	 * @return a writer for the words of a document or of one part of it
+	 */
+	public Writer writer() {
+		return new Writer();
+	}
+
+	/**
+	 * Stores the words of a document, replacing the words stored before under the
+	 * same location.
+	 *
+	 * @param location the location of the document
+	 * @param parts the words of the document, in order
+	 * @return the id of the document
+	 */
+	public int put(String location, List<Text> parts) {
+		ArrayList<byte[]> blocks = new ArrayList<>();
+		ArrayList<Integer> starts = new ArrayList<>();
+		int words = 0;
+		for (Text part : parts) {
+			for (int i = 0; i < part.blocks.length; i++) {
+				blocks.add(part.blocks[i]);
+				starts.add(words + part.starts[i]);
+			}
+			words += part.words;
+		}
+		int[] positions = new int[starts.size()];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = starts.get(i);
+		}
+		Document document = new Document(blocks.toArray(new byte[0][]), positions, words);
+
+		synchronized (documents) {
+			Integer id = ids.get(location);
+			if (id == null && !free.isEmpty()) {
+				id = free.poll();
+				documents.set(id, document);
+				ids.put(location, id);
+			}
+			else if (id == null) {
+				id = documents.size();
+				documents.add(document);
+				ids.put(location, id);
+			}
+			else {
+				documents.set(id, document);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * Removes the words of a document, like a file that was deleted. Its id is
+	 * given to a later document.
+	 *
+	 * @param location the location of the document
+	 */
+	public void remove(String location) {
+		synchronized (documents) {
+			Integer id = ids.remove(location);
+			if (id != null) {
+				documents.set(id, null);
+				free.add(id);
+			}
+		}
+	}
+
+	/**
+	 * Stores the words of a document.
+	 *
+	 * @param location the location of the document
+	 * @param words the words of the document, in order
+	 * @return the id of the document
+	 */
+	public int put(String location, Iterable<? extends CharSequence> words) {
+		Writer writer = writer();
+		for (CharSequence word : words) {
+			writer.add(word);
+		}
+		return put(location, List.of(writer.finish()));
+	}
+
+	/**
+	 * Returns the id of a document.
+	 *
+	 * @param location the location of the document
+	 * @return the id or -1 if the document is not stored
+	 */
+	public int id(String location) {
+		synchronized (documents) {
+			Integer id = ids.get(location);
+			return id == null ? -1 : id;
+		}
+	}
+
+	/**
+	 * @return the number of stored documents
+	 */
+	public int size() {
+		synchronized (documents) {
+			return ids.size();
+		}
+	}
+
+	/**
+	 * Returns the words of a document between two positions.
+	 *
+	 * @param id the id of the document
+	 * @param from the first position
+	 * @param to the position after the last
+	 * @return the words, fewer if the document ends before the last position, or
+	 *         none if the document was removed
+	 */
+	public List<String> words(int id, int from, int to) {
+		Document document;
+		synchronized (documents) {
+			document = documents.get(id);
+		}
+		return document == null ? List.of() : words(document, from, to);
+	}
+
+	/**
+	 * Returns the words of a document between two positions.
+	 *
+	 * @param document the document
+	 * @param from the first position
+	 * @param to the position after the last
+	 * @return the words, fewer if the document ends before the last position
+	 */
+	private static List<String> words(Document document, int from, int to) {
+		from = Math.max(1, from);
+		to = Math.min(document.words + 1, to);
+		ArrayList<String> words = new ArrayList<>();
+		if (from >= to) {
+			return words;
+		}
+		int block = Arrays.binarySearch(document.starts, from);
+		block = block >= 0 ? block : -block - 2;
+		for (; block < document.blocks.length && document.starts[block] < to; block++) {
+			String[] text = decompress(document.blocks[block]);
+			int start = document.starts[block];
+			for (int i = Math.max(0, from - start); i < text.length && start + i < to; i++) {
+				words.add(text[i]);
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Returns a snippet of a document around the positions of the matched words.
+	 * The snippet starts a little before the window with the most matches, and
+	 * the matched words are put between the given strings, like {@code <b>} and
+	 * {@code </b>}. The words are clean, so they never have to be escaped.
+	 *
+	 * @param location the location of the document
+	 * @param positions the positions of the matched words
+	 * @param width the number of words in the snippet
+	 * @param before put before every matched word
+	 * @param after put after every matched word
+	 * @return the snippet, or an empty string if the document is not stored
+	 */
+	public String snippet(String location, SortedSet<Integer> positions, int width, String before, String after) {
+		Document document;
+		synchronized (documents) {
+			Integer id = ids.get(location);
+			if (id == null) {
+				return "";
+			}
+			document = documents.get(id);
+		}
+		int from = 1;
+		if (!positions.isEmpty()) {
+			// the window with the most matches, found by moving its end over the positions
+			Integer[] sorted = positions.toArray(new Integer[0]);
+			int best = 0;
+			int most = 0;
+			for (int start = 0, end = 0; end < sorted.length; end++) {
+				while (sorted[end] - sorted[start] >= width) {
+					start++;
+				}
+				if (end - start + 1 > most) {
+					most = end - start + 1;
+					best = sorted[start];
+				}
+			}
+			from = Math.max(1, best - width / 5);
+		}
+
+		List<String> words = words(document, from, from + width);
+		StringBuilder snippet = new StringBuilder();
+		if (from > 1) {
+			snippet.append("... ");
+		}
+		for (int i = 0; i < words.size(); i++) {
+			if (i > 0) {
+				snippet.append(' ');
+			}
+			boolean matched = positions.contains(from + i);
+			snippet.append(matched ? before : "").append(words.get(i)).append(matched ? after : "");
+		}
+		if (from + words.size() <= document.words) {
+			snippet.append(" ...");
+		}
+		return snippet.toString();
+	}
+
+	/**
+	 * Decompresses the words of a block.
+	 *
+	 * @param block the compressed block
+	 * @return the words of the block
+	 */
+	private static String[] decompress(byte[] block) {
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(block);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(block.length * 3);
+			byte[] buffer = new byte[4096];
+			while (!inflater.finished()) {
+				int count = inflater.inflate(buffer);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				bytes.write(buffer, 0, count);
+			}
+			// blocks are never empty, and empty words keep their positions
+			return bytes.toString(StandardCharsets.UTF_8).split(" ", -1);
+		} catch (DataFormatException e) {
+			// blocks are only written by this class
+			throw new IllegalStateException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a class that stores the compressed blocks of a document.
+	 */
+	private static class Document {
+
+		/**
+		 * the compressed blocks
+		 */
+		private final byte[][] blocks;
+
+		/**
+		 * the position of the first word of every block
+		 */
+		private final int[] starts;
+
+		/**
+		 * the number of words
+		 */
+		private final int words;
+
+		/**
+		 * @param blocks the compressed blocks
+		 * @param starts the position of the first word of every block
+		 * @param words the number of words
+		 */
+		public Document(byte[][] blocks, int[] starts, int words) {
+			this.blocks = blocks;
+			this.starts = starts;
+			this.words = words;
+		}
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a class that stores the compressed words of a document or of one
+	 * part of it, with positions starting from 1.
+	 */
+	public static class Text {
+
+		/**
+		 * the compressed blocks
+		 */
+		private final byte[][] blocks;
+
+		/**
+		 * the position of the first word of every block
+		 */
+		private final int[] starts;
+
+		/**
+		 * the number of words
+		 */
+		private final int words;
+
+		/**
+		 * @param blocks the compressed blocks
+		 * @param starts the position of the first word of every block
+		 * @param words the number of words
+		 */
+		private Text(byte[][] blocks, int[] starts, int words) {
+			this.blocks = blocks;
+			this.starts = starts;
+			this.words = words;
+		}
+
+		/**
+		 * @return the number of words
+		 */
+		public int words() {
+			return words;
+		}
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a class that compresses words a block at a time as they are read.
+	 * A writer is not thread-safe, so every thread needs its own.
+	 */
+	public static class Writer {
+
+		/**
+		 * the compressor, at its fastest level
+		 */
+		private final Deflater deflater;
+
+		/**
+		 * the words of the block being written
+		 */
+		private final StringBuilder block;
+
+		/**
+		 * number of words in the block being written
+		 */
+		private int count;
+
+		/**
+		 * the compressed blocks
+		 */
+		private final ArrayList<byte[]> blocks;
+
+		/**
+		 * number of words written
+		 */
+		private int words;
+
+		/**
+		 * Initializes an empty writer.
+		 */
+		private Writer() {
+			this.deflater = new Deflater(Deflater.BEST_SPEED, true);
+			this.block = new StringBuilder();
+			this.count = 0;
+			this.blocks = new ArrayList<>();
+			this.words = 0;
+		}
+
+		/**
+		 * Adds the next word.
+		 *
+		 * @param word the word
+		 */
+		public void add(CharSequence word) {
+			if (count > 0) {
+				block.append(' ');
+			}
+			block.append(word);
+			count++;
+			words++;
+			if (count == BLOCK) {
+				flush();
+			}
+		}
+
+		/**
+		 * Compresses the block being written.
+		 */
+		private void flush() {
+			if (count == 0) {
+				return;
+			}
+			deflater.reset();
+			deflater.setInput(block.toString().getBytes(StandardCharsets.UTF_8));
+			deflater.finish();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(block.length() / 2 + 16);
+			byte[] buffer = new byte[4096];
+			while (!deflater.finished()) {
+				bytes.write(buffer, 0, deflater.deflate(buffer));
+			}
+			blocks.add(bytes.toByteArray());
+			block.setLength(0);
+			count = 0;
+		}
+
+		/**
+		 * Compresses the last block and returns the words, after which the writer
+		 * can not be used.
+		 *
+		 * @return the compressed words
+		 */
+		public Text finish() {
+			flush();
+			deflater.end();
+			int[] starts = new int[blocks.size()];
+			for (int i = 0; i < starts.length; i++) {
+				starts[i] = 1 + i * BLOCK;
+			}
+			return new Text(blocks.toArray(new byte[0][]), starts, words);
+		}
+	}
+
+	/**
+	 * Returns all the words of a document.
+	 *
+	 * @param location the location of the document
+	 * @return the words or an empty list if the document is not stored
+	 */
+	public List<String> words(String location) {
+		int id = id(location);
+		return id < 0 ? List.of() : words(id, 1, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public String toString() {
+		return "DocumentStore with " + size() + " documents";
+	}
+}
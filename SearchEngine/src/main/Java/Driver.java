@@ -1,3 +1,4 @@
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 /**
@@ -14,17 +15,34 @@ public class Driver {
 	 * @param args flag/value pairs used to start this program
 	 */
 	public static void main(String[] args) {
-		InvertedIndex data = null;
+		InvertedIndexInterface data = null;
+		// the index in memory, which unlike an index on disk can be updated
+		InvertedIndex memoryIndex = null;
 		InvertedIndexBuilder builder = null;
 		ArgumentMap argumentMap = new ArgumentMap(args);
 		QueryBuilderInterface queryMap = null;
 		WorkQueue workQueue = null;
 		SearchEngineServer Server = null;
+		ThreadSafeInvertedIndex threadSafeIndex = null;
+		IndexWatcher watcher = null;
+		DocumentStore documents = null;
+
+		// stem without creating objects, which gives the same stems as the snowball stemmer
+		CachedStemmer.useEnglishStemmer(argumentMap.hasFlag("-englishstemmer"));
+
+		// number of bytes read from a file at a time when building from a path
+		int readSize = argumentMap.getInteger("-readsize", ChannelLineReader.DEFAULT_SIZE);
+		if (readSize <= 0) {
+			readSize = ChannelLineReader.DEFAULT_SIZE;
+		}
 
 		int threads;
 		if (argumentMap.hasFlag("-threads")) {
-			ThreadSafeInvertedIndex threadSafeIndex = new ThreadSafeInvertedIndex();
+			threadSafeIndex = new ThreadSafeInvertedIndex();
+			memoryIndex = threadSafeIndex;
 			data = threadSafeIndex;
+			// only a served index suggests the words that were read, so only then are they kept
+			threadSafeIndex.recordForms(argumentMap.hasFlag("-server"));
 			try {
 				threads = Integer.parseInt(argumentMap.getString("-threads", "5"));
 			} catch (NumberFormatException e) {
@@ -34,7 +52,29 @@ public class Driver {
 				threads = 5;
 			}
 			workQueue = new WorkQueue(threads);
-			builder = new MultiThreadedInvertedIndexBuilder(threadSafeIndex, workQueue);
+			// files larger than a chunk are split and read by several threads
+			int chunk = argumentMap.getInteger("-chunk", MultiThreadedInvertedIndexBuilder.DEFAULT_CHUNK);
+			if (chunk <= 0) {
+				chunk = MultiThreadedInvertedIndexBuilder.DEFAULT_CHUNK;
+			}
+			// keep the words of the documents to show snippets of the results; with
+			// -incremental the files loaded from the snapshot of the last build have no
+			// words kept, so only the files read again have snippets
+			if (argumentMap.hasFlag("-snippets")) {
+				documents = new DocumentStore();
+			}
+			builder = new MultiThreadedInvertedIndexBuilder(threadSafeIndex, workQueue, chunk, readSize, documents);
+			// build as a pipeline of stages with their own threads, like -pipeline 2,6,4,4,1
+			if (argumentMap.hasFlag("-pipeline") && documents != null) {
+				// the pipeline does not keep the words of the documents
+				System.out.println("The -pipeline flag is ignored with -snippets, building with -threads instead");
+			}
+			else if (argumentMap.hasFlag("-pipeline")) {
+				int[] stages = PipelineInvertedIndexBuilder.threads(argumentMap.getString("-pipeline"), threads);
+				// the work of every stage is printed with -pipeline-report
+				builder = new PipelineInvertedIndexBuilder(threadSafeIndex, stages, PipelineInvertedIndexBuilder.DEFAULT_BLOCK,
+						argumentMap.hasFlag("-pipeline-report"));
+			}
 			queryMap = new MultiThreadedQueryBuilder(threadSafeIndex, workQueue);
 
 			//implement other flags here - same concept as threads
@@ -58,35 +98,167 @@ public class Driver {
 						max = 1;
 					}
 				}
-				WebCrawler crawler = new WebCrawler(workQueue, data, max);
+				// per host limits for the crawl, by default a host may use every thread
+				int perHost = argumentMap.getInteger("-hostthreads", threads);
+				if (perHost <= 0) {
+					perHost = threads;
+				}
+				int delay = argumentMap.getInteger("-hostdelay", (int) HostScheduler.DEFAULT_DELAY);
+				HostScheduler scheduler = new HostScheduler(workQueue, perHost, delay);
+				// reuse pages from previous crawls if a cache is given
+				CrawlCache cache = null;
+				Path cachePath = null;
+				if (argumentMap.hasFlag("-cache")) {
+					cache = new CrawlCache();
+					cachePath = argumentMap.getPath("-cache", CrawlCache.DEFAULT);
+					if (Files.exists(cachePath)) {
+						try {
+							cache.load(cachePath);
+						} catch (Exception e) {
+							System.out.println("Unable to read the crawl cache: " + cachePath);
+						}
+					}
+				}
+				// skip pages that are near-duplicates of pages already indexed
+				SimHashDetector detector = null;
+				if (argumentMap.hasFlag("-dedup")) {
+					detector = new SimHashDetector(argumentMap.getInteger("-dedup", SimHashDetector.DEFAULT_DISTANCE));
+				}
+				WebCrawler crawler = new WebCrawler(scheduler, threadSafeIndex, max, cache, detector, documents);
+				// an index that will be served is published empty, so its suggestions follow the crawl
+				if (argumentMap.hasFlag("-server")) {
+					threadSafeIndex.publish();
+				}
 				crawler.buildWebCrawler(seed);
+				if (cache != null) {
+					try {
+						cache.save(cachePath);
+					} catch (Exception e) {
+						System.out.println("Unable to write the crawl cache: " + cachePath);
+					}
+				}
 			}
 
+			// the server is started after the index is built and written
 			if (argumentMap.hasFlag("-server")) {
-				int port = argumentMap.getInteger("-server", 8080);
-				Server = new SearchEngineServer(threadSafeIndex, port);
-				try {
-					Server.StartSearchEngineServer(port);
-				} catch (Exception e) {
-					System.out.println("Unable to start the server with the port given: " + port);
+				// megabytes of search results the server may cache, like -querycache 64
+				int megabytes = argumentMap.getInteger("-querycache", QueryCache.DEFAULT_MEGABYTES);
+				if (megabytes < 0) {
+					megabytes = QueryCache.DEFAULT_MEGABYTES;
+				}
+				QueryCache cache = new QueryCache(QueryCache.DEFAULT_ENTRIES, (long) megabytes << 20);
+				// searches run on their own threads and answer by a deadline, like -searchthreads 8 -deadline 500
+				int searchThreads = argumentMap.getInteger("-searchthreads", SearchExecutor.DEFAULT_THREADS);
+				if (searchThreads <= 0) {
+					searchThreads = SearchExecutor.DEFAULT_THREADS;
+				}
+				int searchQueue = argumentMap.getInteger("-searchqueue", SearchExecutor.DEFAULT_QUEUE);
+				if (searchQueue < 0) {
+					searchQueue = SearchExecutor.DEFAULT_QUEUE;
+				}
+				int deadline = argumentMap.getInteger("-deadline", (int) SearchExecutor.DEFAULT_DEADLINE);
+				if (deadline <= 0) {
+					deadline = (int) SearchExecutor.DEFAULT_DEADLINE;
+				}
+				// searches are shed when they wait longer than a target, like -shedtarget 20 -shedinterval 100
+				int target = argumentMap.getInteger("-shedtarget", (int) AdmissionControl.DEFAULT_TARGET);
+				if (target < 0) {
+					target = (int) AdmissionControl.DEFAULT_TARGET;
 				}
+				int interval = argumentMap.getInteger("-shedinterval", (int) AdmissionControl.DEFAULT_INTERVAL);
+				if (interval <= 0) {
+					interval = (int) AdmissionControl.DEFAULT_INTERVAL;
+				}
+				SearchExecutor executor = new SearchExecutor(searchThreads, searchQueue, deadline,
+						new AdmissionControl(target, interval));
+				// the threads and queue of the server itself, like -serverthreads 200 -serverqueue 1000
+				int serverThreads = argumentMap.getInteger("-serverthreads", SearchEngineServer.DEFAULT_THREADS);
+				if (serverThreads <= 0) {
+					serverThreads = SearchEngineServer.DEFAULT_THREADS;
+				}
+				int serverQueue = argumentMap.getInteger("-serverqueue", SearchEngineServer.DEFAULT_QUEUE);
+				if (serverQueue <= 0) {
+					serverQueue = SearchEngineServer.DEFAULT_QUEUE;
+				}
+				Server = new SearchEngineServer(threadSafeIndex, argumentMap.getInteger("-server", 8080), cache,
+						documents, executor, serverThreads, serverQueue);
+			}
+		}
+
+		// build with sorted runs on disk within a memory budget in megabytes, like -spimi 64
+		else if (argumentMap.hasFlag("-spimi")) {
+			long budget = argumentMap.getInteger("-spimi", SpimiInvertedIndexBuilder.DEFAULT_BUDGET);
+			if (budget <= 0) {
+				budget = SpimiInvertedIndexBuilder.DEFAULT_BUDGET;
+			}
+			try {
+				Path file = Files.createTempFile("index", ".spimi");
+				file.toFile().deleteOnExit();
+				DiskInvertedIndex diskIndex = new DiskInvertedIndex(file);
+				data = diskIndex;
+				builder = new SpimiInvertedIndexBuilder(diskIndex, budget << 20, readSize);
+				queryMap = new QueryBuilder(diskIndex);
+			} catch (Exception e) {
+				System.out.println("Unable to create the index file for -spimi");
+				return;
 			}
 		}
 
 		//implement server flag and make sure to use multithreading
 		else {
-			data = new InvertedIndex();
-			builder = new InvertedIndexBuilder(data);
-			queryMap = new QueryBuilder(data);
+			memoryIndex = new InvertedIndex();
+			data = memoryIndex;
+			builder = new InvertedIndexBuilder(memoryIndex, readSize);
+			queryMap = new QueryBuilder(memoryIndex);
 		}
 
 		// check if flag has -path
 		if (argumentMap.hasValue("-path")) {
 			Path path = argumentMap.getPath("-path");
-			try {
-				builder.buildIndex(path);
-			} catch (Exception e) {
-				System.out.println("Unable to build the inverted index from path: " + path);
+			// only read the files that changed since the last build, like -incremental index-manifest.txt
+			boolean incremental = argumentMap.hasFlag("-incremental") && memoryIndex != null;
+			// a served index is kept current while the files change
+			if (incremental || Server != null) {
+				Path manifestPath = argumentMap.getPath("-incremental", IndexManifest.DEFAULT);
+				Path snapshotPath = IndexManifest.snapshot(manifestPath);
+				IndexManifest manifest = new IndexManifest();
+				if (incremental && Files.exists(manifestPath) && Files.exists(snapshotPath)) {
+					try {
+						manifest.load(manifestPath);
+						// adds nothing if the snapshot can not be read
+						memoryIndex.readSnapshot(snapshotPath);
+					} catch (Exception e) {
+						System.out.println("Unable to read the last build, building the whole index: " + manifestPath);
+						manifest = new IndexManifest();
+					}
+				}
+				try {
+					builder.buildIndex(path, manifest);
+					if (incremental) {
+						memoryIndex.writeSnapshot(snapshotPath);
+						manifest.save(manifestPath);
+					}
+				} catch (Exception e) {
+					System.out.println("Unable to build the inverted index from path: " + path);
+				}
+				if (Server != null) {
+					int delay = argumentMap.getInteger("-watchdelay", IndexWatcher.DEFAULT_DELAY);
+					if (delay <= 0) {
+						delay = IndexWatcher.DEFAULT_DELAY;
+					}
+					try {
+						watcher = new IndexWatcher(threadSafeIndex, manifest, path, readSize, delay, documents);
+					} catch (Exception e) {
+						System.out.println("Unable to watch the path for changes: " + path);
+					}
+				}
+			}
+			else {
+				try {
+					builder.buildIndex(path);
+				} catch (Exception e) {
+					System.out.println("Unable to build the inverted index from path: " + path);
+				}
 			}
 		}
 
@@ -130,6 +302,23 @@ public class Driver {
 				System.out.println("There was an error writing to the .json file given: " + resultFile);
 			}
 		}
+		if (Server != null) {
+			// short prefixes are expanded before the first search
+			threadSafeIndex.publish();
+			if (watcher != null) {
+				watcher.start();
+			}
+			int port = argumentMap.getInteger("-server", 8080);
+			try {
+				Server.StartSearchEngineServer(port);
+			} catch (Exception e) {
+				System.out.println("Unable to start the server with the port given: " + port);
+			}
+			if (watcher != null) {
+				watcher.close();
+			}
+		}
+
 		if (workQueue != null) {
 			workQueue.shutdown();
 		}
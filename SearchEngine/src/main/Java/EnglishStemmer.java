@@ -0,0 +1,601 @@
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * @author geoaldana
+ * This is the Snowball English (Porter2) stemming algorithm working in place on
+ * a {@code char[]}, so stemming a word does not create any objects. It follows
+ * the same steps as {@link SnowballStemmer} with
+ * {@link SnowballStemmer.ALGORITHM#ENGLISH} and returns the same stems. Like
+ * that stemmer, it is not thread-safe.
+ *
+ * @see <a href="https://snowballstem.org/algorithms/english/stemmer.html">
+ *      The English (Porter2) stemming algorithm</a>
+ */
+public class EnglishStemmer implements Stemmer {
+
+	/**
+	 * Words that are stemmed to a fixed stem, checked before anything else. Every
+	 * even index is a word and the following index its stem.
+	 */
+	private static final String[] EXCEPTIONS = {
+			"skis", "ski", "skies", "sky", "dying", "die", "lying", "lie", "tying", "tie",
+			"idly", "idl", "gently", "gentl", "ugly", "ugli", "early", "earli", "only", "onli",
+			"singly", "singl", "sky", "sky", "news", "news", "howe", "howe",
+			"atlas", "atlas", "cosmos", "cosmos", "bias", "bias", "andes", "andes" };
+
+	/**
+	 * Words that are left alone after step 1a.
+	 */
+	private static final String[] INVARIANTS = {
+			"inning", "outing", "canning", "herring", "earring", "proceed", "exceed", "succeed" };
+
+	/**
+	 * Prefixes that are the whole of the region before R1.
+	 */
+	private static final String[] PREFIXES = { "gener", "commun", "arsen" };
+
+	/**
+	 * Suffixes of step 2 and what they are replaced with, longest first. A
+	 * {@code null} replacement has its own rule.
+	 */
+	private static final String[] STEP_2 = {
+			"ization", "ize", "ational", "ate", "fulness", "ful", "ousness", "ous", "iveness", "ive",
+			"tional", "tion", "biliti", "ble", "lessli", "less",
+			"entli", "ent", "ation", "ate", "alism", "al", "aliti", "al", "ousli", "ous",
+			"iviti", "ive", "fulli", "ful",
+			"enci", "ence", "anci", "ance", "abli", "able", "izer", "ize", "ator", "ate", "alli", "al",
+			"bli", "ble", "ogi", null, "li", null };
+
+	/**
+	 * Suffixes of step 3 and what they are replaced with, longest first. A
+	 * {@code null} replacement has its own rule.
+	 */
+	private static final String[] STEP_3 = {
+			"ational", "ate", "tional", "tion", "alize", "al", "icate", "ic", "iciti", "ic", "ative", null,
+			"ical", "ic", "ness", "", "ful", "" };
+
+	/**
+	 * Suffixes of step 4, longest first.
+	 */
+	private static final String[] STEP_4 = {
+			"ement", "ance", "ence", "able", "ible", "ment", "ant", "ent", "ism", "ate", "iti", "ous",
+			"ive", "ize", "ion", "al", "er", "ic" };
+
+	/**
+	 * Letters that can come before a "li" that is removed in step 2.
+	 */
+	private static final String VALID_LI = "cdeghkmnrt";
+
+	/**
+	 * the word being stemmed
+	 */
+	private char[] b;
+
+	/**
+	 * position of the first letter of the word in the array
+	 */
+	private int offset;
+
+	/**
+	 * number of letters in the word
+	 */
+	private int length;
+
+	/**
+	 * start of the region R1, relative to the offset
+	 */
+	private int p1;
+
+	/**
+	 * start of the region R2, relative to the offset
+	 */
+	private int p2;
+
+	/**
+	 * whether any y was marked as a consonant
+	 */
+	private boolean yFound;
+
+	/**
+	 * buffer used by {@link #stem(CharSequence)}
+	 */
+	private char[] buffer;
+
+	/**
+	 * Initializes the stemmer.
+	 */
+	public EnglishStemmer() {
+		this.buffer = new char[32];
+	}
+
+	/**
+	 * Returns the stem of the word as a {@link String}.
+	 *
+	 * @param word the word to stem
+	 * @return the stem of the word
+	 */
+	@Override
+	public String stem(CharSequence word) {
+		if (buffer.length < word.length()) {
+			buffer = new char[Math.max(word.length(), buffer.length * 2)];
+		}
+		for (int i = 0; i < word.length(); i++) {
+			buffer[i] = word.charAt(i);
+		}
+		return new String(buffer, 0, stem(buffer, 0, word.length()));
+	}
+
+	/**
+	 * Stems the word in place. A stem is never longer than its word, so the stem
+	 * always fits in the same slice of the array.
+	 *
+	 * @param word the array holding the word
+	 * @param offset position of the first letter of the word in the array
+	 * @param length number of letters in the word
+	 * @return number of letters in the stem, which starts at the same offset
+	 */
+	public int stem(char[] word, int offset, int length) {
+		this.b = word;
+		this.offset = offset;
+		this.length = length;
+
+		if (exception1() || length < 3) {
+			return this.length;
+		}
+
+		prelude();
+		markRegions();
+		step1a();
+		if (!exception2()) {
+			step1b();
+			step1c();
+			step2();
+			step3();
+			step4();
+			step5();
+		}
+		postlude();
+		return this.length;
+	}
+
+	/**
+	 * Replaces words that have a fixed stem.
+	 *
+	 * @return true if the word had a fixed stem
+	 */
+	private boolean exception1() {
+		for (int i = 0; i < EXCEPTIONS.length; i += 2) {
+			if (equals(EXCEPTIONS[i])) {
+				replace(0, EXCEPTIONS[i + 1]);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks for words that are left alone after step 1a.
+	 *
+	 * @return true if the word is left alone
+	 */
+	private boolean exception2() {
+		for (String word : INVARIANTS) {
+			if (equals(word)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes a leading apostrophe and marks every y that is a consonant as Y,
+	 * which is an initial y or a y after a vowel.
+	 */
+	private void prelude() {
+		yFound = false;
+		if (at(0) == '\'') {
+			System.arraycopy(b, offset + 1, b, offset, length - 1);
+			length--;
+		}
+		if (length > 0 && at(0) == 'y') {
+			set(0, 'Y');
+			yFound = true;
+		}
+		for (int i = 1; i < length; i++) {
+			if (at(i) == 'y' && isVowel(at(i - 1))) {
+				set(i, 'Y');
+				yFound = true;
+			}
+		}
+	}
+
+	/**
+	 * Finds R1, the region after the first non-vowel following a vowel, and R2,
+	 * the same region found again inside of R1.
+	 */
+	private void markRegions() {
+		p1 = length;
+		p2 = length;
+
+		int i = -1;
+		for (String prefix : PREFIXES) {
+			if (startsWith(prefix)) {
+				i = prefix.length();
+				break;
+			}
+		}
+		if (i < 0) {
+			i = pastVowelConsonant(0);
+			if (i < 0) {
+				return;
+			}
+		}
+		p1 = i;
+
+		i = pastVowelConsonant(i);
+		if (i >= 0) {
+			p2 = i;
+		}
+	}
+
+	/**
+	 * Finds the position after the first non-vowel that follows a vowel.
+	 *
+	 * @param i the position to start at
+	 * @return the position after the non-vowel, or -1 if there is none
+	 */
+	private int pastVowelConsonant(int i) {
+		while (i < length && !isVowel(at(i))) {
+			i++;
+		}
+		i++;
+		while (i < length && isVowel(at(i))) {
+			i++;
+		}
+		return i < length ? i + 1 : -1;
+	}
+
+	/**
+	 * Removes apostrophe suffixes and plural endings.
+	 */
+	private void step1a() {
+		if (endsWith("'s'")) {
+			length -= 3;
+		}
+		else if (endsWith("'s")) {
+			length -= 2;
+		}
+		else if (endsWith("'")) {
+			length -= 1;
+		}
+
+		if (endsWith("sses")) {
+			length -= 2;
+		}
+		else if (endsWith("ied") || endsWith("ies")) {
+			// ties -> tie but cries -> cri
+			replace(length - 3, length > 4 ? "i" : "ie");
+		}
+		else if (endsWith("us") || endsWith("ss")) {
+			return;
+		}
+		else if (endsWith("s")) {
+			// delete the s if the word before the letter before it has a vowel
+			for (int i = length - 3; i >= 0; i--) {
+				if (isVowel(at(i))) {
+					length--;
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes -ed and -ing endings and fixes up the stem that is left.
+	 */
+	private void step1b() {
+		int start;
+		if (endsWith("eedly")) {
+			start = length - 5;
+		}
+		else if (endsWith("eed")) {
+			start = length - 3;
+		}
+		else {
+			start = -1;
+		}
+		if (start >= 0) {
+			if (start >= p1) {
+				replace(start, "ee");
+			}
+			return;
+		}
+
+		if (endsWith("ingly")) {
+			start = length - 5;
+		}
+		else if (endsWith("edly")) {
+			start = length - 4;
+		}
+		else if (endsWith("ing")) {
+			start = length - 3;
+		}
+		else if (endsWith("ed")) {
+			start = length - 2;
+		}
+		else {
+			return;
+		}
+
+		if (!hasVowel(start)) {
+			return;
+		}
+		length = start;
+
+		if (endsWith("at") || endsWith("bl") || endsWith("iz")) {
+			b[offset + length++] = 'e';
+		}
+		else if (endsWithDouble()) {
+			length--;
+		}
+		else if (length == p1 && shortSyllable(length)) {
+			b[offset + length++] = 'e';
+		}
+	}
+
+	/**
+	 * Replaces a final y with i if it follows a non-vowel that is not the first
+	 * letter of the word.
+	 */
+	private void step1c() {
+		if (length > 2 && (at(length - 1) == 'y' || at(length - 1) == 'Y') && !isVowel(at(length - 2))) {
+			set(length - 1, 'i');
+		}
+	}
+
+	/**
+	 * Replaces double suffixes in R1.
+	 */
+	private void step2() {
+		int match = longest(STEP_2);
+		if (match < 0) {
+			return;
+		}
+		int start = length - STEP_2[match].length();
+		if (start < p1) {
+			return;
+		}
+
+		String replacement = STEP_2[match + 1];
+		if (replacement != null) {
+			replace(start, replacement);
+		}
+		else if (STEP_2[match].equals("ogi")) {
+			if (start > 0 && at(start - 1) == 'l') {
+				replace(start, "og");
+			}
+		}
+		else if (start > 0 && VALID_LI.indexOf(at(start - 1)) >= 0) {
+			length = start;
+		}
+	}
+
+	/**
+	 * Replaces suffixes in R1.
+	 */
+	private void step3() {
+		int match = longest(STEP_3);
+		if (match < 0) {
+			return;
+		}
+		int start = length - STEP_3[match].length();
+		if (start < p1) {
+			return;
+		}
+
+		String replacement = STEP_3[match + 1];
+		if (replacement != null) {
+			replace(start, replacement);
+		}
+		else if (start >= p2) {
+			length = start;
+		}
+	}
+
+	/**
+	 * Removes suffixes in R2.
+	 */
+	private void step4() {
+		for (String suffix : STEP_4) {
+			if (endsWith(suffix)) {
+				int start = length - suffix.length();
+				if (start < p2) {
+					return;
+				}
+				if (!suffix.equals("ion")) {
+					length = start;
+				}
+				else if (start > 0 && (at(start - 1) == 's' || at(start - 1) == 't')) {
+					length = start;
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes a final e in R2, or in R1 if it does not follow a short syllable,
+	 * and a final l of a double l in R2.
+	 */
+	private void step5() {
+		if (endsWith("e")) {
+			int start = length - 1;
+			if (start >= p2 || (start >= p1 && !shortSyllable(start))) {
+				length = start;
+			}
+		}
+		else if (endsWith("l")) {
+			int start = length - 1;
+			if (start >= p2 && start > 0 && at(start - 1) == 'l') {
+				length = start;
+			}
+		}
+	}
+
+	/**
+	 * Turns the y marked as consonants back into y.
+	 */
+	private void postlude() {
+		if (yFound) {
+			for (int i = 0; i < length; i++) {
+				if (at(i) == 'Y') {
+					set(i, 'y');
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if the letters before position end are a short syllable: a non-vowel
+	 * other than w, x or Y after a vowel after a non-vowel, or a non-vowel after
+	 * a vowel at the start of the word.
+	 *
+	 * @param end the position after the syllable
+	 * @return true if the letters are a short syllable
+	 */
+	private boolean shortSyllable(int end) {
+		if (end >= 3 && !isVowelWXY(at(end - 1)) && isVowel(at(end - 2)) && !isVowel(at(end - 3))) {
+			return true;
+		}
+		return end == 2 && !isVowel(at(1)) && isVowel(at(0));
+	}
+
+	/**
+	 * Checks if there is a vowel before the position.
+	 *
+	 * @param end the position
+	 * @return true if there is a vowel before the position
+	 */
+	private boolean hasVowel(int end) {
+		for (int i = 0; i < end; i++) {
+			if (isVowel(at(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if the word ends with bb, dd, ff, gg, mm, nn, pp, rr or tt.
+	 *
+	 * @return true if the word ends with one of those doubles
+	 */
+	private boolean endsWithDouble() {
+		if (length < 2) {
+			return false;
+		}
+		char c = at(length - 1);
+		return c == at(length - 2) && "bdfgmnprt".indexOf(c) >= 0;
+	}
+
+	/**
+	 * Finds the longest suffix of the word in a list of suffix and replacement
+	 * pairs that is sorted longest first.
+	 *
+	 * @param suffixes the list of suffixes and replacements
+	 * @return the index of the suffix, or -1 if none match
+	 */
+	private int longest(String[] suffixes) {
+		for (int i = 0; i < suffixes.length; i += 2) {
+			if (endsWith(suffixes[i])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Replaces the end of the word starting at a position.
+	 *
+	 * @param start the position
+	 * @param replacement what the end of the word is replaced with
+	 */
+	private void replace(int start, String replacement) {
+		replacement.getChars(0, replacement.length(), b, offset + start);
+		length = start + replacement.length();
+	}
+
+	/**
+	 * @param s the word to compare
+	 * @return true if the word is the same as s
+	 */
+	private boolean equals(String s) {
+		return length == s.length() && startsWith(s);
+	}
+
+	/**
+	 * @param s the prefix to check
+	 * @return true if the word starts with s
+	 */
+	private boolean startsWith(String s) {
+		if (s.length() > length) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (at(i) != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param s the suffix to check
+	 * @return true if the word ends with s
+	 */
+	private boolean endsWith(String s) {
+		int start = length - s.length();
+		if (start < 0) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (at(start + i) != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param i position in the word
+	 * @return the letter at that position
+	 */
+	private char at(int i) {
+		return b[offset + i];
+	}
+
+	/**
+	 * @param i position in the word
+	 * @param c the new letter at that position
+	 */
+	private void set(int i, char c) {
+		b[offset + i] = c;
+	}
+
+	/**
+	 * @param c the letter
+	 * @return true if the letter is a, e, i, o, u or y
+	 */
+	private static boolean isVowel(char c) {
+		return c == 'a' || c == 'e' || c == 'i' || c == 'o' || c == 'u' || c == 'y';
+	}
+
+	/**
+	 * @param c the letter
+	 * @return true if the letter is a vowel, w, x or Y
+	 */
+	private static boolean isVowelWXY(char c) {
+		return isVowel(c) || c == 'w' || c == 'x' || c == 'Y';
+	}
+}
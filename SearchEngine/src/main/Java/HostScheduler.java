@@ -0,0 +1,262 @@
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * @author geoaldana
+ * This is a host-aware frontier that sits in front of a {@link WorkQueue}. Every
+ * host gets its own queue of pending tasks, only a limited number of tasks for
+ * the same host run at once, and requests to the same host are spaced apart by
+ * a delay. Hosts that are ready are served round-robin so one large site can not
+ * take every worker while other hosts wait.
+ */
+public class HostScheduler {
+
+	/**
+	 * The default delay in milliseconds between requests to the same host.
+	 */
+	public static final long DEFAULT_DELAY = 0;
+
+	/**
+	 * Work queue that will run the tasks
+	 */
+	private final WorkQueue queue;
+
+	/**
+	 * max amount of tasks that can run at once for a single host
+	 */
+	private final int perHost;
+
+	/**
+	 * delay in milliseconds between starting two tasks for the same host
+	 */
+	private final long delay;
+
+	/**
+	 * HashMap that will store the state of every host seen so far
+	 */
+	private final HashMap<String, Host> hosts;
+
+	/**
+	 * hosts that have queued tasks, in round-robin order
+	 */
+	private final ArrayDeque<String> ready;
+
+	/**
+	 * timer used to wake up the scheduler once a delayed host is ready again
+	 */
+	private final Timer timer;
+
+	/**
+	 * time in milliseconds of the next scheduled wake up, or 0 if none
+	 */
+	private long wakeup;
+
+	/**
+	 * number of tasks handed to the work queue that have not finished yet
+	 */
+	private int running;
+
+	/**
+	 * number of tasks that have been added but have not finished yet
+	 */
+	private int pending;
+
+	/**
+	 * @param queue that will run the tasks
+	 * @param perHost max amount of tasks that can run at once for a single host
+	 * @param delay in milliseconds between starting two tasks for the same host
+	 */
+	public HostScheduler(WorkQueue queue, int perHost, long delay) {
+		this.queue = queue;
+		this.perHost = Math.max(1, perHost);
+		this.delay = Math.max(0, delay);
+		this.hosts = new HashMap<>();
+		this.ready = new ArrayDeque<>();
+		this.timer = this.delay > 0 ? new Timer("HostScheduler", true) : null;
+		this.wakeup = 0;
+		this.running = 0;
+		this.pending = 0;
+	}
+
+	/**
+	 * Starts a scheduler that does not limit hosts beyond the size of the work
+	 * queue and does not wait between requests.
+	 *
+	 * @param queue that will run the tasks
+	 */
+	public HostScheduler(WorkQueue queue) {
+		this(queue, queue.size(), DEFAULT_DELAY);
+	}
+
+	/**
+	 * Adds a task for the host of the given url. The task is handed to the work
+	 * queue once that host is allowed another request.
+	 *
+	 * @param url the url the task will fetch
+	 * @param r the task that will be run
+	 */
+	public synchronized void execute(URL url, Runnable r) {
+		String name = url.getHost().toLowerCase();
+		Host host = hosts.computeIfAbsent(name, key -> new Host());
+		if (host.tasks.isEmpty()) {
+			ready.addLast(name);
+		}
+		host.tasks.addLast(r);
+		pending++;
+		dispatch();
+	}
+
+	/**
+	 * Waits for all tasks added to this scheduler to finish, including the ones
+	 * that are still waiting on their host.
+	 */
+	public synchronized void finish() {
+		try {
+			while (pending > 0) {
+				this.wait();
+			}
+		} catch (InterruptedException e) {
+			System.out.println("Host scheduler interrupted while trying to finish.");
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Stops the timer used for delayed hosts. Tasks that are still waiting on
+	 * their host will not be run.
+	 */
+	public void shutdown() {
+		if (timer != null) {
+			timer.cancel();
+		}
+	}
+
+	/**
+	 * Hands tasks to the work queue for every host that is allowed another
+	 * request, going round-robin through the ready hosts until no more tasks can
+	 * be started. If a host is only waiting on its delay, a wake up is scheduled.
+	 */
+	private void dispatch() {
+		long now = System.currentTimeMillis();
+		long soonest = Long.MAX_VALUE;
+		boolean started = true;
+
+		while (started) {
+			started = false;
+			int remaining = ready.size();
+			while (remaining-- > 0 && running < queue.size()) {
+				String name = ready.removeFirst();
+				Host host = hosts.get(name);
+				if (host.active < perHost && host.next <= now) {
+					host.active++;
+					host.next = now + delay;
+					running++;
+					queue.execute(new Task(host, host.tasks.removeFirst()));
+					started = true;
+				}
+				else if (host.active < perHost) {
+					soonest = Math.min(soonest, host.next);
+				}
+				if (!host.tasks.isEmpty()) {
+					ready.addLast(name);
+				}
+			}
+		}
+
+		if (timer != null && soonest != Long.MAX_VALUE && (wakeup == 0 || soonest < wakeup)) {
+			wakeup = soonest;
+			timer.schedule(new WakeUp(), Math.max(0, soonest - now));
+		}
+	}
+
+	/**
+	 * Called once a task finishes so its host and the scheduler can start the
+	 * next task.
+	 *
+	 * @param host the host the task belonged to
+	 */
+	private synchronized void finished(Host host) {
+		host.active--;
+		running--;
+		pending--;
+		dispatch();
+		if (pending == 0) {
+			this.notifyAll();
+		}
+	}
+
+	/**
+	 * @author geoaldana
+	 * This stores the queued tasks and request state for a single host.
+	 */
+	private static class Host {
+
+		/**
+		 * tasks for this host that have not been started yet
+		 */
+		private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+		/**
+		 * number of tasks for this host that are running
+		 */
+		private int active = 0;
+
+		/**
+		 * earliest time in milliseconds the next task for this host can start
+		 */
+		private long next = 0;
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a timer task that runs the scheduler again once a delayed host is ready.
+	 */
+	private class WakeUp extends TimerTask {
+
+		@Override
+		public void run() {
+			synchronized (HostScheduler.this) {
+				wakeup = 0;
+				dispatch();
+			}
+		}
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a task that implements Runnable and runs a task for the HostScheduler.
+	 */
+	private class Task implements Runnable {
+
+		/**
+		 * host the task belongs to
+		 */
+		private final Host host;
+
+		/**
+		 * the task that will be run
+		 */
+		private final Runnable task;
+
+		/**
+		 * @param host the task belongs to
+		 * @param task that will be run
+		 */
+		public Task(Host host, Runnable task) {
+			this.host = host;
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			try {
+				task.run();
+			} finally {
+				finished(host);
+			}
+		}
+	}
+}
@@ -1,15 +1,47 @@
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Cleans simple, validating HTML 4/5 into plain text.
  *
+ * Comments, block elements, tags and entities are removed in a single scan over
+ * the html instead of one regular expression pass per element. The output is
+ * the same as removing comments first, then each block element in the order
+ * listed in {@link #BLOCK_ELEMENTS}, then tags, and then entities.
+ *
+ * Removing a comment can join the text around it into a new comment, like
+ * {@code <!<!-- x -->-- y --><!-- z -->}. The regular expression passes this
+ * replaced counted the comments and then removed that many, searching from the
+ * start of the html every time, so they removed the joined {@code <!-- y -->}
+ * in place of the last comment. The scan notices when the text on both sides
+ * of a removed comment could join, which almost never happens in real pages,
+ * and then removes the comments the same way the passes did before scanning
+ * the rest, so the output is the same for all html.
+ *
  * @author CS 212 Software Development
  * @author University of San Francisco
  * @version Fall 2020
  */
 public class HtmlCleaner {
 
+	/**
+	 * The block elements removed by {@link #stripBlockElements(String)}, in the
+	 * order they are removed.
+	 */
+	private static final String[] BLOCK_ELEMENTS = { "head", "style", "script", "noscript", "iframe", "svg" };
+
+	/** Regular expression that matches HTML entities. */
+	private static final Pattern ENTITY_REGEX = Pattern.compile("(?s)[&][^\\s]*?;");
+
+	/** Regular expression that matches HTML comments. */
+	private static final Pattern COMMENT_REGEX = Pattern.compile("(?s)(?i)<!--.*?-->");
+
+	/** Regular expression that matches HTML tags. */
+	private static final Pattern TAG_REGEX = Pattern.compile("(?is)(<{1}.*?>{1})");
+
 	/**
 	 * Removes all HTML tags and certain block elements from the provided text.
 	 * The block elements removed include: head, style, script, noscript, iframe,
@@ -19,10 +51,26 @@ public class HtmlCleaner {
 	 * @return text clean of any HTML tags and certain block elements
 	 */
 	public static String stripHtml(String html) {
-		html = stripBlockElements(html);
-		html = stripTags(html);
-		html = stripEntities(html);
-		return html;
+		return clean(html, BLOCK_ELEMENTS, true, null, null);
+	}
+
+	/**
+	 * Removes all HTML tags and certain block elements from the provided text,
+	 * and adds the links found in the anchor tags to the collection. The text is
+	 * the same as {@link #stripHtml(String)} returns. The scan keeps the html
+	 * without comments and block elements, and the links are found in it with
+	 * {@link LinkParser#addValidLinks(URL, CharSequence, Collection)}, so they are
+	 * the same as {@link LinkParser#getValidLinks(URL, String)} finds in the html
+	 * after {@link #stripBlockElements(String)}.
+	 *
+	 * @param html the HTML to strip tags and elements from
+	 * @param base the base url used to convert relative links to absolute
+	 * @param links the collection the links will be added to in the order they
+	 *        were found
+	 * @return text clean of any HTML tags and certain block elements
+	 */
+	public static String stripHtml(String html, URL base, Collection<URL> links) {
+		return clean(html, BLOCK_ELEMENTS, true, base, links);
 	}
 
 	/**
@@ -33,14 +81,7 @@ public class HtmlCleaner {
 	 * @return text clean of any comments and certain HTML block elements
 	 */
 	public static String stripBlockElements(String html) {
-		html = stripComments(html);
-		html = stripElement(html, "head");
-		html = stripElement(html, "style");
-		html = stripElement(html, "script");
-		html = stripElement(html, "noscript");
-		html = stripElement(html, "iframe");
-		html = stripElement(html, "svg");
-		return html;
+		return clean(html, BLOCK_ELEMENTS, false, null, null);
 	}
 
 	/**
@@ -54,7 +95,7 @@ public class HtmlCleaner {
 		if(html == null) {
 			return "";
 		}
-		return html.replaceAll("(?s)[&][^\\s]*?;", "");
+		return ENTITY_REGEX.matcher(html).replaceAll("");
 	}
 
 	/**
@@ -68,7 +109,7 @@ public class HtmlCleaner {
 		if(html == null) {
 			return "";
 		}
-		return html.replaceAll("(?is)(<{1}.*?>{1})", "");
+		return TAG_REGEX.matcher(html).replaceAll("");
 	}
 
 	/**
@@ -95,17 +136,7 @@ public class HtmlCleaner {
 	 * @see Matcher#replaceAll(java.util.function.Function)
 	 */
 	public static String stripComments(String html) {
-		Pattern pattern = Pattern.compile("(?s)(?i)<!--.*?-->");
-		Matcher matcher = pattern.matcher(html);
-		
-		while(matcher.find()) {
-			if(matcher.group().contains("\n")) {
-				html = html.replaceFirst("(?s)(?i)<!--.*?-->", " ");
-			} else {
-				html = html.replaceFirst("(?s)(?i)<!--.*?-->", "");
-			}
-		}
-		return html;
+		return clean(html, new String[0], false, null, null);
 	}
 
 	/**
@@ -128,20 +159,50 @@ public class HtmlCleaner {
 	 * @see Matcher#replaceAll(java.util.function.Function)
 	 */
 	public static String stripElement(String html, String name) {
-		Pattern pattern = Pattern.compile("(?i)(?s)<\\s*?" + name + "\\s*?.*?<\\/\\s*?" + name + "\\s*?>");
-		Matcher matcher = pattern.matcher(html);
-		
-		while(matcher.find()) {
-			if(HtmlCleaner.hasNewline(matcher.group()) || matcher.group().contains("\n")) {
-				html = html.replaceFirst("(?i)(?s)<\\s*?" + name + "\\s*?.*?<\\/\\s*?" + name + "\\s*?>", " ");
-			}
-			else {
-				html = html.replaceFirst("(?i)(?s)<\\s*?" + name + "\\s*?.*?<\\/\\s*?" + name + "\\s*?>", "");
-			}
+		return new Scanner(html, new String[] { name }, false, false, null, null).scan();
+	}
+
+	/**
+	 * Removes comments and then block elements, and tags and entities if asked,
+	 * in a single scan. If removing a comment could join the text around it into
+	 * a new comment, the comments are removed one at a time first and the scan
+	 * only removes the rest.
+	 *
+	 * @param html the html to clean
+	 * @param names of the block elements to remove, in the order they are removed
+	 * @param text whether tags and entities are removed
+	 * @param base the base url used to convert relative links to absolute
+	 * @param links the collection links are added to, or {@code null}
+	 * @return the cleaned text
+	 */
+	private static String clean(String html, String[] names, boolean text, URL base, Collection<URL> links) {
+		String clean = new Scanner(html, names, true, text, base, links).scan();
+		if (clean == null) {
+			clean = new Scanner(stripCommentsOneAtATime(html), names, false, text, base, links).scan();
 		}
-		return html;
+		return clean;
 	}
-	
+
+	/**
+	 * Removes the comments the way the regular expression passes did: the
+	 * comments of the html are counted, and then the first comment is removed
+	 * that many times, searching from the start every time. Every removal leaves
+	 * a space if the comment of the html with the same number spanned multiple
+	 * lines, even if a joined comment is removed in its place.
+	 *
+	 * @param html text including HTML comments to remove
+	 * @return text without any HTML comments
+	 */
+	private static String stripCommentsOneAtATime(String html) {
+		Matcher matcher = COMMENT_REGEX.matcher(html);
+		String stripped = html;
+		while (matcher.find()) {
+			String space = matcher.group().contains("\n") ? " " : "";
+			stripped = COMMENT_REGEX.matcher(stripped).replaceFirst(space);
+		}
+		return stripped;
+	}
+
 	/**
 	 * Returns true if the provided input has one or more newlines.
 	 * 
@@ -151,4 +212,469 @@ public class HtmlCleaner {
 	public static boolean hasNewline(String input) {
 		return input.matches(".*[\n\r]+.*");
 	}
+
+	/**
+	 * Removes comments, block elements, tags and entities from html in a single
+	 * scan. Comments are found first, then block elements where an element that
+	 * is removed earlier by {@link HtmlCleaner#stripBlockElements(String)} is
+	 * skipped over when looking for the end tag of a later one. The remaining
+	 * text goes through a tag filter and an entity filter as it is produced, so
+	 * tags and entities are matched against the html after the block elements
+	 * are gone, the same way the separate passes would see it.
+	 */
+	private static class Scanner {
+
+		/** the html that is scanned */
+		private final String html;
+
+		/** names of the block elements to remove, in the order they are removed */
+		private final String[] names;
+
+		/** whether comments are removed */
+		private final boolean comments;
+
+		/** whether tags and entities are removed */
+		private final boolean text;
+
+		/** the base url used to convert relative links to absolute */
+		private final URL base;
+
+		/** the collection links in anchor tags are added to, or {@code null} */
+		private final Collection<URL> links;
+
+		/** for every element, the position after which its end tag can not be found */
+		private final int[] unclosed;
+
+		/** position after which the end of a comment can not be found */
+		private int uncommented;
+
+		/** position after the last comment that was found */
+		private int commentEnd;
+
+		/** the character the last comment that was found left behind, or 0 */
+		private char commentLeft;
+
+		/** whether removing a comment could join the text around it into a new one */
+		private boolean joined;
+
+		/** whether the last element matched spanned multiple lines */
+		private boolean multiline;
+
+		/** the cleaned text */
+		private final StringBuilder out;
+
+		/** whether the tag filter is inside of a tag */
+		private boolean tag;
+
+		/** the html without comments and block elements, kept to find links, or {@code null} */
+		private final StringBuilder blocks;
+
+		/** characters of the tag that is open, kept in case the tag never ends */
+		private final StringBuilder pending;
+
+		/** position in the output of the entity that is open, or -1 */
+		private int entity;
+
+		/**
+		 * @param html the html that is scanned
+		 * @param names of the block elements to remove, in the order they are removed
+		 * @param comments whether comments are removed
+		 * @param text whether tags and entities are removed
+		 * @param base the base url used to convert relative links to absolute
+		 * @param links the collection links are added to, or {@code null}
+		 */
+		private Scanner(String html, String[] names, boolean comments, boolean text, URL base, Collection<URL> links) {
+			this.html = html;
+			this.names = names;
+			this.comments = comments;
+			this.text = text;
+			this.base = base;
+			this.links = links;
+			this.unclosed = new int[names.length];
+			Arrays.fill(unclosed, Integer.MAX_VALUE);
+			this.uncommented = Integer.MAX_VALUE;
+			this.commentEnd = -1;
+			this.out = new StringBuilder(html.length());
+			this.blocks = links == null ? null : new StringBuilder(html.length());
+			this.pending = new StringBuilder();
+			this.entity = -1;
+		}
+
+		/**
+		 * Scans the html from start to end.
+		 *
+		 * @return the cleaned text, or {@code null} if removing a comment could
+		 *         join the text around it into a new comment
+		 */
+		private String scan() {
+			int i = 0;
+			while (i < html.length()) {
+				int end = comment(i);
+				if (end >= 0) {
+					if (hasNewline(i, end)) {
+						emit(' ');
+					}
+					i = end;
+					continue;
+				}
+
+				int k = open(i, names.length);
+				if (k >= 0) {
+					end = element(i, k);
+					if (end >= 0) {
+						if (multiline) {
+							emit(' ');
+						}
+						i = end;
+						continue;
+					}
+				}
+
+				emit(html.charAt(i));
+				i++;
+			}
+
+			if (joined) {
+				return null;
+			}
+			// a tag that never ended is not a tag, but no tag can start after it either
+			if (tag) {
+				for (int j = 0; j < pending.length(); j++) {
+					entity(pending.charAt(j));
+				}
+			}
+			// a link can go on past the end of its tag, like <a href="<b>c.html">, so it
+			// is found in the whole html the way LinkParser would find it
+			if (blocks != null) {
+				LinkParser.addValidLinks(base, blocks, links);
+			}
+			return out.toString();
+		}
+
+		/**
+		 * Finds the end of the element that starts at position i, looking for its
+		 * end tag and skipping over comments and elements removed before it.
+		 *
+		 * @param i position of the start tag
+		 * @param k the element
+		 * @return the position after the end tag, or -1 if there is no end tag
+		 */
+		private int element(int i, int k) {
+			int r = skipSpace(i + 1) + names[k].length();
+			if (r >= unclosed[k]) {
+				return -1;
+			}
+
+			Newlines lines = new Newlines();
+			for (int j = i; j < r; j++) {
+				lines.add(html.charAt(j));
+			}
+
+			int start = r;
+			while (r < html.length()) {
+				int end = comment(r);
+				if (end >= 0) {
+					lines.removed(hasNewline(r, end));
+					r = end;
+					continue;
+				}
+
+				int inner = open(r, k);
+				if (inner >= 0) {
+					end = element(r, inner);
+					if (end >= 0) {
+						lines.removed(multiline);
+						r = end;
+						continue;
+					}
+				}
+
+				end = close(r, k);
+				if (end >= 0) {
+					for (int j = r; j < end; j++) {
+						lines.add(html.charAt(j));
+					}
+					multiline = lines.multiline();
+					return end;
+				}
+
+				lines.add(html.charAt(r));
+				r++;
+			}
+
+			unclosed[k] = start;
+			return -1;
+		}
+
+		/**
+		 * Checks if there is a "\n" between two positions, which is how a removed
+		 * comment is checked for spanning multiple lines.
+		 *
+		 * @param start the first position
+		 * @param end the position after the last
+		 * @return true if there is a "\n"
+		 */
+		private boolean hasNewline(int start, int end) {
+			for (int j = start; j < end; j++) {
+				if (html.charAt(j) == '\n') {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Finds the end of the comment that starts at position i, and checks if
+		 * removing it could join the text around it into a new comment. The text
+		 * before it is the last character before it that is not in a comment, or
+		 * the space the comment before it left, and the text after it is the first
+		 * character after it that is not in a comment. A new comment can only start
+		 * if they are "&lt;!", "!-" or "--".
+		 *
+		 * @param i the position to check
+		 * @return the position after the comment, or -1 if there is no comment
+		 */
+		private int comment(int i) {
+			int end = find(i);
+			if (end < 0) {
+				return -1;
+			}
+			boolean newline = hasNewline(i, end);
+			char before = i == commentEnd ? commentLeft : i > 0 ? html.charAt(i - 1) : 0;
+			if (!newline && (before == '<' || before == '!' || before == '-')) {
+				int j = end;
+				int next;
+				while ((next = find(j)) >= 0 && !hasNewline(j, next)) {
+					j = next;
+				}
+				char after = next >= 0 ? ' ' : j < html.length() ? html.charAt(j) : 0;
+				joined |= (before == '<' && after == '!') || (before != '<' && after == '-');
+			}
+			commentEnd = end;
+			commentLeft = newline ? ' ' : before;
+			return end;
+		}
+
+		/**
+		 * Finds the end of the comment that starts at position i.
+		 *
+		 * @param i the position to check
+		 * @return the position after the comment, or -1 if there is no comment
+		 */
+		private int find(int i) {
+			if (!comments || i >= uncommented || !html.startsWith("<!--", i)) {
+				return -1;
+			}
+			int end = html.indexOf("-->", i + 4);
+			if (end < 0) {
+				uncommented = i;
+				return -1;
+			}
+			return end + 3;
+		}
+
+		/**
+		 * Checks if the start tag of one of the first few elements is at position
+		 * i, which is a "&lt;" followed by optional whitespace and the element name.
+		 *
+		 * @param i the position to check
+		 * @param limit number of elements to check
+		 * @return the element, or -1 if there is no start tag
+		 */
+		private int open(int i, int limit) {
+			if (limit == 0 || html.charAt(i) != '<') {
+				return -1;
+			}
+			int j = skipSpace(i + 1);
+			for (int k = 0; k < limit; k++) {
+				if (matches(j, names[k])) {
+					return k;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Checks if the end tag of the element is at position i, which is a "&lt;/"
+		 * followed by optional whitespace, the element name, optional whitespace and
+		 * a "&gt;".
+		 *
+		 * @param i the position to check
+		 * @param k the element
+		 * @return the position after the end tag, or -1 if there is no end tag
+		 */
+		private int close(int i, int k) {
+			if (html.charAt(i) != '<' || i + 1 >= html.length() || html.charAt(i + 1) != '/') {
+				return -1;
+			}
+			int j = skipSpace(i + 2);
+			if (!matches(j, names[k])) {
+				return -1;
+			}
+			j = skipSpace(j + names[k].length());
+			return j < html.length() && html.charAt(j) == '>' ? j + 1 : -1;
+		}
+
+		/**
+		 * Checks if the name is at position i, ignoring the case of ASCII letters
+		 * only the same way a case-insensitive regular expression does.
+		 *
+		 * @param i the position to check
+		 * @param name the element name
+		 * @return true if the name is at that position
+		 */
+		private boolean matches(int i, String name) {
+			if (i + name.length() > html.length()) {
+				return false;
+			}
+			for (int j = 0; j < name.length(); j++) {
+				char c = html.charAt(i + j);
+				if (c >= 'A' && c <= 'Z') {
+					c += 'a' - 'A';
+				}
+				char n = name.charAt(j);
+				if (n >= 'A' && n <= 'Z') {
+					n += 'a' - 'A';
+				}
+				if (c != n) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the first position at or after i that is not whitespace.
+		 *
+		 * @param i the position to start at
+		 * @return the first position that is not whitespace
+		 */
+		private int skipSpace(int i) {
+			while (i < html.length() && isSpace(html.charAt(i))) {
+				i++;
+			}
+			return i;
+		}
+
+		/**
+		 * Sends a character that is not part of a comment or block element through
+		 * the tag filter, or straight to the output if tags are kept. The character
+		 * is also kept to find links if links are wanted.
+		 *
+		 * @param c the character
+		 */
+		private void emit(char c) {
+			if (blocks != null) {
+				blocks.append(c);
+			}
+			if (!text) {
+				out.append(c);
+			}
+			else if (tag) {
+				pending.append(c);
+				if (c == '>') {
+					tag = false;
+					pending.setLength(0);
+				}
+			}
+			else if (c == '<') {
+				tag = true;
+				pending.append(c);
+			}
+			else {
+				entity(c);
+			}
+		}
+
+		/**
+		 * Sends a character that is not part of a tag through the entity filter. An
+		 * entity is a "&amp;" followed by anything but whitespace up to the first
+		 * ";".
+		 *
+		 * @param c the character
+		 */
+		private void entity(char c) {
+			if (c == '&' && entity < 0) {
+				entity = out.length();
+			}
+			else if (c == ';' && entity >= 0) {
+				out.setLength(entity);
+				entity = -1;
+				return;
+			}
+			else if (isSpace(c)) {
+				entity = -1;
+			}
+			out.append(c);
+		}
+
+		/**
+		 * Checks if the character is whitespace as matched by "\s".
+		 *
+		 * @param c the character
+		 * @return true if the character is whitespace
+		 */
+		private static boolean isSpace(char c) {
+			return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+		}
+	}
+
+	/**
+	 * Decides if a removed element spanned multiple lines the same way
+	 * {@link HtmlCleaner#hasNewline(String)} and {@link String#contains(CharSequence)}
+	 * did together: either the text has a "\n", or it has exactly one run of line
+	 * breaks and no other line terminators.
+	 */
+	private static class Newlines {
+
+		/** whether a "\n" was seen */
+		private boolean newline;
+
+		/** number of runs of "\n" and "\r" seen */
+		private int runs;
+
+		/** whether the last character was a "\n" or "\r" */
+		private boolean run;
+
+		/** whether another line terminator was seen */
+		private boolean other;
+
+		/**
+		 * Adds the next character of the removed text.
+		 *
+		 * @param c the character
+		 */
+		private void add(char c) {
+			if (c == '\n' || c == '\r') {
+				newline |= c == '\n';
+				if (!run) {
+					runs++;
+					run = true;
+				}
+			}
+			else {
+				run = false;
+				other |= c == '\u0085' || c == '\u2028' || c == '\u2029';
+			}
+		}
+
+		/**
+		 * Adds a comment or element that was removed from inside the text, which
+		 * left either a single space or nothing behind.
+		 *
+		 * @param multiline whether the removed text left a space behind
+		 */
+		private void removed(boolean multiline) {
+			if (multiline) {
+				add(' ');
+			}
+		}
+
+		/**
+		 * @return true if the text spanned multiple lines
+		 */
+		private boolean multiline() {
+			return newline || (runs == 1 && !other);
+		}
+	}
 }
@@ -108,6 +108,35 @@ public class HtmlFetcher {
 		return null;
 	}
 
+	/**
+	 * Fetches the resource at the URL sending the extra request headers provided,
+	 * following redirects if the number of redirects is greater than 0. Unlike
+	 * {@link #fetch(URL, int)}, the headers and content of the final response are
+	 * returned whatever the status code is, so callers can handle responses like
+	 * "304 Not Modified" themselves.
+	 *
+	 * @param url the url to fetch
+	 * @param redirects the number of times to follow redirects
+	 * @param request extra request headers to send
+	 * @return the headers and content of the final response or {@code null} if
+	 *         unable to fetch the resource
+	 *
+	 * @see HttpsFetcher#fetchURL(URL, Map)
+	 */
+	public static Map<String, List<String>> fetch(URL url, int redirects, Map<String, String> request) {
+		try {
+			Map<String, List<String>> map = HttpsFetcher.fetchURL(url, request);
+			if (isRedirect(map) && redirects > 0) {
+				return fetch(new URL(url, map.get("Location").get(0)), redirects - 1, request);
+			}
+			return map;
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
 	/**
 	 * Converts the {@link String} url into a {@link URL} object and then calls
 	 * {@link #fetch(URL, int)}.
@@ -32,13 +32,27 @@ public class HttpsFetcher {
 	 * @throws IOException if unable to fetch headers and content
 	 */
 	public static Map<String, List<String>> fetchURL(URL url) throws IOException {
+		return fetchURL(url, Map.of());
+	}
+
+	/**
+	 * Fetches the headers and content for the specified URL, sending the extra
+	 * request headers provided (for example "If-None-Match" for a conditional
+	 * request). See {@link #fetchURL(URL)} for details.
+	 *
+	 * @param url the url to fetch
+	 * @param request extra request headers to send
+	 * @return a map with the headers and content
+	 * @throws IOException if unable to fetch headers and content
+	 */
+	public static Map<String, List<String>> fetchURL(URL url, Map<String, String> request) throws IOException {
 		try (
 				Socket socket = openConnection(url);
-				PrintWriter request = new PrintWriter(socket.getOutputStream());
+				PrintWriter writer = new PrintWriter(socket.getOutputStream());
 				InputStreamReader input = new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8);
 				BufferedReader response = new BufferedReader(input);
 		) {
-			printGetRequest(request, url);
+			printGetRequest(writer, url, request);
 
 			Map<String, List<String>> headers = getHeaderFields(response);
 			List<String> content = getContent(response);
@@ -93,11 +107,27 @@ public class HttpsFetcher {
 	 * @throws IOException if unable to write request to socket
 	 */
 	public static void printGetRequest(PrintWriter writer, URL url) throws IOException {
+		printGetRequest(writer, url, Map.of());
+	}
+
+	/**
+	 * Writes a simple HTTP GET request with extra request headers to the
+	 * provided socket writer.
+	 *
+	 * @param writer a writer created from a socket connection
+	 * @param url the url to fetch via the socket connection
+	 * @param request extra request headers to send
+	 * @throws IOException if unable to write request to socket
+	 */
+	public static void printGetRequest(PrintWriter writer, URL url, Map<String, String> request) throws IOException {
 		String host = url.getHost();
 		String resource = url.getFile().isEmpty() ? "/" : url.getFile();
 
 		writer.printf("GET %s HTTP/1.1\r\n", resource);
 		writer.printf("Host: %s\r\n", host);
+		for (Map.Entry<String, String> header : request.entrySet()) {
+			writer.printf("%s: %s\r\n", header.getKey(), header.getValue());
+		}
 		writer.printf("Connection: close\r\n");
 		writer.printf("\r\n");
 		writer.flush();
@@ -0,0 +1,358 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * @author geoaldana
+ * This is a manifest of the files that were indexed. For every file it keeps
+ * the size, the last modified time and a hash of the content. When the index is
+ * built again, only files that are new or whose content changed are read, and
+ * files that changed or were removed are deleted from the index. A file is only
+ * hashed again when its size or modified time changed, so an unchanged tree
+ * costs one directory walk.
+ *
+ * Files are hashed lazily. A file read for the first time is not hashed until
+ * the manifest is saved, so a manifest that is never saved, like the one of a
+ * watched index, never hashes the whole tree. A file without a hash that
+ * changes is read again even if only its modified time changed. The new and
+ * changed files are only recorded once {@link #indexed(Collection)} says they
+ * were read, so a file that could not be read is read again next time.
+ */
+public class IndexManifest {
+
+	/**
+	 * The default file the manifest is stored in.
+	 */
+	public static final Path DEFAULT = Path.of("index-manifest.txt");
+
+	/**
+	 * TreeMap that will store the files by location
+	 */
+	private final TreeMap<String, Entry> files;
+
+	/**
+	 * new and changed files by location that are recorded once they are read
+	 */
+	private final HashMap<String, Entry> pending;
+
+	/**
+	 * entry of a file that changed after it was read, which never matches a file
+	 */
+	private static final Entry STALE = new Entry(-1, -1, null);
+
+	/**
+	 * Initializes an empty manifest.
+	 */
+	public IndexManifest() {
+		this.files = new TreeMap<>();
+		this.pending = new HashMap<>();
+	}
+
+	/**
+	 * @return the number of files in the manifest
+	 */
+	public synchronized int size() {
+		return files.size();
+	}
+
+	/**
+	 * Returns the file the index is stored in next to a manifest, which is the
+	 * manifest file name followed by ".index".
+	 *
+	 * @param path the file the manifest is stored in
+	 * @return the file the index is stored in
+	 */
+	public static Path snapshot(Path path) {
+		return path.resolveSibling(path.getFileName() + ".index");
+	}
+
+	/**
+	 * Compares the text files of a directory, or a single file, with the manifest.
+	 * New and changed files are returned to be read, changed files and files of
+	 * the manifest in the directory that no longer exist are deleted from the
+	 * index, and the index is purged.
+	 *
+	 * @param directory the directory or file that is indexed
+	 * @param index the index the files were added to
+	 * @return the files that have to be read
+	 * @throws IOException if an IO error occurs
+	 */
+	public synchronized Set<Path> update(Path directory, InvertedIndex index) throws IOException {
+		Set<Path> changed = changes(directory, index);
+		index.purge();
+		return changed;
+	}
+
+	/**
+	 * Works like {@link #update(Path, InvertedIndex)} but does not purge the
+	 * index, so the deleted files can still be found until the files that have to
+	 * be read are merged into the index.
+	 *
+	 * @param directory the directory or file that is indexed, which may no longer
+	 *        exist
+	 * @param index the index the files were added to
+	 * @return the files that have to be read
+	 * @throws IOException if an IO error occurs
+	 */
+	public synchronized Set<Path> changes(Path directory, InvertedIndex index) throws IOException {
+		return changes(directory, index, new ArrayList<>());
+	}
+
+	/**
+	 * Works like {@link #changes(Path, InvertedIndex)} and also adds every
+	 * location that was deleted from the index, changed or removed, to a
+	 * collection.
+	 *
+	 * @param directory the directory or file that is indexed, which may no longer
+	 *        exist
+	 * @param index the index the files were added to
+	 * @param deleted the collection the deleted locations are added to
+	 * @return the files that have to be read
+	 * @throws IOException if an IO error occurs
+	 */
+	public synchronized Set<Path> changes(Path directory, InvertedIndex index, Collection<String> deleted)
+			throws IOException {
+		ArrayList<Path> found = new ArrayList<>();
+		if (Files.isDirectory(directory)) {
+			textFiles(directory, found);
+		}
+		else if (Files.exists(directory)) {
+			found.add(directory);
+		}
+
+		HashSet<String> seen = new HashSet<>();
+		LinkedHashSet<Path> changed = new LinkedHashSet<>();
+		for (Path path : found) {
+			String location = path.toString();
+			seen.add(location);
+			Entry old = files.get(location);
+			Entry entry;
+			try {
+				long size = Files.size(path);
+				long modified = Files.getLastModifiedTime(path).toMillis();
+				if (old != null && old.size == size && old.modified == modified) {
+					continue;
+				}
+				// only a file with a hash to compare with is hashed now
+				entry = new Entry(size, modified, old != null && old.hash != null ? hash(path) : null);
+			} catch (IOException e) {
+				System.out.println("Not able to read the path: " + path);
+				continue;
+			}
+			// a file that was only touched keeps its words
+			if (old != null && entry.hash != null && entry.hash.equals(old.hash)) {
+				files.put(location, entry);
+				continue;
+			}
+			if (old != null) {
+				index.delete(location);
+				deleted.add(location);
+				files.remove(location);
+			}
+			pending.put(location, entry);
+			changed.add(path);
+		}
+
+		Iterator<String> locations = files.keySet().iterator();
+		while (locations.hasNext()) {
+			String location = locations.next();
+			if (!seen.contains(location) && Path.of(location).startsWith(directory)) {
+				index.delete(location);
+				deleted.add(location);
+				locations.remove();
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Records the new and changed files that were read into the index. Files
+	 * returned by {@link #changes(Path, InvertedIndex)} that are not given, like
+	 * files that could not be read, are left out of the manifest, so they are
+	 * read again the next time they are compared.
+	 *
+	 * @param read the files that were read
+	 */
+	public synchronized void indexed(Collection<Path> read) {
+		for (Path path : read) {
+			Entry entry = pending.get(path.toString());
+			if (entry != null) {
+				files.put(path.toString(), entry);
+			}
+		}
+		pending.clear();
+	}
+
+	/**
+	 * Adds the text files of a directory and its subdirectories to a list, the
+	 * same files InvertedIndexBuilder reads.
+	 *
+	 * @param directory the directory that will be listed
+	 * @param found the list the files are added to
+	 * @throws IOException if an IO error occurs
+	 */
+	private static void textFiles(Path directory, List<Path> found) throws IOException {
+		try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory)) {
+			for (Path path : listing) {
+				if (Files.isDirectory(path)) {
+					textFiles(path, found);
+				}
+				else if (InvertedIndexBuilder.isTextFile(path)) {
+					found.add(path);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the SHA-256 hash of the content of a file as a hex string.
+	 *
+	 * @param path the file to hash
+	 * @return the hash of the content
+	 * @throws IOException if an IO error occurs
+	 */
+	public static String hash(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+			byte[] bytes = digest.digest();
+			StringBuilder builder = new StringBuilder(bytes.length * 2);
+			for (byte b : bytes) {
+				builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+				builder.append(Character.forDigit(b & 0xF, 16));
+			}
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads the manifest from a file written by {@link #save(Path)}. Every line
+	 * holds one file as tab separated fields: location, size, modified time in
+	 * milliseconds and hash, which is empty for a file that changed after it was
+	 * read.
+	 *
+	 * @param path the file the manifest is read from
+	 * @throws IOException if an IO error occurs
+	 */
+	public synchronized void load(Path path) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				if (fields.length != 4) {
+					continue;
+				}
+				try {
+					String hash = fields[3].isEmpty() ? null : fields[3];
+					files.put(fields[0], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), hash));
+				} catch (NumberFormatException e) {
+					// skips the line like any other broken line
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the manifest to a file that can be read back by {@link #load(Path)}.
+	 * Files that were not hashed yet are hashed now. A file that changed since it
+	 * was read is written with an entry that never matches, because the words
+	 * written to the snapshot are the ones that were read, so next time they are
+	 * deleted and the file is read again.
+	 *
+	 * @param path the file the manifest is written to
+	 * @throws IOException if an IO error occurs
+	 */
+	public synchronized void save(Path path) throws IOException {
+		Iterator<Map.Entry<String, Entry>> entries = files.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<String, Entry> entry = entries.next();
+			if (entry.getValue().hash != null || entry.getValue() == STALE) {
+				continue;
+			}
+			Path file = Path.of(entry.getKey());
+			try {
+				if (Files.size(file) == entry.getValue().size
+						&& Files.getLastModifiedTime(file).toMillis() == entry.getValue().modified) {
+					entry.setValue(new Entry(entry.getValue().size, entry.getValue().modified, hash(file)));
+					continue;
+				}
+			} catch (IOException e) {
+				// a file that can no longer be read is treated like a file that changed
+			}
+			entry.setValue(STALE);
+		}
+
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			for (Map.Entry<String, Entry> entry : files.entrySet()) {
+				writer.write(entry.getKey());
+				writer.write('\t');
+				writer.write(Long.toString(entry.getValue().size));
+				writer.write('\t');
+				writer.write(Long.toString(entry.getValue().modified));
+				writer.write('\t');
+				writer.write(entry.getValue().hash == null ? "" : entry.getValue().hash);
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a class that stores what the manifest knows about a single file.
+	 */
+	private static class Entry {
+
+		/**
+		 * size of the file in bytes
+		 */
+		private final long size;
+
+		/**
+		 * last modified time of the file in milliseconds
+		 */
+		private final long modified;
+
+		/**
+		 * SHA-256 hash of the content, or {@code null} if it was not hashed yet
+		 */
+		private final String hash;
+
+		/**
+		 * @param size size of the file in bytes
+		 * @param modified last modified time of the file in milliseconds
+		 * @param hash SHA-256 hash of the content, or {@code null}
+		 */
+		public Entry(long size, long modified, String hash) {
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+		}
+	}
+}
@@ -0,0 +1,275 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author geoaldana
+ * This is a watcher that keeps a served index current while the files it was
+ * built from change. Every directory under the path is watched for created,
+ * modified and deleted files. Changes are collected until the files are quiet
+ * for a moment, and then published as one batch: the new and changed text files
+ * are read into a local index in the background, and a single merge replaces
+ * the changed and deleted files in the shared index. Searches only wait for
+ * that merge, and see either the old or the new files, never a file missing in
+ * between.
+ */
+public class IndexWatcher implements Runnable {
+
+	/**
+	 * The default number of milliseconds without changes before a batch is
+	 * published.
+	 */
+	public static final int DEFAULT_DELAY = 500;
+
+	/**
+	 * The longest a batch waits for the files to be quiet, as a multiple of the
+	 * delay.
+	 */
+	private static final int MAX_WAIT = 10;
+
+	/**
+	 * index that is kept current
+	 */
+	private final ThreadSafeInvertedIndex index;
+
+	/**
+	 * manifest of the files in the index
+	 */
+	private final IndexManifest manifest;
+
+	/**
+	 * the directory or file that is watched
+	 */
+	private final Path root;
+
+	/**
+	 * number of bytes read from a file at a time
+	 */
+	private final int readSize;
+
+	/**
+	 * milliseconds without changes before a batch is published
+	 */
+	private final long delay;
+
+	/**
+	 * watch service of the directories
+	 */
+	private final WatchService watcher;
+
+	/**
+	 * the watched directories by their keys
+	 */
+	private final HashMap<WatchKey, Path> directories;
+
+	/**
+	 * store the words of the files are kept in, or {@code null} if not kept
+	 */
+	private final DocumentStore documents;
+
+	/**
+	 * @param index index that is kept current
+	 * @param manifest manifest of the files in the index
+	 * @param root the directory or file that is watched
+	 * @param readSize number of bytes read from a file at a time
+	 * @param delay milliseconds without changes before a batch is published
+	 * @throws IOException if an IO error occurs
+	 */
+	public IndexWatcher(ThreadSafeInvertedIndex index, IndexManifest manifest, Path root, int readSize, long delay)
+			throws IOException {
+		this(index, manifest, root, readSize, delay, null);
+	}
+
+	/**
+	 * @param index index that is kept current
+	 * @param manifest manifest of the files in the index
+	 * @param root the directory or file that is watched
+	 * @param readSize number of bytes read from a file at a time
+	 * @param delay milliseconds without changes before a batch is published
+	 * @param documents store the words of the files are kept in, or {@code null}
+	 * @throws IOException if an IO error occurs
+	 */
+	public IndexWatcher(ThreadSafeInvertedIndex index, IndexManifest manifest, Path root, int readSize, long delay,
+			DocumentStore documents) throws IOException {
+		this.index = index;
+		this.documents = documents;
+		this.manifest = manifest;
+		this.root = root;
+		this.readSize = readSize;
+		this.delay = delay;
+		this.watcher = FileSystems.getDefault().newWatchService();
+		this.directories = new HashMap<>();
+		if (Files.isDirectory(root)) {
+			register(root);
+		}
+		else {
+			// a single file is watched through its directory
+			watch(root.getParent() == null ? Path.of("") : root.getParent());
+		}
+	}
+
+	/**
+	 * Starts watching in a daemon thread.
+	 *
+	 * @return the thread of the watcher
+	 */
+	public Thread start() {
+		Thread thread = new Thread(this, "index-watcher");
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Stops watching.
+	 */
+	public void close() {
+		try {
+			watcher.close();
+		} catch (IOException e) {
+			System.out.println("Not able to stop watching: " + root);
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				LinkedHashSet<Path> changed = new LinkedHashSet<>();
+				collect(watcher.take(), changed);
+				// waits for the files to be quiet so a batch holds every change of a burst
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay * MAX_WAIT);
+				WatchKey key;
+				while (System.nanoTime() < deadline && (key = watcher.poll(delay, TimeUnit.MILLISECONDS)) != null) {
+					collect(key, changed);
+				}
+				publish(changed);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// stopped by close
+		}
+	}
+
+	/**
+	 * Adds the paths of the events of a key to the changed paths and watches new
+	 * directories.
+	 *
+	 * @param key the key with events
+	 * @param changed the changed paths
+	 */
+	private void collect(WatchKey key, LinkedHashSet<Path> changed) {
+		Path directory = directories.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+				// events were lost, so everything is compared with the manifest
+				changed.add(root);
+				continue;
+			}
+			Path path = directory.resolve((Path) event.context());
+			if (!path.startsWith(root)) {
+				continue;
+			}
+			if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+				try {
+					register(path);
+				} catch (IOException e) {
+					System.out.println("Not able to watch the directory: " + path);
+				}
+			}
+			changed.add(path);
+		}
+		if (!key.reset()) {
+			directories.remove(key);
+		}
+	}
+
+	/**
+	 * Publishes a batch of changed paths. Every path is compared with the
+	 * manifest, the new and changed files are read into a local index, and the
+	 * local index is merged, which also purges the changed and deleted files.
+	 * Only the files that were read are recorded in the manifest, and the words
+	 * of deleted files that were not read again are removed from the documents.
+	 * Only the suggestions and cached prefixes of the words that changed are
+	 * published again.
+	 *
+	 * @param changed the changed paths
+	 */
+	private void publish(LinkedHashSet<Path> changed) {
+		LinkedHashSet<Path> files = new LinkedHashSet<>();
+		HashSet<String> deleted = new HashSet<>();
+		for (Path path : changed) {
+			// other files next to a single watched file are ignored
+			if (!path.equals(root) && Files.isRegularFile(path) && !InvertedIndexBuilder.isTextFile(path)) {
+				continue;
+			}
+			try {
+				files.addAll(manifest.changes(path, index, deleted));
+			} catch (IOException e) {
+				System.out.println("Not able to read the path: " + path);
+			}
+		}
+
+		InvertedIndex local = index.local();
+		ArrayList<Path> read = new ArrayList<>();
+		for (Path file : files) {
+			try {
+				InvertedIndexBuilder.read(file, local, readSize, documents);
+				read.add(file);
+				deleted.remove(file.toString());
+			} catch (IOException e) {
+				System.out.println("Not able to read the path: " + file);
+			}
+		}
+		index.merge(local);
+		manifest.indexed(read);
+		if (documents != null) {
+			for (String location : deleted) {
+				documents.remove(location);
+			}
+		}
+		index.publishChanges();
+	}
+
+	/**
+	 * Watches a single directory.
+	 *
+	 * @param directory the directory to watch
+	 * @throws IOException if an IO error occurs
+	 */
+	private void watch(Path directory) throws IOException {
+		WatchKey key = directory.toAbsolutePath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		directories.put(key, directory);
+	}
+
+	/**
+	 * Watches a directory and its subdirectories.
+	 *
+	 * @param directory the directory to watch
+	 * @throws IOException if an IO error occurs
+	 */
+	private void register(Path directory) throws IOException {
+		watch(directory);
+		try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory)) {
+			for (Path path : listing) {
+				if (Files.isDirectory(path)) {
+					register(path);
+				}
+			}
+		}
+	}
+}
@@ -1,9 +1,18 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -19,7 +28,7 @@ import java.util.TreeSet;
  *         documents and position within those documents where those word stems
  *         were found.
  */
-public class InvertedIndex {
+public class InvertedIndex implements InvertedIndexInterface {
 
 	/**
 	 * This is a nested data structure that will store the word, file, and location
@@ -32,6 +41,57 @@ public class InvertedIndex {
 	 */
 	private final TreeMap<String, Integer> wordCount;
 
+	/**
+	 * This stores the locations that were deleted but are still in the data
+	 * structure until they are purged.
+	 */
+	private final HashSet<String> tombstones;
+
+	/**
+	 * This stores the words as they were in the text before they were stemmed, by
+	 * their stem, so suggestions can show words that were read instead of stems.
+	 */
+	private final WordForms forms;
+
+	/**
+	 * This says whether the builders record the words the stems were stemmed
+	 * from, which only an index that is served suggests.
+	 */
+	private volatile boolean recordForms;
+
+	/**
+	 * This is the generation of the data structure, which changes every time
+	 * the data structure changes.
+	 */
+	private long generation;
+
+	/**
+	 * This caches the expanded postings of short prefixes for partial searches,
+	 * and is only created when the index is published, so indexes that are only
+	 * built and merged never have one.
+	 */
+	private volatile PrefixCache prefixes;
+
+	/**
+	 * This suggests completions of prefixes, and is built when published, so
+	 * indexes that are only built and merged never have one.
+	 */
+	private volatile SuggestionTrie suggestions;
+
+	/**
+	 * This stores the words whose locations changed since the index was
+	 * published, so only they are published again. Nothing is stored until the
+	 * index is published.
+	 */
+	private final HashSet<String> changed;
+
+	/**
+	 * This stores the words the stems that lost every location since the index
+	 * was published were stemmed from, so they can be taken out of the
+	 * suggestions.
+	 */
+	private final WordForms purged;
+
 	/**
 	 * Constructor
 	 */
@@ -42,6 +102,13 @@ public class InvertedIndex {
 		 */
 		this.map = new TreeMap<>();
 		this.wordCount = new TreeMap<>();
+		this.tombstones = new HashSet<>();
+		this.forms = new WordForms();
+		this.recordForms = false;
+		this.prefixes = null;
+		this.suggestions = null;
+		this.changed = new HashSet<>();
+		this.purged = new WordForms();
 	}
 
 	/**
@@ -54,6 +121,10 @@ public class InvertedIndex {
 	 * @param position the position that will be added to the Inverted Index
 	 */
 	public void add(String word, String path, int position) {
+		generation++;
+		if (suggestions != null) {
+			changed.add(word);
+		}
 		// if does not contain word
 		map.putIfAbsent(word, new TreeMap<>());
 		// if does not contain word and path
@@ -66,6 +137,362 @@ public class InvertedIndex {
 	}
 
 
+	/**
+	 * This is a function that records a word as it was in the text before it was
+	 * stemmed. The suggestions show these words in place of their stem, and a
+	 * stem without any is shown as it is.
+	 *
+	 * @param word the stem that was added to the index
+	 * @param form the word the stem was stemmed from
+	 */
+	public void addForm(String word, CharSequence form) {
+		forms.add(word, form);
+	}
+
+	/**
+	 * This is a function that records the words of a file or page as they were
+	 * in the text before they were stemmed, like {@link #addForm(String, CharSequence)}
+	 * for every word, so a shared index is only changed once for them.
+	 *
+	 * @param words the words by their stem
+	 */
+	public void addForms(WordForms words) {
+		forms.addAll(words);
+	}
+
+	/**
+	 * This is a function that says whether the builders record the words the
+	 * stems were stemmed from, which only the suggestions of an index that is
+	 * served need. Indexes that are not served leave them out, so reading the
+	 * files does not pay for them.
+	 *
+	 * @param record whether the words are recorded
+	 */
+	public void recordForms(boolean record) {
+		this.recordForms = record;
+	}
+
+	/**
+	 * @return true if the builders record the words the stems were stemmed from
+	 */
+	public boolean recordsForms() {
+		return recordForms;
+	}
+
+	/**
+	 * This is a function that returns a new empty index the words of a file are
+	 * read into before they are merged into this one, which records the words
+	 * the stems were stemmed from if this one does.
+	 *
+	 * @return the new index
+	 */
+	public InvertedIndex local() {
+		InvertedIndex local = new InvertedIndex();
+		local.recordForms = recordForms;
+		return local;
+	}
+
+	/**
+	 * This is a function that deletes a location, for example a file that was
+	 * removed or changed. The location only gets a tombstone, and its words stay
+	 * in the index until the tombstones are purged, which happens at the next
+	 * merge or call to purge. Removing every deleted location in one pass over the
+	 * words is much cheaper than a pass for every location.
+	 *
+	 * @param location the location that will be deleted
+	 */
+	public void delete(String location) {
+		tombstones.add(location);
+	}
+
+	/**
+	 * This is a function that removes the words and word counts of every location
+	 * that was deleted since the last purge.
+	 */
+	public void purge() {
+		removeTombstones();
+	}
+
+	/**
+	 * Removes the locations that have tombstones in one pass over the words.
+	 */
+	private void removeTombstones() {
+		if (tombstones.isEmpty()) {
+			return;
+		}
+		boolean published = suggestions != null;
+		Iterator<Map.Entry<String, TreeMap<String, TreeSet<Integer>>>> words = map.entrySet().iterator();
+		while (words.hasNext()) {
+			Map.Entry<String, TreeMap<String, TreeSet<Integer>>> word = words.next();
+			if (word.getValue().keySet().removeAll(tombstones) && published) {
+				changed.add(word.getKey());
+			}
+			if (word.getValue().isEmpty()) {
+				String[] removed = forms.get(word.getKey());
+				if (published && removed != null) {
+					for (String form : removed) {
+						purged.add(word.getKey(), form);
+					}
+				}
+				forms.remove(word.getKey());
+				words.remove();
+			}
+		}
+		wordCount.keySet().removeAll(tombstones);
+		tombstones.clear();
+		generation++;
+	}
+
+	/**
+	 * This is a function that returns the generation of the index. It changes
+	 * every time words are added, merged or purged, so anything computed from
+	 * the index is out of date once the generation is different.
+	 *
+	 * @return the generation of the index
+	 */
+	public long generation() {
+		return generation;
+	}
+
+	/**
+	 * This is a function that is called once the index is ready to be searched.
+	 * It expands every prefix of the words up to PrefixCache.LENGTH letters ahead
+	 * of time, so partial searches of short prefixes do not have to walk all the
+	 * words that start with them. The shortest prefixes are expanded last, so
+	 * they are the last to be evicted. The suggestions are built again from all
+	 * the words, because words may have lost locations.
+	 */
+	public void publish() {
+		synchronized (changed) {
+			changed.clear();
+			purged.clear();
+		}
+		SuggestionTrie trie = new SuggestionTrie(SuggestionTrie.DEFAULT_SIZE);
+		for (Map.Entry<String, TreeMap<String, TreeSet<Integer>>> word : map.entrySet()) {
+			suggest(trie, word.getKey(), word.getValue().size());
+		}
+		suggestions = trie;
+
+		PrefixCache prefixes = prefixCache();
+		for (int length = PrefixCache.LENGTH; length > 0; length--) {
+			String last = null;
+			for (String word : map.keySet()) {
+				if (word.length() < length || (last != null && word.startsWith(last))) {
+					continue;
+				}
+				last = word.substring(0, length);
+				prefixes.put(last, expand(last, null), generation);
+			}
+		}
+	}
+
+	/**
+	 * This is a function that publishes the index again after some of its words
+	 * were added, merged or purged, like after the files that changed in a
+	 * watched directory were read. Only the suggestions of the words whose
+	 * locations changed are updated, and only the prefixes of those words are
+	 * expanded again, while the other prefixes stay cached. An index that was
+	 * never published is published in full.
+	 */
+	public void publishChanges() {
+		SuggestionTrie suggestions = this.suggestions;
+		if (suggestions == null) {
+			publish();
+			return;
+		}
+		TreeSet<String> words;
+		synchronized (changed) {
+			words = new TreeSet<>(changed);
+			for (String word : words) {
+				// the words of a stem that lost every location are taken out first
+				String[] removed = purged.get(word);
+				if (removed != null) {
+					for (String form : removed) {
+						suggestions.update(form, word, 0);
+					}
+				}
+				else if (!map.containsKey(word)) {
+					suggestions.update(word, word, 0);
+				}
+				if (map.containsKey(word)) {
+					suggest(suggestions, word, map.get(word).size());
+				}
+			}
+			changed.clear();
+			purged.clear();
+		}
+
+		// the empty prefix may be cached by a search too, but is not expanded ahead
+		TreeSet<String> expanded = new TreeSet<>();
+		for (int length = PrefixCache.LENGTH; length >= 0; length--) {
+			for (String word : words) {
+				if (word.length() >= length) {
+					expanded.add(word.substring(0, length));
+				}
+			}
+		}
+		PrefixCache prefixes = prefixCache();
+		prefixes.advance(expanded, generation);
+		for (int length = PrefixCache.LENGTH; length > 0; length--) {
+			for (String prefix : expanded) {
+				if (prefix.length() == length) {
+					prefixes.put(prefix, expand(prefix, null), generation);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the prefix cache, which is created the first time the index is
+	 * published.
+	 *
+	 * @return the prefix cache
+	 */
+	private synchronized PrefixCache prefixCache() {
+		if (prefixes == null) {
+			prefixes = new PrefixCache((long) PrefixCache.DEFAULT_MEGABYTES << 20);
+		}
+		return prefixes;
+	}
+
+	/**
+	 * This is a function that updates the suggestions of words whose locations
+	 * were added since the index was published, like the words of a crawled page.
+	 * An index that was never published has no suggestions to update.
+	 *
+	 * @param words the words that were added
+	 */
+	public void refresh(Collection<String> words) {
+		SuggestionTrie suggestions = this.suggestions;
+		if (suggestions == null) {
+			return;
+		}
+		for (String word : words) {
+			if (map.containsKey(word)) {
+				suggest(suggestions, word, map.get(word).size());
+			}
+		}
+	}
+
+	/**
+	 * Adds the words a stem was stemmed from to the suggestions, or the stem if
+	 * none were recorded, like for an index read from a snapshot.
+	 *
+	 * @param trie the suggestions
+	 * @param word the stem
+	 * @param frequency the number of locations of the stem
+	 */
+	private void suggest(SuggestionTrie trie, String word, int frequency) {
+		String[] words = forms.get(word);
+		if (words == null) {
+			trie.update(word, word, frequency);
+			return;
+		}
+		for (String form : words) {
+			trie.update(form, word, frequency);
+		}
+	}
+
+	/**
+	 * This is a function that returns the best completions of a prefix, which are
+	 * words that were read, at most one for every stem, ranked by the number of
+	 * locations of their stem. There are none until the index is published.
+	 *
+	 * @param prefix the prefix of the words
+	 * @param limit the most completions returned
+	 * @return the completions, best first
+	 */
+	public List<String> suggest(String prefix, int limit) {
+		SuggestionTrie suggestions = this.suggestions;
+		if (suggestions == null) {
+			return List.of();
+		}
+		return suggestions.suggest(prefix, limit);
+	}
+
+	/**
+	 * This is a function that merges the postings of every word that starts with
+	 * a prefix into the number of matches by location, unless a deadline passes
+	 * first.
+	 *
+	 * @param prefix the prefix
+	 * @param deadline the deadline of the search, or {@code null} if there is none
+	 * @return the merged postings, or {@code null} if the deadline passed
+	 */
+	private PrefixCache.Postings expand(String prefix, Deadline deadline) {
+		HashMap<String, Integer> matches = new HashMap<>();
+		for (Map.Entry<String, TreeMap<String, TreeSet<Integer>>> word : map.tailMap(prefix).entrySet()) {
+			if (!word.getKey().startsWith(prefix)) {
+				break;
+			}
+			if (deadline != null && deadline.passed()) {
+				return null;
+			}
+			for (Map.Entry<String, TreeSet<Integer>> location : word.getValue().entrySet()) {
+				matches.merge(location.getKey(), location.getValue().size(), Integer::sum);
+			}
+		}
+		return new PrefixCache.Postings(matches);
+	}
+
+	/**
+	 * This is a function that writes the index to a binary snapshot that can be
+	 * read back by readSnapshot, which is much faster than building the index
+	 * again from the files.
+	 *
+	 * @param path the file the snapshot is written to
+	 * @throws IOException if an IO error occurs
+	 */
+	public void writeSnapshot(Path path) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+			out.writeInt(wordCount.size());
+			for (Map.Entry<String, Integer> entry : wordCount.entrySet()) {
+				DiskInvertedIndex.writeString(out, entry.getKey());
+				out.writeInt(entry.getValue());
+			}
+			out.writeInt(map.size());
+			TreeMap<String, int[]> postings = new TreeMap<>();
+			for (Map.Entry<String, TreeMap<String, TreeSet<Integer>>> entry : map.entrySet()) {
+				postings.clear();
+				for (Map.Entry<String, TreeSet<Integer>> location : entry.getValue().entrySet()) {
+					postings.put(location.getKey(), location.getValue().stream().mapToInt(Integer::intValue).toArray());
+				}
+				DiskInvertedIndex.write(out, entry.getKey(), postings);
+			}
+		}
+	}
+
+	/**
+	 * This is a function that adds the words and word counts of a snapshot written
+	 * by writeSnapshot. Nothing is added if the snapshot can not be read.
+	 *
+	 * @param path the file the snapshot is read from
+	 * @throws IOException if an IO error occurs
+	 */
+	public void readSnapshot(Path path) throws IOException {
+		InvertedIndex snapshot = new InvertedIndex();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+			int locations = in.readInt();
+			for (int i = 0; i < locations; i++) {
+				snapshot.wordCount.put(DiskInvertedIndex.readString(in), in.readInt());
+			}
+			int words = in.readInt();
+			for (int i = 0; i < words; i++) {
+				TreeMap<String, TreeSet<Integer>> postings = new TreeMap<>();
+				snapshot.map.put(DiskInvertedIndex.readString(in), postings);
+				for (Map.Entry<String, int[]> entry : DiskInvertedIndex.readPostings(in).entrySet()) {
+					TreeSet<Integer> positions = new TreeSet<>();
+					for (int position : entry.getValue()) {
+						positions.add(position);
+					}
+					postings.put(entry.getKey(), positions);
+				}
+			}
+		}
+		merge(snapshot);
+	}
+
 	/**
 	 * This is function that works the same way as path checker but for the index
 	 * flag. Calls asInverted function that will output the data into pretty Json
@@ -223,30 +650,34 @@ public class InvertedIndex {
 		for (String location : map.get(word).keySet()) {
 			// if the location is in the map, get the result and update its matches and score
 			if (lookup.containsKey(location)) {
-				lookup.get(location).updateResults(word);
+				lookup.get(location).updateResults(map.get(word).get(location).size());
 			} else {
 				if (!lookup.containsKey(location)) { 
-					SearchResult newResult = new SearchResult(location);
+					SearchResult newResult = new SearchResult(location, wordCount.get(location));
 					results.add(newResult);
 					lookup.put(location, newResult);
 				}
-				lookup.get(location).updateResults(word);
+				lookup.get(location).updateResults(map.get(word).get(location).size());
 			}
 		}
 	}
 
 	/**
-	 * This is a function that does an exact search when called. It works by
-	 * checking to see if the inverted index contains an exact word or match that is
-	 * being searched for. It puts the results of information in an Array List.
-	 * 
-	 * @param queries these are the queries that are used to search
+	 * This is a function that does an exact search that stops at a deadline with
+	 * the results found so far.
+	 *
+	 * @param queries  these are the queries that are used to search
+	 * @param deadline the deadline of the search, or {@code null} if there is none
 	 * @return returns an ArrayList of results that will be output in Json format
 	 */
-	public ArrayList<SearchResult> exactSearch(Collection<String> queries) {
+	public ArrayList<SearchResult> exactSearch(Collection<String> queries, Deadline deadline) {
 		HashMap<String, SearchResult> lookup = new HashMap<>();
 		ArrayList<SearchResult> results = new ArrayList<>();
 		for (String queryKey : queries) {
+			// the results found so far are returned once the deadline passes
+			if (deadline != null && deadline.passed()) {
+				break;
+			}
 			if (map.containsKey(queryKey)) {
 				resultHandler(queryKey, results, lookup);
 			}
@@ -256,20 +687,53 @@ public class InvertedIndex {
 	}
 
 	/**
-	 * This is a function that does an partial search when called. It works by
-	 * checking to see if the inverted index contains a word or match starts with
-	 * the query word. It puts the results of information in an Array List.
-	 * 
-	 * @param queries these are the queries that are used to search
+	 * This is a function that does a partial search that stops at a deadline with
+	 * the results found so far.
+	 *
+	 * @param queries  these are the queries that are used to search
+	 * @param deadline the deadline of the search, or {@code null} if there is none
 	 * @return returns an ArrayList of results that will be output in Json format
 	 */
-	public ArrayList<SearchResult> partialSearch(Collection<String> queries) {
+	public ArrayList<SearchResult> partialSearch(Collection<String> queries, Deadline deadline) {
 		HashMap<String, SearchResult> lookup = new HashMap<>();
 		ArrayList<SearchResult> results = new ArrayList<>();
 		for (String queryKey : queries) {
+			// the results found so far are returned once the deadline passes
+			if (deadline != null && deadline.passed()) {
+				break;
+			}
+			// short prefixes match many words, so their merged postings are cached once published
+			PrefixCache prefixes = this.prefixes;
+			if (prefixes != null && queryKey.length() <= PrefixCache.LENGTH) {
+				PrefixCache.Postings postings = prefixes.get(queryKey, generation);
+				if (postings == null) {
+					postings = expand(queryKey, deadline);
+					// an expansion cut short by the deadline is not cached
+					if (postings == null) {
+						break;
+					}
+					prefixes.put(queryKey, postings, generation);
+				}
+				for (int i = 0; i < postings.size(); i++) {
+					if (deadline != null && deadline.passed()) {
+						break;
+					}
+					SearchResult result = lookup.get(postings.location(i));
+					if (result == null) {
+						result = new SearchResult(postings.location(i), wordCount.get(postings.location(i)));
+						results.add(result);
+						lookup.put(postings.location(i), result);
+					}
+					result.updateResults(postings.matches(i));
+				}
+				continue;
+			}
 			// used tailMap instead of get because instead of returning a stem that matches
 			// it returns the whole word with it
 			for (String word : map.tailMap(queryKey).keySet()) {
+				if (deadline != null && deadline.passed()) {
+					break;
+				}
 				if (word.startsWith(queryKey)) {
 					resultHandler(word, results, lookup);
 				}
@@ -281,20 +745,94 @@ public class InvertedIndex {
 	}
 
 	/**
-	 * This is a function that checks to see if the exact flag is called. If yes
-	 * then an exactSearch is called if not a partialSearch is called.
-	 * 
-	 * @param queries these are the queries that are used to search
-	 * @param exact   this is a boolean that will be checked to determine what
-	 *                search to do
-	 * @return returns a search - either exactSearch or partialSearch
-	 */
-	public ArrayList<SearchResult> search(Collection<String> queries, boolean exact) {
-		if (exact) {
-			return exactSearch(queries);
-		} else {
-			return partialSearch(queries);
+	 * This is a function that does a fuzzy search that stops at a deadline with
+	 * the results found so far.
+	 *
+	 * @param queries  these are the queries that are used to search
+	 * @param deadline the deadline of the search, or {@code null} if there is none
+	 * @return returns an ArrayList of results that will be output in Json format
+	 */
+	public ArrayList<SearchResult> fuzzySearch(Collection<String> queries, Deadline deadline) {
+		HashMap<String, SearchResult> lookup = new HashMap<>();
+		ArrayList<SearchResult> results = new ArrayList<>();
+		for (String queryKey : queries) {
+			// the results found so far are returned once the deadline passes
+			if (deadline != null && deadline.passed()) {
+				break;
+			}
+			LevenshteinAutomaton automaton = new LevenshteinAutomaton(queryKey, LevenshteinAutomaton.distance(queryKey));
+			// running out of words ends the intersection when the deadline passes
+			for (String word : automaton.intersect(w -> deadline != null && deadline.passed() ? null : map.ceilingKey(w))) {
+				if (deadline != null && deadline.passed()) {
+					break;
+				}
+				resultHandler(word, results, lookup);
+			}
 		}
+		Collections.sort(results);
+		return results;
+	}
+
+	/**
+	 * This is a function that returns the words a search of a mode matches, the
+	 * query words for an exact search, the words starting with them for a
+	 * partial search and the words close to them for a fuzzy search. It stops at
+	 * a deadline with the words found so far.
+	 *
+	 * @param queries  these are the queries that are used to search
+	 * @param mode     the search, "exact", "fuzzy" or "partial"
+	 * @param deadline the deadline, or {@code null} if there is none
+	 * @return the matched words
+	 */
+	public TreeSet<String> matches(Collection<String> queries, String mode, Deadline deadline) {
+		TreeSet<String> words = new TreeSet<>();
+		for (String queryKey : queries) {
+			if (deadline != null && deadline.passed()) {
+				break;
+			}
+			if (mode.equals("exact")) {
+				if (map.containsKey(queryKey)) {
+					words.add(queryKey);
+				}
+			}
+			else if (mode.equals("fuzzy")) {
+				LevenshteinAutomaton automaton = new LevenshteinAutomaton(queryKey, LevenshteinAutomaton.distance(queryKey));
+				words.addAll(automaton.intersect(w -> deadline != null && deadline.passed() ? null : map.ceilingKey(w)));
+			}
+			else {
+				for (String word : map.tailMap(queryKey).keySet()) {
+					if (!word.startsWith(queryKey) || (deadline != null && deadline.passed())) {
+						break;
+					}
+					words.add(word);
+				}
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * This is a function that returns the positions of some words in a location,
+	 * like the words a search matched in one of its results. It stops at a
+	 * deadline with the positions found so far.
+	 *
+	 * @param words    the words
+	 * @param location the location
+	 * @param deadline the deadline, or {@code null} if there is none
+	 * @return the positions of the words in the location
+	 */
+	public TreeSet<Integer> positions(Collection<String> words, String location, Deadline deadline) {
+		TreeSet<Integer> positions = new TreeSet<>();
+		for (String word : words) {
+			if (deadline != null && deadline.passed()) {
+				break;
+			}
+			TreeMap<String, TreeSet<Integer>> locations = map.get(word);
+			if (locations != null && locations.containsKey(location)) {
+				positions.addAll(locations.get(location));
+			}
+		}
+		return positions;
 	}
 
 	@Override
@@ -303,11 +841,15 @@ public class InvertedIndex {
 	}
 
 	/**
-	 * This is a function that will merge the local data and the shared data together
+	 * This is a function that will merge the local data and the shared data
+	 * together. Deleted locations are purged first, so a location that was
+	 * deleted and read again only has its new words.
 	 * 
 	 * @param local the local data that will be merged
 	 */
 	public void merge(InvertedIndex local) {
+		removeTombstones();
+		generation++;
 		for (String word : local.map.keySet()) {
 			if (!map.containsKey(word)) {
 				this.map.put(word, local.map.get(word));
@@ -323,6 +865,10 @@ public class InvertedIndex {
 				}
 			}
 		}
+		forms.addAll(local.forms);
+		if (suggestions != null) {
+			changed.addAll(local.map.keySet());
+		}
 
 		for (String path: local.wordCount.keySet()) {
 			if (!this.wordCount.containsKey(path)) {
@@ -334,12 +880,44 @@ public class InvertedIndex {
 		}
 	}
 
+	/**
+	 * This is a function that will merge the local data and the shared data
+	 * together, moving every position of the local data by an offset. It is used
+	 * for parts of a file that were indexed separately. Deleted locations are
+	 * purged first.
+	 *
+	 * @param local the local data that will be merged
+	 * @param offset the amount added to every local position
+	 */
+	public void merge(InvertedIndex local, int offset) {
+		removeTombstones();
+		generation++;
+		for (String word : local.map.keySet()) {
+			map.putIfAbsent(word, new TreeMap<>());
+			for (String path : local.map.get(word).keySet()) {
+				map.get(word).putIfAbsent(path, new TreeSet<>());
+				TreeSet<Integer> positions = map.get(word).get(path);
+				for (int position : local.map.get(word).get(path)) {
+					positions.add(position + offset);
+				}
+			}
+		}
+		forms.addAll(local.forms);
+		if (suggestions != null) {
+			changed.addAll(local.map.keySet());
+		}
+
+		for (String path : local.wordCount.keySet()) {
+			this.wordCount.put(path, Math.max(this.wordCount.getOrDefault(path, 0), local.wordCount.get(path) + offset));
+		}
+	}
+
 	/**
 	 * @author geoaldana This is a class that stores the search results and
 	 *         implements the Comparable Interface. This is where the different
 	 *         values for the search result are initialized.
 	 */
-	public class SearchResult implements Comparable<SearchResult> {
+	public static class SearchResult implements Comparable<SearchResult> {
 
 		/**
 		 * Initializes the location or where for result.
@@ -356,11 +934,18 @@ public class InvertedIndex {
 		 */
 		private double score;
 
+		/**
+		 * Initializes the number of words in the location.
+		 */
+		private final int wordCounts;
+
 		/**
 		 * @param where location
+		 * @param wordCounts number of words in the location
 		 */
-		public SearchResult(String where) {
+		public SearchResult(String where, int wordCounts) {
 			this.where = where;
+			this.wordCounts = wordCounts;
 		}
 
 		/**
@@ -388,16 +973,14 @@ public class InvertedIndex {
 		 * @return the number of words in file
 		 */
 		public int getwordCounts() {
-			return wordCount(where);
+			return wordCounts;
 		}
 
 		/**
-		 * @param word that will be taken to initiate the updating of results
+		 * @param matches number of new matches in the location
 		 */
-		private void updateResults(String word) {
-			int newCount = map.get(word).get(where).size();
-			count = count + newCount;
-			int wordCounts = wordCount(where);
+		void updateResults(int matches) {
+			count = count + matches;
 			score = (double) count / wordCounts;
 		}
 
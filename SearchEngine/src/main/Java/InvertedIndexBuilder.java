@@ -1,10 +1,14 @@
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * @author geoaldana
@@ -23,7 +27,37 @@ public class InvertedIndexBuilder {
 	 * @param index that it will use to build
 	 */
 	public InvertedIndexBuilder(InvertedIndex index) {
+		this(index, ChannelLineReader.DEFAULT_SIZE);
+	}
+
+	/**
+	 * Constructor for InvertedIndexBuilder
+	 * @param index that it will use to build
+	 * @param readSize number of bytes read from a file at a time
+	 */
+	public InvertedIndexBuilder(InvertedIndex index, int readSize) {
+		this(index, readSize, null);
+	}
+
+	/**
+	 * Constructor for InvertedIndexBuilder
+	 * @param index that it will use to build
+	 * @param readSize number of bytes read from a file at a time
+	 * @param documents store the words of the files are kept in, or {@code null}
+	 */
+	public InvertedIndexBuilder(InvertedIndex index, int readSize, DocumentStore documents) {
 		this.index = index;
+		this.readSize = readSize;
+		this.documents = documents;
+	}
+
+	/**
+	 * Constructor for builders that read the files into an index of their own,
+	 * by overriding {@link #read(Path)}
+	 * @param readSize number of bytes read from a file at a time
+	 */
+	protected InvertedIndexBuilder(int readSize) {
+		this(null, readSize, null);
 	}
 
 	/**
@@ -31,6 +65,27 @@ public class InvertedIndexBuilder {
 	 */
 	private final InvertedIndex index;
 
+	/**
+	 * Number of bytes read from a file at a time
+	 */
+	private final int readSize;
+
+	/**
+	 * Store the words of the files are kept in, or {@code null} if not kept
+	 */
+	private final DocumentStore documents;
+
+	/**
+	 * The files that changed during an incremental build, or {@code null} if
+	 * every file is read
+	 */
+	private volatile Set<Path> changed;
+
+	/**
+	 * The files that could not be read during an incremental build
+	 */
+	private final Set<Path> failures = ConcurrentHashMap.newKeySet();
+
 	/**
 	 * This is a function that builds the inverted index by calling the pathChecker 
 	 * function. It also checks for .md files by calling read directly if the description
@@ -49,6 +104,68 @@ public class InvertedIndexBuilder {
 		}
 	}
 
+	/**
+	 * This is a function that builds the index again after files changed. The
+	 * manifest finds the files that are new or changed and deletes the changed
+	 * and removed files from the index, then only the new and changed files are
+	 * read. Only the files that were read are recorded in the manifest.
+	 *
+	 * @param directory that is received from the argument
+	 * @param manifest the manifest of the files that were indexed before
+	 * @throws IOException if an IO error occurs
+	 */
+	public void buildIndex(Path directory, IndexManifest manifest) throws IOException {
+		Set<Path> files = manifest.update(directory, index);
+		if (files.isEmpty()) {
+			return;
+		}
+		changed = files;
+		failures.clear();
+		try {
+			buildIndex(directory);
+			LinkedHashSet<Path> read = new LinkedHashSet<>(files);
+			read.removeAll(failures);
+			manifest.indexed(read);
+		} finally {
+			changed = null;
+		}
+	}
+
+	/**
+	 * Reports a file that could not be read, which is left out of the manifest
+	 * of an incremental build so it is read again next time. Builders that read
+	 * files on other threads call it instead of throwing.
+	 *
+	 * @param path the file that could not be read
+	 */
+	protected void failed(Path path) {
+		System.out.println("Not able to read the path: " + path);
+		failures.add(path);
+	}
+
+	/**
+	 * Returns whether a path is a text file, which ends with .txt or .text.
+	 *
+	 * @param path the path to check
+	 * @return true if the path is a text file
+	 */
+	public static boolean isTextFile(Path path) {
+		String name = path.toString().toLowerCase();
+		return name.endsWith(".txt") || name.endsWith(".text");
+	}
+
+	/**
+	 * Returns whether a file found in a directory has to be read, which is every
+	 * text file, or during an incremental build only the ones that changed.
+	 *
+	 * @param path the file that was found
+	 * @return true if the file has to be read
+	 */
+	public boolean shouldRead(Path path) {
+		Set<Path> files = changed;
+		return isTextFile(path) && (files == null || files.contains(path));
+	}
+
 	/**
 	 * This is function that checks whether or not a path that is passed is a
 	 * directory or not. If it is a directory it checks the paths in the listing and
@@ -62,7 +179,6 @@ public class InvertedIndexBuilder {
 	 */
 	private void pathChecker(Path directory) throws IOException {
 		// if argument is directory
-		String directoryHelper = directory.toString().toLowerCase();
 		if (Files.isDirectory(directory)) {
 			// initialize directory stream
 			try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory)) {
@@ -71,7 +187,7 @@ public class InvertedIndexBuilder {
 					pathChecker(paths);
 			}
 		} 
-		else if (directoryHelper.endsWith(".txt") || directoryHelper.endsWith(".text")) {
+		else if (shouldRead(directory)) {
 			// if not directory
 			read(directory);
 		}
@@ -86,7 +202,7 @@ public class InvertedIndexBuilder {
 	 * @throws IOException if an IO error occurs
 	 */
 	public void read(Path path) throws IOException {
-		read(path, this.index);
+		read(path, this.index, this.readSize, this.documents);
 	}
 
 	/**
@@ -99,21 +215,98 @@ public class InvertedIndexBuilder {
 	 * @throws IOException if an IO error occurs
 	 */
 	public static void read(Path path, InvertedIndex index) throws IOException {
+		read(path, index, ChannelLineReader.DEFAULT_SIZE);
+	}
+
+	/**
+	 * This is a function that reads a path through a file channel, reading the
+	 * given number of bytes at a time. Parsing of the words is done here.
+	 *
+	 * @param path the path that the read function will read
+	 * @param index to call InvertedIndex
+	 * @param readSize number of bytes read from the file at a time
+	 * @throws IOException if an IO error occurs
+	 */
+	public static void read(Path path, InvertedIndex index, int readSize) throws IOException {
+		read(path, index, readSize, null);
+	}
+
+	/**
+	 * This is a function that reads a path like read(Path, InvertedIndex, int)
+	 * and also keeps the words of the file in a document store, so snippets of
+	 * the file can be shown.
+	 *
+	 * @param path the path that the read function will read
+	 * @param index to call InvertedIndex
+	 * @param readSize number of bytes read from the file at a time
+	 * @param documents store the words are kept in, or {@code null}
+	 * @throws IOException if an IO error occurs
+	 */
+	public static void read(Path path, InvertedIndex index, int readSize, DocumentStore documents) throws IOException {
+		DocumentStore.Writer writer = documents == null ? null : documents.writer();
 		// calls to read the file/path
-		try(BufferedReader reader = Files.newBufferedReader(path)){
-			String line;
-			// increment i for location or position of word - can not start in 0 for array
-			int i = 1;
-			Stemmer stemmer = new SnowballStemmer(TextFileStemmer.DEFAULT);
-			String location = path.toString();
-			while ((line = reader.readLine()) != null) {
-				// parses words
-				String[] wordsInLine = TextParser.parse(line);
-				// for the words in the array they are added
-				for (String word : wordsInLine) {
-					index.add(stemmer.stem(word).toString(), location, i++);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			read(new ChannelLineReader(channel, 0, channel.size(), readSize), path.toString(), index, writer);
+		}
+		if (writer != null) {
+			documents.put(path.toString(), List.of(writer.finish()));
+		}
+	}
+
+	/**
+	 * This is a function that parses the lines of a reader and adds the stems to
+	 * the index under the location, numbering the words from 1.
+	 *
+	 * @param reader the reader of the text
+	 * @param location the location the stems are added under
+	 * @param index to call InvertedIndex
+	 * @return the number of words that were added
+	 * @throws IOException if an IO error occurs
+	 */
+	public static int read(ChannelLineReader reader, String location, InvertedIndex index) throws IOException {
+		return read(reader, location, index, null);
+	}
+
+	/**
+	 * This is a function that parses the lines of a reader like
+	 * read(ChannelLineReader, String, InvertedIndex) and also writes the clean
+	 * words to a document store writer. If the index records the words the stems
+	 * were stemmed from, they are collected for the whole text and added to the
+	 * index once.
+	 *
+	 * @param reader the reader of the text
+	 * @param location the location the stems are added under
+	 * @param index to call InvertedIndex
+	 * @param writer the writer of the words, or {@code null}
+	 * @return the number of words that were added
+	 * @throws IOException if an IO error occurs
+	 */
+	public static int read(ChannelLineReader reader, String location, InvertedIndex index, DocumentStore.Writer writer)
+			throws IOException {
+		CharSequence line;
+		// increment i for location or position of word - can not start in 0 for array
+		int i = 1;
+		Stemmer stemmer = CachedStemmer.get();
+		TextTokenizer tokenizer = new TextTokenizer();
+		WordForms forms = index.recordsForms() ? new WordForms() : null;
+		while ((line = reader.readLine()) != null) {
+			// parses words
+			tokenizer.reset(line);
+			// for the words in the line they are added
+			while (tokenizer.next()) {
+				if (writer != null) {
+					writer.add(tokenizer.token());
+				}
+				String stem = stemmer.stem(tokenizer.token()).toString();
+				index.add(stem, location, i++);
+				if (forms != null) {
+					forms.add(stem, tokenizer.token());
 				}
 			}
 		}
+		if (forms != null) {
+			index.addForms(forms);
+		}
+		return i - 1;
 	}
 }
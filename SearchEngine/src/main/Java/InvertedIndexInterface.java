@@ -0,0 +1,231 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * @author geoaldana
+ * This is an interface that contains the methods every inverted index has,
+ * whether it is kept in memory like {@link InvertedIndex} or in a file like
+ * {@link DiskInvertedIndex}: writing the index and the word counts, looking up
+ * words, locations and positions, and searching. How the words are added is up
+ * to the index.
+ */
+public interface InvertedIndexInterface {
+
+	/**
+	 * This is a function that writes the index in pretty Json format.
+	 *
+	 * @param path that is received from the argument
+	 * @throws IOException if an IO error occurs
+	 */
+	public void writeFile(Path path) throws IOException;
+
+	/**
+	 * This is a function that writes the word counts in pretty Json format.
+	 *
+	 * @param path that is received from the argument
+	 * @throws IOException if an IO error occurs
+	 */
+	public void countsWriter(Path path) throws IOException;
+
+	/**
+	 * Returns the word count of a location.
+	 *
+	 * @param location that wants the wordCount
+	 * @return the word count of that location
+	 */
+	public int wordCount(String location);
+
+	/**
+	 * Returns true if the index contains the word.
+	 *
+	 * @param word the word
+	 * @return returns true if the word is there
+	 */
+	public boolean contains(String word);
+
+	/**
+	 * Returns true if the word is in the location.
+	 *
+	 * @param word     the word that matches with the location
+	 * @param location the location
+	 * @return returns true if the location is there
+	 */
+	public boolean contains(String word, String location);
+
+	/**
+	 * Returns true if the word is at the position of the location.
+	 *
+	 * @param word     the word that matches with the position
+	 * @param location the location that matches the position
+	 * @param position the position
+	 * @return returns true if the position is there
+	 */
+	public boolean contains(String word, String location, int position);
+
+	/**
+	 * Number of words in the index
+	 *
+	 * @return the number of words
+	 */
+	public int words();
+
+	/**
+	 * Number of locations of a word
+	 *
+	 * @param word the word
+	 * @return the number of locations of the word
+	 */
+	public int paths(String word);
+
+	/**
+	 * Number of positions of a word in a location
+	 *
+	 * @param word the word
+	 * @param path the location
+	 * @return the number of positions of the word in the location
+	 */
+	public int positions(String word, String path);
+
+	/**
+	 * Safely returns the words in the index
+	 *
+	 * @return a set of the words
+	 */
+	public Set<String> getWords();
+
+	/**
+	 * Safely returns the locations of a word
+	 *
+	 * @param word the word that matches the location
+	 * @return the set of locations
+	 */
+	public Set<String> getLocations(String word);
+
+	/**
+	 * Safely returns the positions of a word in a location
+	 *
+	 * @param word     the word that matches the position
+	 * @param location the location that matches the position
+	 * @return the set of positions
+	 */
+	public Set<Integer> getPositions(String word, String location);
+
+	/**
+	 * This is a function that does an exact search that stops at a deadline with
+	 * the results found so far.
+	 *
+	 * @param queries  these are the queries that are used to search
+	 * @param deadline the deadline of the search, or {@code null} if there is none
+	 * @return returns an ArrayList of results that will be output in Json format
+	 */
+	public ArrayList<InvertedIndex.SearchResult> exactSearch(Collection<String> queries, Deadline deadline);
+
+	/**
+	 * This is a function that does a partial search that stops at a deadline with
+	 * the results found so far.
+	 *
+	 * @param queries  these are the queries that are used to search
+	 * @param deadline the deadline of the search, or {@code null} if there is none
+	 * @return returns an ArrayList of results that will be output in Json format
+	 */
+	public ArrayList<InvertedIndex.SearchResult> partialSearch(Collection<String> queries, Deadline deadline);
+
+	/**
+	 * This is a function that does a fuzzy search that stops at a deadline with
+	 * the results found so far.
+	 *
+	 * @param queries  these are the queries that are used to search
+	 * @param deadline the deadline of the search, or {@code null} if there is none
+	 * @return returns an ArrayList of results that will be output in Json format
+	 */
+	public ArrayList<InvertedIndex.SearchResult> fuzzySearch(Collection<String> queries, Deadline deadline);
+
+	/**
+	 * This is a function that does an exact search when called. It works by
+	 * checking to see if the inverted index contains an exact word or match that is
+	 * being searched for. It puts the results of information in an Array List.
+	 *
+	 * @param queries these are the queries that are used to search
+	 * @return returns an ArrayList of results that will be output in Json format
+	 */
+	public default ArrayList<InvertedIndex.SearchResult> exactSearch(Collection<String> queries) {
+		return exactSearch(queries, null);
+	}
+
+	/**
+	 * This is a function that does an partial search when called. It works by
+	 * checking to see if the inverted index contains a word or match starts with
+	 * the query word. It puts the results of information in an Array List.
+	 *
+	 * @param queries these are the queries that are used to search
+	 * @return returns an ArrayList of results that will be output in Json format
+	 */
+	public default ArrayList<InvertedIndex.SearchResult> partialSearch(Collection<String> queries) {
+		return partialSearch(queries, null);
+	}
+
+	/**
+	 * This is a function that does a fuzzy search when called. It works by finding
+	 * the words within a small edit distance of every query word, so misspelled
+	 * queries still find results, and adds the matches of those words like a
+	 * partial search does.
+	 *
+	 * @param queries these are the queries that are used to search
+	 * @return returns an ArrayList of results that will be output in Json format
+	 */
+	public default ArrayList<InvertedIndex.SearchResult> fuzzySearch(Collection<String> queries) {
+		return fuzzySearch(queries, null);
+	}
+
+	/**
+	 * This is a function that does the search of a mode, "exact", "fuzzy" or
+	 * "partial", which is also the default.
+	 *
+	 * @param queries these are the queries that are used to search
+	 * @param mode    the search to do
+	 * @return returns the results of the search
+	 */
+	public default ArrayList<InvertedIndex.SearchResult> search(Collection<String> queries, String mode) {
+		return search(queries, mode, null);
+	}
+
+	/**
+	 * This is a function that does the search of a mode and stops at a deadline
+	 * with the results found so far.
+	 *
+	 * @param queries  these are the queries that are used to search
+	 * @param mode     the search to do
+	 * @param deadline the deadline of the search, or {@code null} if there is none
+	 * @return returns the results of the search
+	 */
+	public default ArrayList<InvertedIndex.SearchResult> search(Collection<String> queries, String mode,
+			Deadline deadline) {
+		if (mode.equals("exact")) {
+			return exactSearch(queries, deadline);
+		}
+		if (mode.equals("fuzzy")) {
+			return fuzzySearch(queries, deadline);
+		}
+		return partialSearch(queries, deadline);
+	}
+
+	/**
+	 * This is a function that checks to see if the exact flag is called. If yes
+	 * then an exactSearch is called if not a partialSearch is called.
+	 *
+	 * @param queries these are the queries that are used to search
+	 * @param exact   this is a boolean that will be checked to determine what
+	 *                search to do
+	 * @return returns a search - either exactSearch or partialSearch
+	 */
+	public default ArrayList<InvertedIndex.SearchResult> search(Collection<String> queries, boolean exact) {
+		if (exact) {
+			return exactSearch(queries);
+		} else {
+			return partialSearch(queries);
+		}
+	}
+}
@@ -0,0 +1,188 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * @author geoaldana
+ * This is an automaton that accepts the words within an edit distance of a
+ * query, used to find the words of an index a misspelled query meant. The state
+ * after reading a prefix is the row of edit distances between the prefix and
+ * every prefix of the query. Only the distances of query prefixes with about
+ * the same length as the read prefix can be within the limit, so the rest are
+ * not computed and distances above the limit are all stored as one more than
+ * the limit. A prefix whose row has no distance within the limit is dead, since
+ * no word starting with it can be accepted.
+ *
+ * The automaton is intersected with the sorted words of an index. Rows are kept
+ * for the letters a word shares with the word before it, and when a prefix is
+ * dead the search jumps to the next prefix the automaton can still accept, so
+ * only the words along live prefixes are ever read.
+ */
+public class LevenshteinAutomaton {
+
+	/**
+	 * the query
+	 */
+	private final String query;
+
+	/**
+	 * the largest edit distance accepted
+	 */
+	private final int distance;
+
+	/**
+	 * @param query the query
+	 * @param distance the largest edit distance accepted
+	 */
+	public LevenshteinAutomaton(String query, int distance) {
+		this.query = query;
+		this.distance = Math.max(0, distance);
+	}
+
+	/**
+	 * Returns the edit distance allowed for a query, which grows with its length
+	 * so short queries do not match most of the words: none below three letters,
+	 * one below six letters and two otherwise.
+	 *
+	 * @param query the query
+	 * @return the largest edit distance accepted
+	 */
+	public static int distance(String query) {
+		if (query.length() < 3) {
+			return 0;
+		}
+		return query.length() < 6 ? 1 : 2;
+	}
+
+	/**
+	 * Returns the accepted words of a sorted set of words.
+	 *
+	 * @param ceiling returns the smallest word that is greater than or equal to a
+	 *        string, or {@code null} if there is none
+	 * @return the accepted words in sorted order
+	 */
+	public List<String> intersect(UnaryOperator<String> ceiling) {
+		ArrayList<String> found = new ArrayList<>();
+		int length = query.length();
+		// a prefix longer than the query by more than the distance is always dead
+		int[][] rows = new int[length + distance + 2][length + 1];
+		int[] scratch = new int[length + 1];
+		for (int j = 0; j <= length; j++) {
+			rows[0][j] = Math.min(j, distance + 1);
+		}
+
+		String previous = "";
+		int valid = 0;
+		String word = ceiling.apply("");
+		while (word != null) {
+			int depth = 0;
+			while (depth < valid && depth < word.length() && previous.charAt(depth) == word.charAt(depth)) {
+				depth++;
+			}
+			boolean dead = false;
+			while (depth < word.length()) {
+				int least = step(rows[depth], depth + 1, word.charAt(depth), rows[depth + 1]);
+				depth++;
+				if (least > distance) {
+					dead = true;
+					break;
+				}
+			}
+			previous = word;
+			valid = depth;
+
+			if (dead) {
+				// no word starting with this prefix is accepted
+				String next = next(word, depth, rows, scratch);
+				word = next == null ? null : ceiling.apply(next);
+			}
+			else {
+				// distances outside the band are not computed and are always too far
+				if (Math.abs(depth - length) <= distance && rows[depth][length] <= distance) {
+					found.add(word);
+				}
+				// the smallest string after a word is the word followed by the smallest letter
+				word = ceiling.apply(word + '\0');
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Computes the row of edit distances after reading one more letter. Only the
+	 * band of query prefixes within the distance of the read length is computed,
+	 * and the distances just outside the band are set above the limit so the
+	 * next row can read them.
+	 *
+	 * @param row the row before the letter
+	 * @param depth the length read after the letter
+	 * @param letter the letter
+	 * @param next the row after the letter
+	 * @return the smallest distance of the row after the letter
+	 */
+	private int step(int[] row, int depth, char letter, int[] next) {
+		int limit = distance + 1;
+		int low = Math.max(1, depth - distance);
+		int high = Math.min(next.length - 1, depth + distance);
+		next[0] = Math.min(depth, limit);
+		if (low > 1) {
+			next[low - 1] = limit;
+		}
+		if (high < next.length - 1) {
+			next[high + 1] = limit;
+		}
+		int least = next[0];
+		for (int j = low; j <= high; j++) {
+			int substitute = row[j - 1] + (query.charAt(j - 1) == letter ? 0 : 1);
+			next[j] = Math.min(limit, Math.min(substitute, Math.min(row[j], next[j - 1]) + 1));
+			least = Math.min(least, next[j]);
+		}
+		return least;
+	}
+
+	/**
+	 * Returns the smallest live prefix after a dead prefix of a word. The last
+	 * letter of the dead prefix is replaced by the next letter that keeps it
+	 * live, or if there is none the letter before it, and so on. A letter that is
+	 * not in the query is live only if every letter is, so the only letters to
+	 * try are the next letter and the letters of the query.
+	 *
+	 * @param word the word
+	 * @param depth the length of the dead prefix of the word
+	 * @param rows the rows of the prefixes of the word
+	 * @param scratch a row to compute in
+	 * @return the smallest live prefix after the dead prefix or {@code null} if
+	 *         there is none
+	 */
+	private String next(String word, int depth, int[][] rows, int[] scratch) {
+		for (int d = depth; d > 0; d--) {
+			char letter = word.charAt(d - 1);
+			if (letter == Character.MAX_VALUE) {
+				continue;
+			}
+			char best = Character.MAX_VALUE;
+			boolean found = false;
+			// a letter that is not in the query is never closer than one that is
+			if (step(rows[d - 1], d, (char) (letter + 1), scratch) <= distance) {
+				best = (char) (letter + 1);
+				found = true;
+			}
+			else {
+				int low = Math.max(1, d - distance);
+				int high = Math.min(query.length(), d + distance);
+				for (int j = low; j <= high; j++) {
+					char candidate = query.charAt(j - 1);
+					if (candidate > letter && (!found || candidate < best)
+							&& step(rows[d - 1], d, candidate, scratch) <= distance) {
+						best = candidate;
+						found = true;
+					}
+				}
+			}
+			if (found) {
+				return word.substring(0, d - 1) + best;
+			}
+		}
+		return null;
+	}
+}
@@ -3,6 +3,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -15,6 +16,9 @@ import java.util.regex.Pattern;
  */
 public class LinkParser {
 
+	/** Regular expression that matches the href attribute of anchor tags. */
+	private static final Pattern LINK_REGEX = Pattern.compile("(?i)<a\\s*?(?:[^>]*?\\s+)?\\W*?href\\W*?=\\W*?([\"'])(.*?)\\1");
+
 	/**
 	 * Removes the fragment component of a URL (if present), and properly encodes
 	 * the query string (if necessary).
@@ -47,10 +51,23 @@ public class LinkParser {
 	 * @return list of all valid http(s) links in the order they were found
 	 */
 	public static ArrayList<URL> getValidLinks(URL base, String html) {
-		String regex = "(?i)<a\\s*?(?:[^>]*?\\s+)?\\W*?href\\W*?=\\W*?([\"'])(.*?)\\1";
-		Pattern pattern = Pattern.compile(regex);
-		Matcher matcher = pattern.matcher(html);
 		ArrayList<URL> results = new ArrayList<URL>();
+		addValidLinks(base, html, results);
+		return results;
+	}
+
+	/**
+	 * Adds all the valid HTTP(S) links found in the href attribute of the anchor
+	 * tags in the provided HTML to the collection. See
+	 * {@link #getValidLinks(URL, String)} for details.
+	 *
+	 * @param base the base url used to convert relative links to absolute
+	 * @param html the raw html or a single tag associated with the base url
+	 * @param results the collection the links will be added to in the order they
+	 *        were found
+	 */
+	public static void addValidLinks(URL base, CharSequence html, Collection<URL> results) {
+		Matcher matcher = LINK_REGEX.matcher(html);
 		while (matcher.find()) {
 			String matched = matcher.group(2);
 			try {
@@ -59,6 +76,5 @@ public class LinkParser {
 				e.printStackTrace();
 			}
 		}
-		return results;
 	}
 }
@@ -0,0 +1,99 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * @author geoaldana
+ * This class shows how loaded the server is as JSON, at {@code GET /metrics}:
+ * the threads and queue of the server, the searches that were admitted, turned
+ * away, shed or answered with partial results, the hits of the query cache, and
+ * the hits of the stemmer caches of the builders and searches. It never
+ * searches, so it still answers quickly when the server is overloaded.
+ */
+public class MetricsServlet extends HttpServlet {
+
+	/**
+	 * default serial Version
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * threads of the server
+	 */
+	private final QueuedThreadPool pool;
+
+	/**
+	 * executor the searches run on
+	 */
+	private final SearchExecutor executor;
+
+	/**
+	 * cache of the search results
+	 */
+	private final QueryCache cache;
+
+	/**
+	 * @param pool threads of the server
+	 * @param executor the searches run on
+	 * @param cache of the search results
+	 */
+	public MetricsServlet(QueuedThreadPool pool, SearchExecutor executor, QueryCache cache) {
+		super();
+		this.pool = pool;
+		this.executor = executor;
+		this.cache = cache;
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Cache-Control", "no-store");
+		response.setStatus(HttpServletResponse.SC_OK);
+
+		AdmissionControl admission = executor.admission();
+		// a comma would break the JSON in some locales
+		DecimalFormat format = new DecimalFormat("0.000", DecimalFormatSymbols.getInstance(Locale.ROOT));
+		PrintWriter out = response.getWriter();
+		out.write("{\"server\":{");
+		out.write("\"threads\":" + pool.getThreads());
+		out.write(",\"busy\":" + pool.getBusyThreads());
+		out.write(",\"max\":" + pool.getMaxThreads());
+		out.write(",\"queued\":" + pool.getQueueSize());
+		out.write("},\"searches\":{");
+		out.write("\"threads\":" + executor.threads());
+		out.write(",\"running\":" + executor.running());
+		out.write(",\"queued\":" + executor.queued());
+		out.write(",\"capacity\":" + executor.capacity());
+		out.write(",\"deadline\":" + executor.deadline());
+		out.write(",\"admitted\":" + admission.admitted());
+		out.write(",\"rejected\":" + admission.rejected());
+		out.write(",\"shed\":" + admission.shed());
+		out.write(",\"answered\":" + executor.answered());
+		out.write(",\"partial\":" + executor.partial());
+		out.write(",\"overloaded\":" + admission.overloaded());
+		out.write(",\"averageWait\":" + format.format(admission.averageWait()));
+		out.write(",\"averageTime\":" + format.format(admission.averageTime()));
+		out.write(",\"target\":" + admission.target());
+		out.write(",\"interval\":" + admission.interval());
+		out.write("},\"cache\":{");
+		out.write("\"size\":" + cache.size());
+		out.write(",\"hits\":" + cache.hits());
+		out.write(",\"misses\":" + cache.misses());
+		out.write(",\"coalesced\":" + cache.coalesced());
+		out.write("},\"stemmer\":{");
+		out.write("\"hits\":" + CachedStemmer.hits());
+		out.write(",\"misses\":" + CachedStemmer.misses());
+		out.write("}}");
+		out.flush();
+	}
+}
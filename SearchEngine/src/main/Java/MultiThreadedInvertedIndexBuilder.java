@@ -1,12 +1,33 @@
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
 
 /**
  * @author geoaldana
+ * This is a builder that reads every file in its own task. Files larger than
+ * the chunk size are split into chunks at line breaks that are read in their
+ * own tasks, and the positions of every chunk are moved by the number of words
+ * in the chunks before it, so a large file is not read by a single thread.
  *
+ * Directories are walked in parallel with a task for every subdirectory. Text
+ * files that are found wait in a queue ordered by size, and only a few files
+ * per thread are handed to the work queue at a time, so the largest files
+ * found so far are read first and the walk does not fill the work queue.
  */
 public class MultiThreadedInvertedIndexBuilder extends InvertedIndexBuilder {
 
+	/**
+	 * The default size in bytes of the chunks large files are split into.
+	 */
+	public static final int DEFAULT_CHUNK = 1 << 23;
+
 	/**
 	 * ThreadSafeInvertedIndex index
 	 */
@@ -17,25 +38,166 @@ public class MultiThreadedInvertedIndexBuilder extends InvertedIndexBuilder {
 	 */
 	private final WorkQueue queue;
 
+	/**
+	 * size in bytes of the chunks large files are split into
+	 */
+	private final int chunk;
+
+	/**
+	 * number of bytes read from a file at a time
+	 */
+	private final int readSize;
+
+	/**
+	 * store the words of the files are kept in, or {@code null} if not kept
+	 */
+	private final DocumentStore documents;
+
+	/**
+	 * files that were found but not handed to the work queue yet, largest first
+	 */
+	private final PriorityQueue<Found> found;
+
+	/**
+	 * number of files handed to the work queue that are not finished
+	 */
+	private int reading;
+
 	/**
 	 * @param index that will be used to build index
 	 * @param queue that will be used to build index
 	 */
 	public MultiThreadedInvertedIndexBuilder(ThreadSafeInvertedIndex index, WorkQueue queue) {
-		super(index);
+		this(index, queue, DEFAULT_CHUNK);
+	}
+
+	/**
+	 * @param index that will be used to build index
+	 * @param queue that will be used to build index
+	 * @param chunk size in bytes of the chunks large files are split into
+	 */
+	public MultiThreadedInvertedIndexBuilder(ThreadSafeInvertedIndex index, WorkQueue queue, int chunk) {
+		this(index, queue, chunk, ChannelLineReader.DEFAULT_SIZE);
+	}
+
+	/**
+	 * @param index that will be used to build index
+	 * @param queue that will be used to build index
+	 * @param chunk size in bytes of the chunks large files are split into
+	 * @param readSize number of bytes read from a file at a time
+	 */
+	public MultiThreadedInvertedIndexBuilder(ThreadSafeInvertedIndex index, WorkQueue queue, int chunk, int readSize) {
+		this(index, queue, chunk, readSize, null);
+	}
+
+	/**
+	 * @param index that will be used to build index
+	 * @param queue that will be used to build index
+	 * @param chunk size in bytes of the chunks large files are split into
+	 * @param readSize number of bytes read from a file at a time
+	 * @param documents store the words of the files are kept in, or {@code null}
+	 */
+	public MultiThreadedInvertedIndexBuilder(ThreadSafeInvertedIndex index, WorkQueue queue, int chunk, int readSize,
+			DocumentStore documents) {
+		super(index, readSize, documents);
 		this.data = index;
 		this.queue = queue;
+		this.chunk = Math.max(1, chunk);
+		this.readSize = readSize;
+		this.documents = documents;
+		this.found = new PriorityQueue<>();
+		this.reading = 0;
 	}
 
 	@Override
 	public void buildIndex(Path directory) throws IOException {
-		super.buildIndex(directory);
+		if (Files.isDirectory(directory)) {
+			queue.execute(new DirectoryTask(directory));
+		}
+		else {
+			read(directory);
+		}
 		queue.finish();
 	}
 
 	@Override
 	public void read(Path path) throws IOException {
-		queue.execute(new Task(path));
+		long size;
+		try {
+			size = Files.size(path);
+		} catch (IOException e) {
+			// reported when the file is read
+			size = 0;
+		}
+		synchronized (found) {
+			found.add(new Found(path, size));
+		}
+		dispatch();
+	}
+
+	/**
+	 * Hands the largest files that were found to the work queue until every
+	 * thread has two files waiting or running.
+	 */
+	private void dispatch() {
+		synchronized (found) {
+			while (reading < 2 * queue.size() && !found.isEmpty()) {
+				reading++;
+				queue.execute(new Task(found.poll().path));
+			}
+		}
+	}
+
+	/**
+	 * Called when a file handed to the work queue is finished.
+	 */
+	private void finished() {
+		synchronized (found) {
+			reading--;
+		}
+		dispatch();
+	}
+
+	/**
+	 * Finds where the chunks of a file start. Every chunk after the first starts
+	 * after the first line break at least a chunk size after the start of the
+	 * chunk before it. A line break is never part of a multi-byte UTF-8
+	 * character, so every chunk can be decoded on its own.
+	 *
+	 * @param channel the channel of the file
+	 * @param size the size of the file
+	 * @return the start of every chunk followed by the size of the file
+	 * @throws IOException if an IO error occurs
+	 */
+	private ArrayList<Long> split(FileChannel channel, long size) throws IOException {
+		ArrayList<Long> starts = new ArrayList<>();
+		starts.add(0L);
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		long position = chunk;
+		while (position < size) {
+			long next = -1;
+			while (next < 0 && position < size) {
+				buffer.clear();
+				int read = channel.read(buffer, position);
+				if (read < 0) {
+					break;
+				}
+				for (int i = 0; i < read; i++) {
+					if (buffer.get(i) == '\n') {
+						next = position + i + 1;
+						break;
+					}
+				}
+				position += read;
+			}
+			if (next < 0 || next >= size) {
+				break;
+			}
+			starts.add(next);
+			position = next + chunk;
+		}
+		starts.add(size);
+		return starts;
 	}
 
 	/**
@@ -57,13 +219,242 @@ public class MultiThreadedInvertedIndexBuilder extends InvertedIndexBuilder {
 
 		@Override
 		public void run() {
-			InvertedIndex local = new InvertedIndex();
 			try {
-				InvertedIndexBuilder.read(path, local);
+				read();
+			} finally {
+				finished();
+			}
+		}
+
+		/**
+		 * Reads the file, or splits it into chunks if it is large.
+		 */
+		private void read() {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				long size = channel.size();
+				if (size > chunk) {
+					ArrayList<Long> starts = split(channel, size);
+					if (starts.size() > 2) {
+						Chunks chunks = new Chunks(path, starts.size() - 1);
+						for (int i = 0; i < starts.size() - 1; i++) {
+							queue.execute(new ChunkTask(chunks, i, starts.get(i), starts.get(i + 1)));
+						}
+						return;
+					}
+				}
+			} catch (IOException e) {
+				// reported by the read below
+			}
+
+			InvertedIndex local = data.local();
+			try {
+				InvertedIndexBuilder.read(path, local, readSize, documents);
 				data.merge(local);
 			} catch (IOException e) {
-				System.out.println("Not able to read the path.");
+				failed(path);
+			}
+		}
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a task that implements Runnable and lists one directory. Every
+	 * subdirectory is listed in its own task and every text file is queued to be
+	 * read.
+	 */
+	private class DirectoryTask implements Runnable {
+		/**
+		 * the directory that will be listed
+		 */
+		private final Path directory;
+
+		/**
+		 * @param directory that will be listed
+		 */
+		public DirectoryTask(Path directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		public void run() {
+			try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory)) {
+				for (Path path : listing) {
+					if (Files.isDirectory(path)) {
+						queue.execute(new DirectoryTask(path));
+					}
+					else if (shouldRead(path)) {
+						read(path);
+					}
+				}
+			} catch (IOException e) {
+				System.out.println("Not able to read the directory: " + directory);
+			}
+		}
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a class that stores a file that was found and its size, ordered
+	 * from the largest file to the smallest.
+	 */
+	private static class Found implements Comparable<Found> {
+		/**
+		 * the path of the file
+		 */
+		private final Path path;
+
+		/**
+		 * the size of the file in bytes
+		 */
+		private final long size;
+
+		/**
+		 * @param path the path of the file
+		 * @param size the size of the file in bytes
+		 */
+		public Found(Path path, long size) {
+			this.path = path;
+			this.size = size;
+		}
+
+		@Override
+		public int compareTo(Found o) {
+			return Long.compare(o.size, size);
+		}
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a task that implements Runnable and reads one chunk of a large file.
+	 */
+	private class ChunkTask implements Runnable {
+		/**
+		 * the chunks of the file
+		 */
+		private final Chunks chunks;
+
+		/**
+		 * which chunk of the file is read
+		 */
+		private final int index;
+
+		/**
+		 * position in the file of the first byte of the chunk
+		 */
+		private final long start;
+
+		/**
+		 * position in the file after the last byte of the chunk
+		 */
+		private final long end;
+
+		/**
+		 * @param chunks the chunks of the file
+		 * @param index which chunk of the file is read
+		 * @param start position in the file of the first byte of the chunk
+		 * @param end position in the file after the last byte of the chunk
+		 */
+		public ChunkTask(Chunks chunks, int index, long start, long end) {
+			this.chunks = chunks;
+			this.index = index;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public void run() {
+			InvertedIndex local = data.local();
+			DocumentStore.Writer writer = documents == null ? null : documents.writer();
+			int words;
+			try (FileChannel channel = FileChannel.open(chunks.path, StandardOpenOption.READ)) {
+				ChannelLineReader reader = new ChannelLineReader(channel, start, end, readSize);
+				words = InvertedIndexBuilder.read(reader, chunks.path.toString(), local, writer);
+			} catch (IOException e) {
+				local = null;
+				words = 0;
+			}
+			chunks.finish(index, local, words, writer == null ? null : writer.finish());
+		}
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a class that collects the chunks of a large file. The task that
+	 * finishes the last chunk merges all of them into the index, so no task has
+	 * to wait for the others.
+	 */
+	private class Chunks {
+		/**
+		 * the path of the file
+		 */
+		private final Path path;
+
+		/**
+		 * the words of every chunk, or {@code null} if a chunk could not be read
+		 */
+		private final InvertedIndex[] parts;
+
+		/**
+		 * number of words in every chunk
+		 */
+		private final int[] words;
+
+		/**
+		 * the compressed words of every chunk, or {@code null} if not kept
+		 */
+		private final DocumentStore.Text[] texts;
+
+		/**
+		 * number of chunks that are not finished
+		 */
+		private int remaining;
+
+		/**
+		 * @param path the path of the file
+		 * @param count number of chunks of the file
+		 */
+		public Chunks(Path path, int count) {
+			this.path = path;
+			this.parts = new InvertedIndex[count];
+			this.words = new int[count];
+			this.texts = new DocumentStore.Text[count];
+			this.remaining = count;
+		}
+
+		/**
+		 * Adds a finished chunk, and merges every chunk into the index if it was the
+		 * last one. Positions of a chunk are moved by the sum of the words in the
+		 * chunks before it, so they are the same as reading the whole file.
+		 *
+		 * @param index which chunk was read
+		 * @param local the words of the chunk, or {@code null} if it could not be read
+		 * @param count number of words in the chunk
+		 * @param text the compressed words of the chunk, or {@code null} if not kept
+		 */
+		public void finish(int index, InvertedIndex local, int count, DocumentStore.Text text) {
+			synchronized (this) {
+				parts[index] = local;
+				words[index] = count;
+				texts[index] = text;
+				if (--remaining > 0) {
+					return;
+				}
+			}
+
+			InvertedIndex file = new InvertedIndex();
+			int offset = 0;
+			for (int i = 0; i < parts.length; i++) {
+				if (parts[i] == null) {
+					failed(path);
+					return;
+				}
+				file.merge(parts[i], offset);
+				offset += words[i];
+			}
+			if (documents != null) {
+				documents.put(path.toString(), Arrays.asList(texts));
 			}
+			data.merge(file);
 		}
 	}
 }
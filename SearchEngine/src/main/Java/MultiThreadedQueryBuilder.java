@@ -26,6 +26,11 @@ public class MultiThreadedQueryBuilder implements QueryBuilderInterface {
 	 */
 	private final TreeMap<String, ArrayList<InvertedIndex.SearchResult>> queryMap;
 
+	/**
+	 * searches that are running, so a query repeated in the file is searched once
+	 */
+	private final SingleFlight<String, ArrayList<InvertedIndex.SearchResult>> flights;
+
 	/**
 	 * @param index ThreadSafeInvertedIndex
 	 * @param queue WorkQueue
@@ -34,6 +39,7 @@ public class MultiThreadedQueryBuilder implements QueryBuilderInterface {
 		this.index = index;
 		this.queue = queue;
 		this.queryMap = new TreeMap<>();
+		this.flights = new SingleFlight<>();
 	}
 
 	/**
@@ -109,10 +115,21 @@ public class MultiThreadedQueryBuilder implements QueryBuilderInterface {
 					return;
 				}
 			}
-			var local = index.search(lines, exact);
-			synchronized (queryMap) {
-				queryMap.put(queryFormat, local);
-			}
+			// a duplicate that checked before the results were put and starts its flight
+			// after the first one ended finds them here instead of searching again
+			flights.run(queryFormat, () -> {
+				synchronized (queryMap) {
+					var found = queryMap.get(queryFormat);
+					if (found != null) {
+						return found;
+					}
+				}
+				var local = index.search(lines, exact);
+				synchronized (queryMap) {
+					queryMap.put(queryFormat, local);
+				}
+				return local;
+			});
 		}
 	}
 }
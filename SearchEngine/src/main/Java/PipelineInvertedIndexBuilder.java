@@ -0,0 +1,751 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import opennlp.tools.stemmer.Stemmer;
+
+/**
+ * @author geoaldana
+ * This is a builder that builds the index as a pipeline of stages, where every
+ * stage has its own threads and hands its work to the next stage through a
+ * bounded queue:
+ *
+ * <ol>
+ * <li>read: reads files in blocks that end at line breaks</li>
+ * <li>tokenize: decodes the blocks and splits them into words</li>
+ * <li>stem: stems the words</li>
+ * <li>index: adds the stems of a block to a local index</li>
+ * <li>merge: moves the positions of every block of a file and collects the
+ * files in a local index that is merged into the shared index in batches</li>
+ * </ol>
+ *
+ * A stage that can not keep up makes the stages before it wait, so the number
+ * of blocks in memory is bounded no matter how large the files are. After a
+ * build every stage reports its throughput and how much of the time its
+ * threads were busy, waiting for work, or waiting for the next stage, which
+ * shows the stage that limits the build.
+ */
+public class PipelineInvertedIndexBuilder extends InvertedIndexBuilder {
+
+	/**
+	 * The default size in bytes of the blocks files are read in.
+	 */
+	public static final int DEFAULT_BLOCK = 1 << 20;
+
+	/**
+	 * The names of the stages in order.
+	 */
+	public static final String[] STAGES = { "read", "tokenize", "stem", "index", "merge" };
+
+	/**
+	 * Number of words a merge thread collects before merging them into the
+	 * shared index, so the shared index is not locked for every file.
+	 */
+	private static final int FLUSH = 1 << 20;
+
+	/**
+	 * Marks the end of the work for a stage.
+	 */
+	private static final Block END = new Block(null, -1);
+
+	/**
+	 * ThreadSafeInvertedIndex index
+	 */
+	private final ThreadSafeInvertedIndex data;
+
+	/**
+	 * number of threads of every stage
+	 */
+	private final int[] threads;
+
+	/**
+	 * size in bytes of the blocks files are read in
+	 */
+	private final int block;
+
+	/**
+	 * whether the work of every stage is printed after a build
+	 */
+	private final boolean report;
+
+	/**
+	 * the stages of the current build
+	 */
+	private Stage[] stages;
+
+	/**
+	 * @param index that will be used to build index
+	 * @param threads number of threads of every stage, in the order of {@link #STAGES}
+	 * @param block size in bytes of the blocks files are read in
+	 */
+	public PipelineInvertedIndexBuilder(ThreadSafeInvertedIndex index, int[] threads, int block) {
+		this(index, threads, block, false);
+	}
+
+	/**
+	 * @param index that will be used to build index
+	 * @param threads number of threads of every stage, in the order of {@link #STAGES}
+	 * @param block size in bytes of the blocks files are read in
+	 * @param report whether the work of every stage is printed after a build
+	 */
+	public PipelineInvertedIndexBuilder(ThreadSafeInvertedIndex index, int[] threads, int block, boolean report) {
+		super(index);
+		this.data = index;
+		this.threads = threads.clone();
+		this.block = Math.max(1, block);
+		this.report = report;
+	}
+
+	/**
+	 * Returns the number of threads of every stage. The spec is a comma separated
+	 * list of thread counts in the order of {@link #STAGES}. Stages missing from
+	 * the spec get a share of the total number of threads.
+	 *
+	 * @param spec the thread counts, or {@code null}
+	 * @param total number of threads to share between stages without a count
+	 * @return the number of threads of every stage
+	 */
+	public static int[] threads(String spec, int total) {
+		// tokenizing and stemming are most of the work
+		int[] threads = { Math.max(1, total / 8), Math.max(1, total * 3 / 8), Math.max(1, total / 4),
+				Math.max(1, total / 4), 1 };
+		if (spec != null) {
+			String[] counts = spec.split(",");
+			for (int i = 0; i < Math.min(counts.length, threads.length); i++) {
+				try {
+					int count = Integer.parseInt(counts[i].strip());
+					if (count > 0) {
+						threads[i] = count;
+					}
+				} catch (NumberFormatException e) {
+					// keeps the default for this stage
+				}
+			}
+		}
+		return threads;
+	}
+
+	@Override
+	public void buildIndex(Path directory) throws IOException {
+		stages = new Stage[STAGES.length];
+		int total = 0;
+		for (int i = stages.length - 1; i >= 0; i--) {
+			stages[i] = new Stage(i, threads[i], i + 1 < stages.length ? stages[i + 1] : null);
+			total += threads[i];
+		}
+
+		WorkQueue queue = new WorkQueue(total);
+		long start = System.nanoTime();
+		for (Stage stage : stages) {
+			for (int i = 0; i < stage.threads; i++) {
+				queue.execute(stage);
+			}
+		}
+		try {
+			super.buildIndex(directory);
+		} finally {
+			stages[0].put(END);
+			queue.finish();
+			queue.shutdown();
+		}
+
+		if (report) {
+			long elapsed = System.nanoTime() - start;
+			for (Stage stage : stages) {
+				System.out.println(stage.report(elapsed));
+			}
+		}
+	}
+
+	@Override
+	public void read(Path path) throws IOException {
+		stages[0].put(new Block(new FileState(path), -1));
+	}
+
+	/**
+	 * Reads a file in blocks that end after a line break, so lines are never
+	 * split between blocks. The last block is followed by a block that marks the
+	 * end of the file.
+	 *
+	 * @param file the file to read
+	 * @param stage the read stage
+	 * @return nanoseconds spent waiting for room in the next stage
+	 */
+	private long read(FileState file, Stage stage) {
+		int count = 0;
+		long waited = 0;
+		try (FileChannel channel = FileChannel.open(file.path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long position = 0;
+			while (position < size) {
+				byte[] bytes = new byte[(int) Math.min(block, size - position)];
+				int length = fill(channel, ByteBuffer.wrap(bytes), position);
+				int end = length;
+				if (position + length < size) {
+					// continues the block to the end of the line
+					int newline = lastLineBreak(bytes, length);
+					if (newline >= 0) {
+						end = newline + 1;
+					}
+					else {
+						// the line is longer than a block
+						ByteBuffer buffer = ByteBuffer.allocate(Math.min(block, 1 << 16));
+						while (position + end < size) {
+							buffer.clear();
+							int read = fill(channel, buffer, position + end);
+							int found = -1;
+							for (int i = 0; i < read && found < 0; i++) {
+								if (buffer.get(i) == '\n') {
+									found = i + 1;
+								}
+							}
+							int take = found < 0 ? read : found;
+							// grows by half or more, so a long line is not copied for every read
+							if (end + take > bytes.length) {
+								bytes = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE - 8,
+										Math.max(end + take, bytes.length + (long) (bytes.length >> 1))));
+							}
+							buffer.get(0, bytes, end, take);
+							end += take;
+							if (found >= 0 || read == 0) {
+								break;
+							}
+						}
+					}
+				}
+				if (end == 0) {
+					break;
+				}
+				Block next = new Block(file, count++);
+				next.bytes = bytes;
+				next.length = end;
+				waited += stage.emit(next, end);
+				position += end;
+			}
+		} catch (IOException e) {
+			failed(file.path);
+			file.fail();
+		}
+
+		Block last = new Block(file, count);
+		last.last = true;
+		return waited + stage.emit(last, 0);
+	}
+
+	/**
+	 * Reads from a channel until the buffer is full or the file ends.
+	 *
+	 * @param channel the channel of the file
+	 * @param buffer the buffer to fill
+	 * @param position position in the file to read from
+	 * @return the number of bytes read
+	 * @throws IOException if an IO error occurs
+	 */
+	private static int fill(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		int total = 0;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + total);
+			if (read < 0) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	/**
+	 * @param bytes the bytes to search
+	 * @param length number of bytes to search
+	 * @return the position of the last line feed, or -1 if there is none
+	 */
+	private static int lastLineBreak(byte[] bytes, int length) {
+		for (int i = length - 1; i >= 0; i--) {
+			if (bytes[i] == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Decodes a block and splits it into words, which are stored one after the
+	 * other in a single array.
+	 *
+	 * @param block the block to tokenize
+	 * @param tokenizer the tokenizer of the thread
+	 * @return number of words
+	 */
+	private int tokenize(Block block, TextTokenizer tokenizer) {
+		char[] chars = new char[Math.max(16, block.length)];
+		int[] ends = new int[Math.max(16, block.length / 4)];
+		int count = 0;
+		int length = 0;
+		try {
+			ChannelLineReader reader = new ChannelLineReader(block.bytes, block.length);
+			CharSequence line;
+			while ((line = reader.readLine()) != null) {
+				tokenizer.reset(line);
+				while (tokenizer.next()) {
+					CharSequence token = tokenizer.token();
+					if (length + token.length() > chars.length) {
+						chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + token.length()));
+					}
+					for (int i = 0; i < token.length(); i++) {
+						chars[length++] = token.charAt(i);
+					}
+					if (count == ends.length) {
+						ends = Arrays.copyOf(ends, ends.length * 2);
+					}
+					ends[count++] = length;
+				}
+			}
+		} catch (IOException e) {
+			failed(block.file.path);
+			block.file.fail();
+			count = 0;
+		}
+		block.bytes = null;
+		block.chars = chars;
+		block.ends = ends;
+		block.count = count;
+		return count;
+	}
+
+	/**
+	 * Stems the words of a block.
+	 *
+	 * @param block the block to stem
+	 * @param stemmer the stemmer of the thread
+	 */
+	private static void stem(Block block, Stemmer stemmer) {
+		String[] stems = new String[block.count];
+		// one view is moved over the words, so stemming a word creates no objects
+		CharBuffer word = CharBuffer.wrap(block.chars);
+		int start = 0;
+		for (int i = 0; i < block.count; i++) {
+			word.clear();
+			word.position(start).limit(block.ends[i]);
+			stems[i] = stemmer.stem(word).toString();
+			start = block.ends[i];
+		}
+		block.stems = stems;
+	}
+
+	/**
+	 * Adds the stems of a block to a local index, numbering them from 1, and the
+	 * words they were stemmed from if the index records them.
+	 *
+	 * @param block the block to index
+	 * @param forms whether the words the stems were stemmed from are recorded
+	 */
+	private static void index(Block block, boolean forms) {
+		InvertedIndex local = new InvertedIndex();
+		String location = block.file.path.toString();
+		for (int i = 0; i < block.count; i++) {
+			local.add(block.stems[i], location, i + 1);
+		}
+		if (forms) {
+			WordForms words = new WordForms();
+			CharBuffer word = CharBuffer.wrap(block.chars);
+			int start = 0;
+			for (int i = 0; i < block.count; i++) {
+				word.clear();
+				word.position(start).limit(block.ends[i]);
+				words.add(block.stems[i], word);
+				start = block.ends[i];
+			}
+			local.addForms(words);
+		}
+		block.chars = null;
+		block.ends = null;
+		block.stems = null;
+		block.index = local;
+	}
+
+	/**
+	 * Adds a block to its file, which is merged into the index of the file as
+	 * soon as the blocks in front of it are, and merges the file into a local
+	 * index once every block of it was merged.
+	 *
+	 * @param block the block to merge
+	 * @param local the local index of the thread
+	 * @return the number of words merged into the local index
+	 */
+	private static int merge(Block block, InvertedIndex local) {
+		FileState file = block.file;
+		synchronized (file) {
+			if (file.failed) {
+				return 0;
+			}
+			if (block.last) {
+				file.blocks = block.number;
+			}
+			else {
+				file.parts.put(block.number, block);
+			}
+
+			// merges the blocks that follow the ones merged so far
+			Block part;
+			while ((part = file.parts.remove(file.merged)) != null) {
+				if (file.index == null) {
+					// the first block becomes the index of the file
+					file.index = part.index;
+				}
+				else {
+					file.index.merge(part.index, file.offset);
+				}
+				file.offset += part.count;
+				file.merged++;
+			}
+			if (file.merged < file.blocks || file.blocks < 0) {
+				return 0;
+			}
+		}
+
+		// only the thread that added the last block gets here
+		if (file.index != null) {
+			local.merge(file.index);
+			file.index = null;
+		}
+		return file.offset;
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a class that stores what is known about a file being read.
+	 */
+	private static class FileState {
+		/**
+		 * the path of the file
+		 */
+		private final Path path;
+
+		/**
+		 * blocks of the file that reached the merge stage before the blocks in
+		 * front of them, by which block of the file they are
+		 */
+		private final HashMap<Integer, Block> parts;
+
+		/**
+		 * number of blocks of the file, or -1 if the end of the file was not merged yet
+		 */
+		private int blocks;
+
+		/**
+		 * number of blocks merged into the index of the file
+		 */
+		private int merged;
+
+		/**
+		 * number of words in the blocks merged into the index of the file
+		 */
+		private int offset;
+
+		/**
+		 * the words of the blocks merged so far, or {@code null} if there are none
+		 */
+		private InvertedIndex index;
+
+		/**
+		 * whether a part of the file could not be read, so none of it is indexed
+		 */
+		private volatile boolean failed;
+
+		/**
+		 * @param path the path of the file
+		 */
+		public FileState(Path path) {
+			this.path = path;
+			this.parts = new HashMap<>();
+			this.blocks = -1;
+			this.merged = 0;
+			this.offset = 0;
+			this.index = null;
+			this.failed = false;
+		}
+
+		/**
+		 * Marks the file as failed and drops the blocks merged so far, since none of
+		 * it is indexed.
+		 */
+		public synchronized void fail() {
+			failed = true;
+			parts.clear();
+			index = null;
+		}
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a class that is handed from stage to stage. Every stage replaces the
+	 * data of the stage before it with its own, so a block only holds what the
+	 * next stage needs.
+	 */
+	private static class Block {
+		/**
+		 * the file of the block
+		 */
+		private final FileState file;
+
+		/**
+		 * which block of the file this is
+		 */
+		private final int number;
+
+		/**
+		 * whether this block only marks the end of the file
+		 */
+		private boolean last;
+
+		/**
+		 * bytes read from the file
+		 */
+		private byte[] bytes;
+
+		/**
+		 * number of bytes read from the file
+		 */
+		private int length;
+
+		/**
+		 * words of the block one after the other
+		 */
+		private char[] chars;
+
+		/**
+		 * where every word ends
+		 */
+		private int[] ends;
+
+		/**
+		 * number of words in the block
+		 */
+		private int count;
+
+		/**
+		 * stems of the words
+		 */
+		private String[] stems;
+
+		/**
+		 * local index of the stems
+		 */
+		private InvertedIndex index;
+
+		/**
+		 * @param file the file of the block
+		 * @param number which block of the file this is
+		 */
+		public Block(FileState file, int number) {
+			this.file = file;
+			this.number = number;
+			this.last = false;
+		}
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a stage of the pipeline. Every thread of the stage runs it, taking
+	 * blocks from the queue of the stage and handing them to the next stage.
+	 */
+	private class Stage implements Runnable {
+		/**
+		 * which stage this is
+		 */
+		private final int number;
+
+		/**
+		 * number of threads of the stage
+		 */
+		private final int threads;
+
+		/**
+		 * blocks waiting for the stage
+		 */
+		private final ArrayBlockingQueue<Block> queue;
+
+		/**
+		 * the next stage, or {@code null} for the last stage
+		 */
+		private final Stage next;
+
+		/**
+		 * number of blocks handled
+		 */
+		private final LongAdder blocks;
+
+		/**
+		 * number of bytes or words handled
+		 */
+		private final LongAdder units;
+
+		/**
+		 * nanoseconds spent working
+		 */
+		private final LongAdder busy;
+
+		/**
+		 * nanoseconds spent waiting for work
+		 */
+		private final LongAdder starved;
+
+		/**
+		 * nanoseconds spent waiting for room in the next stage
+		 */
+		private final LongAdder blocked;
+
+		/**
+		 * number of threads of the stage that have not finished
+		 */
+		private int running;
+
+		/**
+		 * @param number which stage this is
+		 * @param threads number of threads of the stage
+		 * @param next the next stage, or {@code null} for the last stage
+		 */
+		public Stage(int number, int threads, Stage next) {
+			this.number = number;
+			this.threads = threads;
+			this.queue = new ArrayBlockingQueue<>(2 * threads);
+			this.next = next;
+			this.blocks = new LongAdder();
+			this.units = new LongAdder();
+			this.busy = new LongAdder();
+			this.starved = new LongAdder();
+			this.blocked = new LongAdder();
+			this.running = threads;
+		}
+
+		@Override
+		public void run() {
+			TextTokenizer tokenizer = new TextTokenizer();
+			Stemmer stemmer = CachedStemmer.get();
+			InvertedIndex local = new InvertedIndex();
+			int merged = 0;
+			try {
+				while (true) {
+					long start = System.nanoTime();
+					Block block = queue.take();
+					long taken = System.nanoTime();
+					starved.add(taken - start);
+					if (block == END) {
+						if (merged > 0) {
+							data.merge(local);
+						}
+						// leaves the end for the other threads of the stage
+						queue.put(END);
+						if (next != null && finish()) {
+							next.put(END);
+						}
+						return;
+					}
+
+					long waited = 0;
+					if (number == 0) {
+						waited = read(block.file, this);
+					}
+					else if (block.last && next != null) {
+						waited = emit(block, 0);
+					}
+					else {
+						switch (number) {
+							case 1:
+								waited = emit(block, tokenize(block, tokenizer));
+								break;
+							case 2:
+								stem(block, stemmer);
+								waited = emit(block, block.count);
+								break;
+							case 3:
+								index(block, data.recordsForms());
+								waited = emit(block, block.count);
+								break;
+							default:
+								if (!block.last) {
+									blocks.increment();
+									units.add(block.count);
+								}
+								merged += merge(block, local);
+								if (merged >= FLUSH) {
+									data.merge(local);
+									local = new InvertedIndex();
+									merged = 0;
+								}
+								break;
+						}
+					}
+					busy.add(System.nanoTime() - taken - waited);
+				}
+			} catch (InterruptedException e) {
+				System.err.println("Warning: Pipeline interrupted.");
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Counts a finished thread of the stage.
+		 *
+		 * @return true if it was the last thread of the stage
+		 */
+		private synchronized boolean finish() {
+			return --running == 0;
+		}
+
+		/**
+		 * Adds a block to the queue of the stage, waiting for room.
+		 *
+		 * @param block the block to add
+		 */
+		public void put(Block block) {
+			try {
+				queue.put(block);
+			} catch (InterruptedException e) {
+				System.err.println("Warning: Pipeline interrupted.");
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Hands a block to the next stage and counts it.
+		 *
+		 * @param block the block to hand over
+		 * @param amount number of bytes or words in the block
+		 * @return nanoseconds spent waiting for room in the next stage
+		 */
+		public long emit(Block block, long amount) {
+			if (!block.last) {
+				blocks.increment();
+				units.add(amount);
+			}
+			long start = System.nanoTime();
+			next.put(block);
+			long waited = System.nanoTime() - start;
+			blocked.add(waited);
+			return waited;
+		}
+
+		/**
+		 * Reports the throughput of the stage and how the time of its threads was
+		 * spent.
+		 *
+		 * @param elapsed nanoseconds the build took
+		 * @return the report of the stage
+		 */
+		public String report(long elapsed) {
+			double seconds = Math.max(1, elapsed) / 1e9;
+			double total = (double) Math.max(1, elapsed) * threads;
+			String unit = number == 0 ? "bytes" : "words";
+			return String.format("%-8s %3d threads %10d blocks %14d %s %14.0f %s/s  busy %3.0f%%  starved %3.0f%%  blocked %3.0f%%",
+					STAGES[number], threads, blocks.sum(), units.sum(), unit, units.sum() / seconds, unit,
+					100 * busy.sum() / total, 100 * starved.sum() / total, 100 * blocked.sum() / total);
+		}
+	}
+}
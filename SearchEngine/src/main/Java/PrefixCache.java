@@ -0,0 +1,196 @@
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author geoaldana
+ * This is a cache of the expanded postings of short prefixes for partial
+ * searches. A partial search of a short prefix has to walk every word that
+ * starts with it and every location of those words, so the cache keeps the
+ * number of matches per location of every prefix merged into two arrays. The
+ * cache belongs to one generation of an index and is cleared as soon as the
+ * index changes, unless it is told which prefixes changed. It is bounded by an
+ * estimate of its memory and evicts the least recently used prefixes.
+ */
+public class PrefixCache {
+
+	/**
+	 * The longest prefix that is cached.
+	 */
+	public static final int LENGTH = 3;
+
+	/**
+	 * The default memory budget in megabytes.
+	 */
+	public static final int DEFAULT_MEGABYTES = 32;
+
+	/**
+	 * the most memory of the cached postings
+	 */
+	private final long bytes;
+
+	/**
+	 * the postings by prefix in least recently used order
+	 */
+	private final LinkedHashMap<String, Postings> prefixes;
+
+	/**
+	 * estimated memory of the cached postings
+	 */
+	private long used;
+
+	/**
+	 * generation of the index the postings belong to
+	 */
+	private long generation;
+
+	/**
+	 * @param bytes the most memory of the cached postings
+	 */
+	public PrefixCache(long bytes) {
+		this.bytes = bytes;
+		this.prefixes = new LinkedHashMap<>(16, 0.75f, true);
+		this.used = 0;
+		this.generation = -1;
+	}
+
+	/**
+	 * Returns the postings of a prefix if they belong to the given generation of
+	 * the index.
+	 *
+	 * @param prefix the prefix
+	 * @param generation the generation of the index
+	 * @return the postings or {@code null} if not cached
+	 */
+	public synchronized Postings get(String prefix, long generation) {
+		if (this.generation != generation) {
+			return null;
+		}
+		return prefixes.get(prefix);
+	}
+
+	/**
+	 * Adds the postings of a prefix, clearing the postings of an older generation,
+	 * and evicts the least recently used prefixes until the cache is within its
+	 * budget.
+	 *
+	 * @param prefix the prefix
+	 * @param postings the postings of the prefix
+	 * @param generation the generation of the index the postings belong to
+	 */
+	public synchronized void put(String prefix, Postings postings, long generation) {
+		if (this.generation != generation) {
+			prefixes.clear();
+			used = 0;
+			this.generation = generation;
+		}
+		Postings old = prefixes.put(prefix, postings);
+		if (old != null) {
+			used -= old.bytes(prefix);
+		}
+		used += postings.bytes(prefix);
+		Iterator<Map.Entry<String, Postings>> eldest = prefixes.entrySet().iterator();
+		while (used > bytes && eldest.hasNext()) {
+			Map.Entry<String, Postings> entry = eldest.next();
+			used -= entry.getValue().bytes(entry.getKey());
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * Moves the postings to a newer generation of the index in which only the
+	 * words starting with the given prefixes changed, dropping the postings of
+	 * those prefixes and keeping the others.
+	 *
+	 * @param changed the prefixes whose postings changed
+	 * @param generation the newer generation of the index
+	 */
+	public synchronized void advance(Collection<String> changed, long generation) {
+		for (String prefix : changed) {
+			Postings old = prefixes.remove(prefix);
+			if (old != null) {
+				used -= old.bytes(prefix);
+			}
+		}
+		this.generation = generation;
+	}
+
+	/**
+	 * @return the number of cached prefixes
+	 */
+	public synchronized int size() {
+		return prefixes.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "PrefixCache with " + prefixes.size() + " prefixes of generation " + generation;
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a class that stores the merged postings of a prefix, the number of
+	 * matches of all the words starting with the prefix in every location.
+	 */
+	public static class Postings {
+
+		/**
+		 * the locations
+		 */
+		private final String[] locations;
+
+		/**
+		 * the number of matches in every location
+		 */
+		private final int[] matches;
+
+		/**
+		 * @param matches the number of matches by location
+		 */
+		public Postings(Map<String, Integer> matches) {
+			this.locations = new String[matches.size()];
+			this.matches = new int[matches.size()];
+			int i = 0;
+			for (Map.Entry<String, Integer> entry : matches.entrySet()) {
+				this.locations[i] = entry.getKey();
+				this.matches[i] = entry.getValue();
+				i++;
+			}
+		}
+
+		/**
+		 * @return the number of locations
+		 */
+		public int size() {
+			return locations.length;
+		}
+
+		/**
+		 * @param i the index of the location
+		 * @return the location
+		 */
+		public String location(int i) {
+			return locations[i];
+		}
+
+		/**
+		 * @param i the index of the location
+		 * @return the number of matches in the location
+		 */
+		public int matches(int i) {
+			return matches[i];
+		}
+
+		/**
+		 * Estimates the memory of the postings, whose locations are shared with the
+		 * index.
+		 *
+		 * @param prefix the prefix of the postings
+		 * @return the estimated number of bytes
+		 */
+		private long bytes(String prefix) {
+			return 96 + 2L * prefix.length() + 12L * locations.length;
+		}
+	}
+}
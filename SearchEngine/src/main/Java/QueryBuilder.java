@@ -25,14 +25,14 @@ public class QueryBuilder implements QueryBuilderInterface {
 	/**
 	 * This called InvertedIndex so it can be accessed when calling query functions.
 	 */
-	private final InvertedIndex data;
+	private final InvertedIndexInterface data;
 
 	/**
 	 * Initializes the argument map.
 	 * 
-	 * @param data InvertedIndex
+	 * @param data InvertedIndex, in memory or on disk
 	 */
-	public QueryBuilder(InvertedIndex data) {
+	public QueryBuilder(InvertedIndexInterface data) {
 		this.queryMap = new TreeMap<>();
 		this.data = data;
 	}
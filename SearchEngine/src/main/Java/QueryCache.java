@@ -0,0 +1,384 @@
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author geoaldana
+ * This is a bounded cache of search results. Results are cached by the sorted
+ * stems of the query and the search options, so every query with the same
+ * stems shares one entry. Every entry remembers the generation of the index it
+ * was computed from and is thrown away once the index changes.
+ *
+ * The cache is split into shards that are locked separately, so concurrent
+ * searches rarely wait for each other. Every shard is a segmented LRU: new
+ * entries start in a probation segment and move to a protected segment when
+ * they are found again, so a burst of one-time queries only pushes out other
+ * one-time queries and not the popular ones. A shard evicts when it holds too
+ * many entries or its results take too much memory.
+ *
+ * Misses of the same search on the same generation are coalesced, so when a
+ * popular query spikes only one caller searches the index and the others wait
+ * for its results.
+ */
+public class QueryCache {
+
+	/**
+	 * The default number of cached searches.
+	 */
+	public static final int DEFAULT_ENTRIES = 10000;
+
+	/**
+	 * The default memory budget of the cached results in megabytes.
+	 */
+	public static final int DEFAULT_MEGABYTES = 64;
+
+	/**
+	 * Number of shards, a power of two.
+	 */
+	private static final int SHARDS = 16;
+
+	/**
+	 * Share of a shard that is protected.
+	 */
+	private static final double PROTECTED = 0.8;
+
+	/**
+	 * the shards of the cache
+	 */
+	private final Shard[] shards;
+
+	/**
+	 * number of searches found in the cache
+	 */
+	private final LongAdder hits;
+
+	/**
+	 * number of searches not found in the cache
+	 */
+	private final LongAdder misses;
+
+	/**
+	 * searches of the index that are running, by generation and key
+	 */
+	private final SingleFlight<String, Entry> flights;
+
+	/**
+	 * @param entries the most searches that are cached
+	 * @param bytes the most memory the cached results take
+	 */
+	public QueryCache(int entries, long bytes) {
+		this.shards = new Shard[SHARDS];
+		for (int i = 0; i < SHARDS; i++) {
+			shards[i] = new Shard(Math.max(1, entries / SHARDS), Math.max(1, bytes / SHARDS));
+		}
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.flights = new SingleFlight<>();
+	}
+
+	/**
+	 * Returns the results of a search, from the cache if the same search was done
+	 * on the same generation of the index.
+	 *
+	 * @param index the index to search
+	 * @param queries the stems of the query
+	 * @param exact whether to do an exact search
+	 * @return the sorted results, which must not be changed
+	 */
+	public List<InvertedIndex.SearchResult> search(InvertedIndex index, Set<String> queries, boolean exact) {
+		return search(index, queries, exact ? "exact" : "partial");
+	}
+
+	/**
+	 * Returns the results of a search, from the cache if the same search was done
+	 * on the same generation of the index.
+	 *
+	 * @param index the index to search
+	 * @param queries the stems of the query
+	 * @param mode the search to do, "exact", "fuzzy" or "partial"
+	 * @return the sorted results, which must not be changed
+	 */
+	public List<InvertedIndex.SearchResult> search(InvertedIndex index, Set<String> queries, String mode) {
+		return search(index, queries, mode, null);
+	}
+
+	/**
+	 * Returns the results of a search that stops at a deadline. Results cut short
+	 * by the deadline are not cached, and a caller that gets the results of a
+	 * search another caller's deadline stopped searches again until its own
+	 * deadline, which finds its deadline expired only if that one passes too.
+	 *
+	 * @param index the index to search
+	 * @param queries the stems of the query
+	 * @param mode the search to do, "exact", "fuzzy" or "partial"
+	 * @param deadline the deadline of the search, or {@code null} if there is none
+	 * @return the sorted results, which must not be changed
+	 */
+	public List<InvertedIndex.SearchResult> search(InvertedIndex index, Set<String> queries, String mode,
+			Deadline deadline) {
+		String key = key(queries, mode);
+		Shard shard = shards[key.hashCode() & (SHARDS - 1)];
+		// the generation is read first, so results of a changing index are never kept too long
+		long generation = index.generation();
+		List<InvertedIndex.SearchResult> results = shard.get(key, generation);
+		if (results != null) {
+			hits.increment();
+			return results;
+		}
+		misses.increment();
+		// the results are cached before the flight ends, and a caller that missed the
+		// cache just before a flight ended finds them when it starts its own flight
+		Entry entry = flights.run(generation + " " + key, () -> {
+			List<InvertedIndex.SearchResult> cached = shard.get(key, generation);
+			if (cached != null) {
+				return new Entry(cached, generation, bytes(key, cached), false);
+			}
+			List<InvertedIndex.SearchResult> searched = Collections.unmodifiableList(index.search(queries, mode, deadline));
+			Entry searchedEntry = new Entry(searched, generation, bytes(key, searched), deadline != null && deadline.expired());
+			if (!searchedEntry.partial) {
+				shard.put(key, searchedEntry);
+			}
+			return searchedEntry;
+		});
+		if (entry.partial) {
+			// a caller without a deadline always gets every result
+			if (deadline == null) {
+				return Collections.unmodifiableList(index.search(queries, mode));
+			}
+			// the shared search stopped at the deadline of another caller
+			if (!deadline.passed()) {
+				List<InvertedIndex.SearchResult> searched = Collections.unmodifiableList(index.search(queries, mode, deadline));
+				if (!deadline.expired()) {
+					shard.put(key, new Entry(searched, generation, bytes(key, searched), false));
+				}
+				return searched;
+			}
+		}
+		return entry.results;
+	}
+
+	/**
+	 * Returns the key of a search. The stems are sorted sets, so the same stems
+	 * always give the same key.
+	 *
+	 * @param queries the stems of the query
+	 * @param mode the search, "exact", "fuzzy" or "partial"
+	 * @return the key of the search
+	 */
+	public static String key(Set<String> queries, String mode) {
+		return mode + " " + String.join(" ", queries);
+	}
+
+	/**
+	 * Estimates the memory a cached search takes.
+	 *
+	 * @param key the key of the search
+	 * @param results the results
+	 * @return the estimated number of bytes
+	 */
+	private static long bytes(String key, List<InvertedIndex.SearchResult> results) {
+		// the entry and key, then every result object and its slot in the list
+		return 96 + 2L * key.length() + 48L * results.size();
+	}
+
+	/**
+	 * @return the number of searches found in the cache
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of searches not found in the cache
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the number of misses that waited for the same search of another
+	 *         caller
+	 */
+	public long coalesced() {
+		return flights.shared();
+	}
+
+	/**
+	 * @return the number of cached searches
+	 */
+	public int size() {
+		int size = 0;
+		for (Shard shard : shards) {
+			size += shard.size();
+		}
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "QueryCache with " + size() + " searches, " + hits() + " hits, " + misses() + " misses and "
+				+ coalesced() + " coalesced";
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a class that stores a cached search.
+	 */
+	private static class Entry {
+
+		/**
+		 * the sorted results
+		 */
+		private final List<InvertedIndex.SearchResult> results;
+
+		/**
+		 * generation of the index the results were computed from
+		 */
+		private final long generation;
+
+		/**
+		 * estimated memory of the entry
+		 */
+		private final long bytes;
+
+		/**
+		 * whether the search was stopped by its deadline
+		 */
+		private final boolean partial;
+
+		/**
+		 * @param results the sorted results
+		 * @param generation generation of the index the results were computed from
+		 * @param bytes estimated memory of the entry
+		 * @param partial whether the search was stopped by its deadline
+		 */
+		public Entry(List<InvertedIndex.SearchResult> results, long generation, long bytes, boolean partial) {
+			this.results = results;
+			this.generation = generation;
+			this.bytes = bytes;
+			this.partial = partial;
+		}
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a shard of the cache, a segmented LRU with a probation and a
+	 * protected segment that are both kept in least recently used order.
+	 */
+	private static class Shard {
+
+		/**
+		 * the most entries in the shard
+		 */
+		private final int entries;
+
+		/**
+		 * the most entries in the protected segment
+		 */
+		private final int protectedEntries;
+
+		/**
+		 * the most memory of the shard
+		 */
+		private final long bytes;
+
+		/**
+		 * entries found once
+		 */
+		private final LinkedHashMap<String, Entry> probation;
+
+		/**
+		 * entries found more than once
+		 */
+		private final LinkedHashMap<String, Entry> protect;
+
+		/**
+		 * estimated memory of the entries
+		 */
+		private long used;
+
+		/**
+		 * @param entries the most entries in the shard
+		 * @param bytes the most memory of the shard
+		 */
+		public Shard(int entries, long bytes) {
+			this.entries = entries;
+			this.protectedEntries = Math.max(1, (int) (entries * PROTECTED));
+			this.bytes = bytes;
+			this.probation = new LinkedHashMap<>(16, 0.75f, true);
+			this.protect = new LinkedHashMap<>(16, 0.75f, true);
+			this.used = 0;
+		}
+
+		/**
+		 * Returns the results of a search if they were computed from the given
+		 * generation of the index.
+		 *
+		 * @param key the key of the search
+		 * @param generation the generation of the index
+		 * @return the results or {@code null} if not cached
+		 */
+		public synchronized List<InvertedIndex.SearchResult> get(String key, long generation) {
+			Entry entry = protect.get(key);
+			if (entry == null) {
+				entry = probation.remove(key);
+				if (entry == null) {
+					return null;
+				}
+				// found again, so it is protected
+				protect.put(key, entry);
+				if (protect.size() > protectedEntries) {
+					Iterator<Map.Entry<String, Entry>> eldest = protect.entrySet().iterator();
+					Map.Entry<String, Entry> demoted = eldest.next();
+					String demotedKey = demoted.getKey();
+					Entry demotedEntry = demoted.getValue();
+					eldest.remove();
+					probation.put(demotedKey, demotedEntry);
+				}
+			}
+			if (entry.generation != generation) {
+				protect.remove(key);
+				probation.remove(key);
+				used -= entry.bytes;
+				return null;
+			}
+			return entry.results;
+		}
+
+		/**
+		 * Adds a search and evicts the least recently used entries, from the
+		 * probation segment first, until the shard is within its limits.
+		 *
+		 * @param key the key of the search
+		 * @param entry the cached search
+		 */
+		public synchronized void put(String key, Entry entry) {
+			Entry old = protect.remove(key);
+			if (old == null) {
+				old = probation.remove(key);
+			}
+			if (old != null) {
+				used -= old.bytes;
+			}
+			probation.put(key, entry);
+			used += entry.bytes;
+			while (probation.size() + protect.size() > entries || used > bytes) {
+				LinkedHashMap<String, Entry> segment = probation.isEmpty() ? protect : probation;
+				Iterator<Entry> eldest = segment.values().iterator();
+				used -= eldest.next().bytes;
+				eldest.remove();
+			}
+		}
+
+		/**
+		 * @return the number of entries in the shard
+		 */
+		public synchronized int size() {
+			return probation.size() + protect.size();
+		}
+	}
+}
@@ -0,0 +1,262 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * @author geoaldana
+ * This class answers searches as JSON, for example
+ * {@code GET /api/search?q=apple+pie&mode=exact&offset=10&limit=10}. Everything
+ * about a search is kept in local variables, so concurrent requests never see
+ * each other's results, and a search takes a single request. The page of
+ * results is written straight to the response as it is read from the results.
+ * With an executor the search runs on its threads with a deadline, and results
+ * cut short by the deadline are flagged with {@code "partial":true}.
+ */
+public class SearchApiServlet extends HttpServlet {
+
+	/**
+	 * default serial Version
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The number of results on a page when no limit is given.
+	 */
+	public static final int DEFAULT_LIMIT = 10;
+
+	/**
+	 * The most results on a page.
+	 */
+	public static final int MAX_LIMIT = 100;
+
+	/**
+	 * index that will be used to call the search
+	 */
+	private final ThreadSafeInvertedIndex index;
+
+	/**
+	 * cache of the search results
+	 */
+	private final QueryCache cache;
+
+	/**
+	 * store of the words of the documents, or {@code null} if there are no snippets
+	 */
+	private final DocumentStore documents;
+
+	/**
+	 * executor the searches run on, or {@code null} to search on the request thread
+	 */
+	private final SearchExecutor executor;
+
+	/**
+	 * @param index that will be used to call search
+	 * @param cache of the search results
+	 */
+	public SearchApiServlet(ThreadSafeInvertedIndex index, QueryCache cache) {
+		this(index, cache, null);
+	}
+
+	/**
+	 * @param index that will be used to call search
+	 * @param cache of the search results
+	 * @param documents store of the words of the documents, or {@code null}
+	 */
+	public SearchApiServlet(ThreadSafeInvertedIndex index, QueryCache cache, DocumentStore documents) {
+		this(index, cache, documents, null);
+	}
+
+	/**
+	 * @param index that will be used to call search
+	 * @param cache of the search results
+	 * @param documents store of the words of the documents, or {@code null}
+	 * @param executor the searches run on, or {@code null} to search on the request thread
+	 */
+	public SearchApiServlet(ThreadSafeInvertedIndex index, QueryCache cache, DocumentStore documents,
+			SearchExecutor executor) {
+		super();
+		this.index = index;
+		this.cache = cache;
+		this.documents = documents;
+		this.executor = executor;
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+
+		String query = request.getParameter("q");
+		String mode = request.getParameter("mode");
+		if (mode == null || mode.isEmpty()) {
+			mode = "partial";
+		}
+		int offset = parse(request.getParameter("offset"), 0);
+		int limit = parse(request.getParameter("limit"), DEFAULT_LIMIT);
+		if (query == null) {
+			error(response, "missing q");
+			return;
+		}
+		if (!mode.equals("exact") && !mode.equals("partial") && !mode.equals("fuzzy")) {
+			error(response, "mode must be exact, partial or fuzzy");
+			return;
+		}
+		if (offset < 0 || limit < 0 || limit > MAX_LIMIT) {
+			error(response, "offset must be at least 0 and limit between 0 and " + MAX_LIMIT);
+			return;
+		}
+
+		Task task = new Task(response, TextFileStemmer.uniqueStems(query), mode, offset, limit);
+		if (executor == null) {
+			task.answer(null);
+		}
+		else {
+			executor.submit(request, task);
+		}
+	}
+
+	/**
+	 * Answers with an error as JSON.
+	 *
+	 * @param response the response
+	 * @param message what was wrong with the request
+	 * @throws IOException if an IO error occurs
+	 */
+	private static void error(HttpServletResponse response, String message) throws IOException {
+		response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+		PrintWriter out = response.getWriter();
+		out.write("{\"error\":");
+		SimpleJsonWriter.escapeAndQuote(message, out);
+		out.write('}');
+		out.flush();
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a class that searches and writes the page of results of one
+	 * request.
+	 */
+	private class Task implements SearchExecutor.Search {
+
+		/**
+		 * the response
+		 */
+		private final HttpServletResponse response;
+
+		/**
+		 * the stems of the query
+		 */
+		private final TreeSet<String> queries;
+
+		/**
+		 * the search, "exact", "fuzzy" or "partial"
+		 */
+		private final String mode;
+
+		/**
+		 * the first result on the page
+		 */
+		private final int offset;
+
+		/**
+		 * the most results on the page
+		 */
+		private final int limit;
+
+		/**
+		 * @param response the response
+		 * @param queries the stems of the query
+		 * @param mode the search, "exact", "fuzzy" or "partial"
+		 * @param offset the first result on the page
+		 * @param limit the most results on the page
+		 */
+		public Task(HttpServletResponse response, TreeSet<String> queries, String mode, int offset, int limit) {
+			this.response = response;
+			this.queries = queries;
+			this.mode = mode;
+			this.offset = offset;
+			this.limit = limit;
+		}
+
+		@Override
+		public void answer(Deadline deadline) throws IOException {
+			List<InvertedIndex.SearchResult> results = queries.isEmpty() ? List.of()
+					: cache.search(index, queries, mode, deadline);
+			boolean partial = deadline != null && deadline.expired();
+			int from = Math.min(offset, results.size());
+			int to = Math.min(from + limit, results.size());
+
+			response.setStatus(HttpServletResponse.SC_OK);
+			PrintWriter out = response.getWriter();
+			// a comma would break the JSON in some locales
+			DecimalFormat format = new DecimalFormat("0.00000000", DecimalFormatSymbols.getInstance(Locale.ROOT));
+			out.write("{\"query\":");
+			SimpleJsonWriter.escapeAndQuote(String.join(" ", queries), out);
+			out.write(",\"mode\":\"" + mode + "\"");
+			out.write(",\"partial\":" + partial);
+			out.write(",\"total\":" + results.size());
+			out.write(",\"offset\":" + offset);
+			out.write(",\"limit\":" + limit);
+			out.write(",\"results\":[");
+			// only the words of the results on the page are needed for their snippets, which
+			// are left out once the deadline has passed
+			TreeSet<String> matches = documents == null || from == to || (deadline != null && deadline.passed()) ? null
+					: index.matches(queries, mode, deadline);
+			for (int i = from; i < to; i++) {
+				InvertedIndex.SearchResult result = results.get(i);
+				if (i > from) {
+					out.write(',');
+				}
+				out.write("{\"where\":");
+				SimpleJsonWriter.escapeAndQuote(result.getWhere(), out);
+				out.write(",\"count\":" + result.getCount());
+				out.write(",\"score\":" + format.format(result.getScore()));
+				if (matches != null && (deadline == null || !deadline.passed())) {
+					out.write(",\"snippet\":");
+					String snippet = documents.snippet(result.getWhere(),
+							index.positions(matches, result.getWhere(), deadline), DocumentStore.DEFAULT_WIDTH, "", "");
+					SimpleJsonWriter.escapeAndQuote(snippet, out);
+				}
+				out.write('}');
+			}
+			out.write("]}");
+			out.flush();
+		}
+
+		@Override
+		public void reject() throws IOException {
+			response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			response.setHeader("Retry-After", "1");
+			PrintWriter out = response.getWriter();
+			out.write("{\"error\":\"too many searches, try again\"}");
+			out.flush();
+		}
+	}
+
+	/**
+	 * Parses a number parameter.
+	 *
+	 * @param value the value of the parameter or {@code null}
+	 * @param defaultValue the number if the parameter is missing
+	 * @return the number, or -1 if it is not a number
+	 */
+	private static int parse(String value, int defaultValue) {
+		if (value == null || value.isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
@@ -1,14 +1,14 @@
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.TreeSet;
 
 import javax.servlet.ServletException;
@@ -17,12 +17,14 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.text.StringEscapeUtils;
-import org.apache.commons.text.StringSubstitutor;
 
 
 /**
  * @author geoaldana
- * This class generates the results page for the search engine.
+ * This class generates the results page for the search engine. A posted search
+ * is redirected to {@code GET /resultspage?q=apple+pie&mode=exact}, and the
+ * page is rendered from that request alone, so concurrent users never see each
+ * other's results and a page of results can be shared or reloaded.
  */
 public class SearchEngineResultServlet extends HttpServlet {
 
@@ -32,82 +34,234 @@ public class SearchEngineResultServlet extends HttpServlet {
 	private static final long serialVersionUID = 1L;
 
 	/**
-	 * html template that will be used
+	 * html template that will be used, parsed once
 	 */
-	private final String resultTemplate;
+	private final Template resultTemplate;
 
 	/**
-	 * title of the webpage
+	 * format of the date and time, which can be shared by threads
 	 */
-	private final String TITLE = "Geo's Search Engine";
+	private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("hh:mm a 'on' EEEE, MMMM dd yyyy");
 
 	/**
-	 * data structure that will hold results
+	 * line separator written after every line, like println
 	 */
-	private ArrayList<InvertedIndex.SearchResult> searchresults;
+	private static final String NEWLINE = System.lineSeparator();
 
 	/**
-	 * String that will hold whatever is search
+	 * title of the webpage
 	 */
-	private String name;
+	private final String TITLE = "Geo's Search Engine";
 
 	/**
 	 * index that will be used to call the search
 	 */
 	private final ThreadSafeInvertedIndex index;
 
+	/**
+	 * cache of the search results
+	 */
+	private final QueryCache cache;
+
+	/**
+	 * store of the words of the documents, or {@code null} if there are no snippets
+	 */
+	private final DocumentStore documents;
+
+	/**
+	 * number of results that are shown with a snippet
+	 */
+	private static final int SNIPPETS = 10;
+
+	/**
+	 * executor the searches run on, or {@code null} to search on the request thread
+	 */
+	private final SearchExecutor executor;
+
+	/**
+	 * @param index that will be used to call search
+	 * @param cache of the search results
+	 * @throws IOException if error occurs
+	 */
+	public SearchEngineResultServlet(ThreadSafeInvertedIndex index, QueryCache cache) throws IOException {
+		this(index, cache, null);
+	}
+
 	/**
 	 * @param index that will be used to call search
+	 * @param cache of the search results
+	 * @param documents store of the words of the documents, or {@code null}
 	 * @throws IOException if error occurs
 	 */
-	public SearchEngineResultServlet(ThreadSafeInvertedIndex index) throws IOException {
+	public SearchEngineResultServlet(ThreadSafeInvertedIndex index, QueryCache cache, DocumentStore documents)
+			throws IOException {
+		this(index, cache, documents, null);
+	}
+
+	/**
+	 * @param index that will be used to call search
+	 * @param cache of the search results
+	 * @param documents store of the words of the documents, or {@code null}
+	 * @param executor the searches run on, or {@code null} to search on the request thread
+	 * @throws IOException if error occurs
+	 */
+	public SearchEngineResultServlet(ThreadSafeInvertedIndex index, QueryCache cache, DocumentStore documents,
+			SearchExecutor executor) throws IOException {
 		super();
 		this.index = index;
-		resultTemplate = Files.readString(Path.of("html", "result.html"), StandardCharsets.UTF_8);
+		this.cache = cache;
+		this.documents = documents;
+		this.executor = executor;
+		resultTemplate = Template.load(Path.of("html", "result.html"));
 	}
 
 	@Override
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		Map<String, String> values = new HashMap<>();
-		values.put("title", TITLE);
-
-		values.put("method", "POST");
-		values.put("action", "/");
-		values.put("query", name);
-		values.put("timestamp", getDate());
-
-		StringSubstitutor replacer = new StringSubstitutor(values);
-		String foot = replacer.replace(resultTemplate);
+		String query = request.getParameter("q");
+		String mode = request.getParameter("mode");
+		if (mode == null || (!mode.equals("exact") && !mode.equals("fuzzy"))) {
+			mode = "partial";
+		}
 
-		PrintWriter out = response.getWriter();
-		for (InvertedIndex.SearchResult results : searchresults) {
-			out.println(String.format("<p><a href=\"%s\">%s</a></p>", results.getWhere(), results.getWhere()));
+		Task task = new Task(response, query == null ? "" : query, mode);
+		// a page without a query has nothing to search
+		if (executor == null || query == null) {
+			task.answer(null);
+		}
+		else {
+			executor.submit(request, task);
 		}
-		out.println(foot);
-		out.flush();
-		response.setStatus(HttpServletResponse.SC_OK);
 	}
 
 	@Override
 	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		name = request.getParameter("name");
-		name = StringEscapeUtils.escapeHtml4(name);
-		TreeSet<String> queries = new TreeSet<String>();
-		queries = TextFileStemmer.uniqueStems(name);
-
-		// check if partial
-		if (request.getParameter("Partial") != null) {
-			searchresults = index.search(queries, false);
-		}
+		String name = request.getParameter("name");
+		String mode = "partial";
 
 		// check if exact
 		if (request.getParameter("Exact") != null) {
-			searchresults = index.search(queries, true);
+			mode = "exact";
 		}
-		response.setContentType("text/html");
 
+		// check if fuzzy, which also finds misspelled words
+		if (request.getParameter("Fuzzy") != null) {
+			mode = "fuzzy";
+		}
+
+		// the search is done by the page it redirects to
 		response.setStatus(HttpServletResponse.SC_OK);
-		response.sendRedirect(request.getServletPath());
+		response.sendRedirect(request.getServletPath() + "?q="
+				+ URLEncoder.encode(name == null ? "" : name, StandardCharsets.UTF_8) + "&mode=" + mode);
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a class that does the search of a request and writes its page of
+	 * results. Everything about the search is kept in the task.
+	 */
+	private class Task implements SearchExecutor.Search {
+
+		/**
+		 * the response
+		 */
+		private final HttpServletResponse response;
+
+		/**
+		 * the query as it was typed
+		 */
+		private final String query;
+
+		/**
+		 * the search, "exact", "fuzzy" or "partial"
+		 */
+		private final String mode;
+
+		/**
+		 * @param response the response
+		 * @param query the query as it was typed
+		 * @param mode the search, "exact", "fuzzy" or "partial"
+		 */
+		public Task(HttpServletResponse response, String query, String mode) {
+			this.response = response;
+			this.query = query;
+			this.mode = mode;
+		}
+
+		@Override
+		public void answer(Deadline deadline) throws IOException {
+			TreeSet<String> queries = TextFileStemmer.uniqueStems(query);
+			List<InvertedIndex.SearchResult> results = queries.isEmpty() ? List.of()
+					: cache.search(index, queries, mode, deadline);
+			boolean partial = deadline != null && deadline.expired();
+
+			// the first results show the text around the matched words, until the deadline
+			ArrayList<String> snippets = new ArrayList<>();
+			if (documents != null && !results.isEmpty() && (deadline == null || !deadline.passed())) {
+				TreeSet<String> matches = index.matches(queries, mode, deadline);
+				for (int i = 0; i < results.size() && i < SNIPPETS; i++) {
+					if (deadline != null && deadline.passed()) {
+						break;
+					}
+					String where = results.get(i).getWhere();
+					snippets.add(documents.snippet(where, index.positions(matches, where, deadline),
+							DocumentStore.DEFAULT_WIDTH, "<b>", "</b>"));
+				}
+			}
+
+			response.setContentType("text/html");
+			response.setCharacterEncoding("UTF-8");
+			String[] values = new String[resultTemplate.size()];
+			put(values, "title", TITLE);
+
+			put(values, "method", "POST");
+			put(values, "action", "/");
+			put(values, "query", StringEscapeUtils.escapeHtml4(query));
+			put(values, "timestamp", getDate());
+
+			// the lines of the results are built in one buffer and encoded at once
+			StringBuilder lines = new StringBuilder();
+			if (partial) {
+				lines.append("<p>The search took too long, so these are the results found in time.</p>").append(NEWLINE);
+			}
+			for (int i = 0; i < results.size(); i++) {
+				String where = results.get(i).getWhere();
+				lines.append("<p><a href=\"").append(where).append("\">").append(where).append("</a></p>").append(NEWLINE);
+				if (i < snippets.size()) {
+					lines.append("<p>").append(snippets.get(i)).append("</p>").append(NEWLINE);
+				}
+			}
+
+			response.setStatus(HttpServletResponse.SC_OK);
+			OutputStream out = new BufferedOutputStream(response.getOutputStream(), 16384);
+			out.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+			resultTemplate.render(out, values);
+			out.write(NEWLINE.getBytes(StandardCharsets.UTF_8));
+			out.flush();
+		}
+
+		@Override
+		public void reject() throws IOException {
+			response.setContentType("text/html");
+			response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			response.setHeader("Retry-After", "1");
+			PrintWriter out = response.getWriter();
+			out.println("<p>The search engine is busy, please try again.</p>");
+			out.flush();
+		}
+	}
+
+	/**
+	 * Sets the value of a variable of the template, if the template has it.
+	 *
+	 * @param values the values by slot
+	 * @param name the name of the variable
+	 * @param value the value
+	 */
+	private void put(String[] values, String name, String value) {
+		int slot = resultTemplate.slot(name);
+		if (slot >= 0) {
+			values[slot] = value;
+		}
 	}
 
 	/**
@@ -117,8 +271,6 @@ public class SearchEngineResultServlet extends HttpServlet {
 	 * @return current date and time
 	 */
 	private static String getDate() {
-		String format = "hh:mm a 'on' EEEE, MMMM dd yyyy";
-		DateFormat formatter = new SimpleDateFormat(format);
-		return formatter.format(new Date());
+		return LocalDateTime.now().format(FORMAT);
 	}
 }
@@ -1,6 +1,10 @@
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
 import org.eclipse.jetty.servlet.ServletHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 /**
  * @author geoaldana
@@ -8,6 +12,27 @@ import org.eclipse.jetty.servlet.ServletHolder;
  */
 public class SearchEngineServer {
 
+	/**
+	 * The default number of threads of the server.
+	 */
+	public static final int DEFAULT_THREADS = 200;
+
+	/**
+	 * The default number of jobs that may wait for a thread of the server.
+	 */
+	public static final int DEFAULT_QUEUE = 1000;
+
+	/**
+	 * The smallest response in bytes that is compressed, since compressing small
+	 * pages costs more than it saves.
+	 */
+	public static final int GZIP_SIZE = 2048;
+
+	/**
+	 * The fewest threads of the server, since the connector keeps some of them.
+	 */
+	private static final int MIN_THREADS = 2 * Runtime.getRuntime().availableProcessors() + 8;
+
 	/**
 	 * Index that will be used to do the searches
 	 */
@@ -18,13 +43,88 @@ public class SearchEngineServer {
 	 */
 	private final int PORT;
 
+	/**
+	 * Cache of the search results shared by the servlets
+	 */
+	private final QueryCache cache;
+
+	/**
+	 * Store of the words of the documents, or {@code null} if there are no snippets
+	 */
+	private final DocumentStore documents;
+
+	/**
+	 * Executor the searches of the servlets run on
+	 */
+	private final SearchExecutor executor;
+
+	/**
+	 * Number of threads of the server
+	 */
+	private final int threads;
+
+	/**
+	 * Number of jobs that may wait for a thread of the server
+	 */
+	private final int queue;
+
 	/**
 	 * @param index used to search
 	 * @param port to start server
 	 */
 	public SearchEngineServer(ThreadSafeInvertedIndex index, int port) {
+		this(index, port, new QueryCache(QueryCache.DEFAULT_ENTRIES, (long) QueryCache.DEFAULT_MEGABYTES << 20));
+	}
+
+	/**
+	 * @param index used to search
+	 * @param port to start server
+	 * @param cache of the search results
+	 */
+	public SearchEngineServer(ThreadSafeInvertedIndex index, int port, QueryCache cache) {
+		this(index, port, cache, null);
+	}
+
+	/**
+	 * @param index used to search
+	 * @param port to start server
+	 * @param cache of the search results
+	 * @param documents store of the words of the documents, or {@code null}
+	 */
+	public SearchEngineServer(ThreadSafeInvertedIndex index, int port, QueryCache cache, DocumentStore documents) {
+		this(index, port, cache, documents, new SearchExecutor());
+	}
+
+	/**
+	 * @param index used to search
+	 * @param port to start server
+	 * @param cache of the search results
+	 * @param documents store of the words of the documents, or {@code null}
+	 * @param executor the searches of the servlets run on
+	 */
+	public SearchEngineServer(ThreadSafeInvertedIndex index, int port, QueryCache cache, DocumentStore documents,
+			SearchExecutor executor) {
+		this(index, port, cache, documents, executor, DEFAULT_THREADS, DEFAULT_QUEUE);
+	}
+
+	/**
+	 * @param index used to search
+	 * @param port to start server
+	 * @param cache of the search results
+	 * @param documents store of the words of the documents, or {@code null}
+	 * @param executor the searches of the servlets run on
+	 * @param threads number of threads of the server
+	 * @param queue number of jobs that may wait for a thread of the server
+	 */
+	public SearchEngineServer(ThreadSafeInvertedIndex index, int port, QueryCache cache, DocumentStore documents,
+			SearchExecutor executor, int threads, int queue) {
+		this.threads = Math.max(MIN_THREADS, threads);
+		this.queue = Math.max(1, queue);
 		this.index = index;
 		this.PORT = port;
+		this.cache = cache;
+		this.documents = documents;
+		this.executor = executor;
 	}
 
 	/**
@@ -32,13 +132,34 @@ public class SearchEngineServer {
 	 * @throws Exception thrown if any errors occur
 	 */
 	public void StartSearchEngineServer(int port) throws Exception {
-		// create the jetty server
-		Server server = new Server(PORT);
+		// create the jetty server, whose threads and queue are bounded so a peak can not pile up
+		QueuedThreadPool pool = new QueuedThreadPool(threads, Math.min(threads, MIN_THREADS), 60000,
+				new BlockingArrayQueue<>(queue));
+		pool.setName("server");
+		Server server = new Server(pool);
+		ServerConnector connector = new ServerConnector(server);
+		connector.setPort(PORT);
+		server.addConnector(connector);
 		ServletHandler handler = new ServletHandler();
 		handler.addServletWithMapping(new ServletHolder(new SearchEngineServlet()), "/");
-		handler.addServletWithMapping(new ServletHolder(new SearchEngineResultServlet(index)), "/resultspage");
-		server.setHandler(handler);
+		// the searches run on the executor, so these servlets answer asynchronously
+		ServletHolder results = new ServletHolder(new SearchEngineResultServlet(index, cache, documents, executor));
+		results.setAsyncSupported(true);
+		handler.addServletWithMapping(results, "/resultspage");
+		ServletHolder api = new ServletHolder(new SearchApiServlet(index, cache, documents, executor));
+		api.setAsyncSupported(true);
+		handler.addServletWithMapping(api, "/api/search");
+		handler.addServletWithMapping(new ServletHolder(new SuggestServlet(index)), "/suggest");
+		handler.addServletWithMapping(new ServletHolder(new MetricsServlet(pool, executor, cache)), "/metrics");
+		// large result pages are compressed for clients that accept gzip
+		GzipHandler gzip = new GzipHandler();
+		gzip.setMinGzipSize(GZIP_SIZE);
+		gzip.setIncludedMethods("GET", "POST");
+		gzip.setIncludedMimeTypes("text/html", "application/json");
+		gzip.setHandler(handler);
+		server.setHandler(gzip);
 		server.start();
-		server.join();	
+		server.join();
+		executor.shutdown();
 	}
 }
@@ -1,17 +1,15 @@
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.text.StringEscapeUtils;
-import org.apache.commons.text.StringSubstitutor;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -29,9 +27,14 @@ public class SearchEngineServlet extends HttpServlet {
 	private static final long serialVersionUID = 1L;
 
 	/**
-	 * html template that will be used
+	 * html template that will be used, parsed once
 	 */
-	private final String SearchEngineTemplate;
+	private final Template SearchEngineTemplate;
+
+	/**
+	 * format of the date and time, which can be shared by threads
+	 */
+	private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("hh:mm a 'on' EEEE, MMMM dd yyyy");
 
 	/**
 	 * title of the webpage
@@ -50,34 +53,46 @@ public class SearchEngineServlet extends HttpServlet {
 	public SearchEngineServlet() throws IOException {
 		super();
 		messages = new ArrayList<>();
-		SearchEngineTemplate = Files.readString(Path.of("html", "index.html"), StandardCharsets.UTF_8);
+		SearchEngineTemplate = Template.load(Path.of("html", "index.html"));
 	}
 
 	@Override
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		response.setContentType("text/html");
-		Map<String, String> values = new HashMap<>();
-		values.put("title", TITLE);
-		values.put("thread", Thread.currentThread().getName());
+		response.setCharacterEncoding("UTF-8");
+		String[] values = new String[SearchEngineTemplate.size()];
+		put(values, "title", TITLE);
+		put(values, "thread", Thread.currentThread().getName());
 
 		// setup form
-		values.put("method", "POST");
-		values.put("action", "/resultspage");
-		values.put("timestamp", getDate());
-
-		values.put("messages", String.join("\n\n", messages));
-
-		StringSubstitutor replacer = new StringSubstitutor(values);
-		String html = replacer.replace(SearchEngineTemplate);
+		put(values, "method", "POST");
+		put(values, "action", "/resultspage");
+		put(values, "timestamp", getDate());
 
-		PrintWriter out = response.getWriter();
+		put(values, "messages", String.join("\n\n", messages));
 
-		out.println(html);
+		OutputStream out = new BufferedOutputStream(response.getOutputStream());
+		SearchEngineTemplate.render(out, values);
+		out.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
 
 		out.flush();
 		response.setStatus(HttpServletResponse.SC_OK);
 	}
 
+	/**
+	 * Sets the value of a variable of the template, if the template has it.
+	 *
+	 * @param values the values by slot
+	 * @param name the name of the variable
+	 * @param value the value
+	 */
+	private void put(String[] values, String name, String value) {
+		int slot = SearchEngineTemplate.slot(name);
+		if (slot >= 0) {
+			values[slot] = value;
+		}
+	}
+
 	@Override
 	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		response.setContentType("text/html");
@@ -99,8 +114,6 @@ public class SearchEngineServlet extends HttpServlet {
 	 * @return current date and time
 	 */
 	private static String getDate() {
-		String format = "hh:mm a 'on' EEEE, MMMM dd yyyy";
-		DateFormat formatter = new SimpleDateFormat(format);
-		return formatter.format(new Date());
+		return LocalDateTime.now().format(FORMAT);
 	}
 }
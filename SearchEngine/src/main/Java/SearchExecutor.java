@@ -0,0 +1,364 @@
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * @author geoaldana
+ * This class runs the searches of the servlets on its own threads, so a slow
+ * search never holds one of the threads of the server. A request is put in
+ * asynchronous mode and its search waits in a bounded queue, and when the queue
+ * is full the request is turned away at once. Every search gets a deadline and
+ * answers with the results found by then, flagged as partial. If a search has
+ * not even started long after its deadline, the request is answered without
+ * searching, so no request hangs. Under overload the admission control turns
+ * searches away before they wait too long.
+ */
+public class SearchExecutor {
+
+	/**
+	 * The default number of search threads.
+	 */
+	public static final int DEFAULT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * The default number of searches that may wait for a thread.
+	 */
+	public static final int DEFAULT_QUEUE = 128;
+
+	/**
+	 * The default deadline of a search in milliseconds.
+	 */
+	public static final long DEFAULT_DEADLINE = 1000;
+
+	/**
+	 * the threads the searches run on
+	 */
+	private final WorkQueue queue;
+
+	/**
+	 * the deadline of a search in milliseconds
+	 */
+	private final long deadline;
+
+	/**
+	 * the most searches waiting for a thread
+	 */
+	private final int capacity;
+
+	/**
+	 * decides which searches are taken on
+	 */
+	private final AdmissionControl admission;
+
+	/**
+	 * number of searches running
+	 */
+	private final AtomicInteger running;
+
+	/**
+	 * number of answered searches
+	 */
+	private final LongAdder answered;
+
+	/**
+	 * number of searches answered with partial results
+	 */
+	private final LongAdder partial;
+
+	/**
+	 * @param threads number of search threads
+	 * @param capacity the most searches waiting for a thread
+	 * @param deadline the deadline of a search in milliseconds
+	 */
+	public SearchExecutor(int threads, int capacity, long deadline) {
+		this(threads, capacity, deadline, new AdmissionControl());
+	}
+
+	/**
+	 * @param threads number of search threads
+	 * @param capacity the most searches waiting for a thread
+	 * @param deadline the deadline of a search in milliseconds
+	 * @param admission decides which searches are taken on
+	 */
+	public SearchExecutor(int threads, int capacity, long deadline, AdmissionControl admission) {
+		this.queue = new WorkQueue(Math.max(1, threads), capacity);
+		this.deadline = Math.max(1, deadline);
+		this.capacity = Math.max(0, capacity);
+		this.admission = admission;
+		this.running = new AtomicInteger();
+		this.answered = new LongAdder();
+		this.partial = new LongAdder();
+	}
+
+	/**
+	 * Initializes an executor with the default threads, queue and deadline.
+	 */
+	public SearchExecutor() {
+		this(DEFAULT_THREADS, DEFAULT_QUEUE, DEFAULT_DEADLINE);
+	}
+
+	/**
+	 * Answers a request with a search on the search threads. The request must
+	 * come from a servlet that supports asynchronous requests.
+	 *
+	 * @param request the request
+	 * @param search the search that answers the request
+	 * @throws IOException if the request can not be turned away
+	 */
+	public void submit(HttpServletRequest request, Search search) throws IOException {
+		AsyncContext context = request.startAsync();
+		Answer answer = new Answer(context, search, new Deadline(deadline));
+		// a search still waiting this long after its deadline is answered without it
+		context.setTimeout(2 * deadline + 1000);
+		context.addListener(answer);
+		int queued = queue.queued();
+		if (!admission.admit(queued, running.get() < queue.size() && queued == 0, queue.size())) {
+			answer.reject();
+		}
+		else if (!queue.offer(answer)) {
+			admission.reject();
+			answer.reject();
+		}
+	}
+
+	/**
+	 * @return the number of searches waiting for a thread
+	 */
+	public int queued() {
+		return queue.queued();
+	}
+
+	/**
+	 * @return the deadline of a search in milliseconds
+	 */
+	public long deadline() {
+		return deadline;
+	}
+
+	/**
+	 * @return the number of search threads
+	 */
+	public int threads() {
+		return queue.size();
+	}
+
+	/**
+	 * @return the most searches waiting for a thread
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of searches running
+	 */
+	public int running() {
+		return running.get();
+	}
+
+	/**
+	 * @return the number of answered searches
+	 */
+	public long answered() {
+		return answered.sum();
+	}
+
+	/**
+	 * @return the number of searches answered with partial results
+	 */
+	public long partial() {
+		return partial.sum();
+	}
+
+	/**
+	 * @return the admission control of the searches
+	 */
+	public AdmissionControl admission() {
+		return admission;
+	}
+
+	/**
+	 * Stops the search threads after the searches that are running.
+	 */
+	public void shutdown() {
+		queue.shutdown();
+	}
+
+	@Override
+	public String toString() {
+		return "SearchExecutor with " + queue.size() + " threads, " + running() + " running and " + queued()
+				+ " waiting searches and a deadline of " + deadline + " ms";
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is the search of a request, written by the servlet that received it.
+	 */
+	public interface Search {
+
+		/**
+		 * Searches and writes the response with the results found before the
+		 * deadline, which is expired afterwards if the results are partial.
+		 *
+		 * @param deadline the deadline of the search
+		 * @throws IOException if an IO error occurs
+		 */
+		void answer(Deadline deadline) throws IOException;
+
+		/**
+		 * Writes the response of a search that was turned away because too many
+		 * searches are waiting.
+		 *
+		 * @throws IOException if an IO error occurs
+		 */
+		void reject() throws IOException;
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a class that answers a request exactly once, either from a search
+	 * thread or when the request times out.
+	 */
+	private class Answer implements Runnable, AsyncListener {
+
+		/**
+		 * the asynchronous request
+		 */
+		private final AsyncContext context;
+
+		/**
+		 * the search of the request
+		 */
+		private final Search search;
+
+		/**
+		 * the deadline of the search
+		 */
+		private final Deadline deadline;
+
+		/**
+		 * whether the request is being answered
+		 */
+		private final AtomicBoolean answered;
+
+		/**
+		 * when the search started waiting for a thread
+		 */
+		private final long queued;
+
+		/**
+		 * @param context the asynchronous request
+		 * @param search the search of the request
+		 * @param deadline the deadline of the search
+		 */
+		public Answer(AsyncContext context, Search search, Deadline deadline) {
+			this.context = context;
+			this.search = search;
+			this.deadline = deadline;
+			this.answered = new AtomicBoolean(false);
+			this.queued = System.nanoTime();
+		}
+
+		@Override
+		public void run() {
+			// the request timed out while the search waited
+			if (answered.get()) {
+				return;
+			}
+			// a search that waited too long is turned away without searching
+			if (admission.shed(System.nanoTime() - queued)) {
+				try {
+					reject();
+				} catch (IOException e) {
+					System.out.println("Unable to turn the search away");
+				}
+				return;
+			}
+			answer();
+		}
+
+		/**
+		 * Answers the request with the search.
+		 */
+		private void answer() {
+			if (!answered.compareAndSet(false, true)) {
+				return;
+			}
+			running.incrementAndGet();
+			long start = System.nanoTime();
+			try {
+				search.answer(deadline);
+				admission.served(System.nanoTime() - start);
+				SearchExecutor.this.answered.increment();
+				if (deadline.expired()) {
+					partial.increment();
+				}
+			} catch (IOException e) {
+				System.out.println("Unable to answer the search");
+			} finally {
+				running.decrementAndGet();
+				if (queue.queued() == 0) {
+					admission.emptied();
+				}
+				complete();
+			}
+		}
+
+		/**
+		 * Turns the request away.
+		 *
+		 * @throws IOException if an IO error occurs
+		 */
+		public void reject() throws IOException {
+			if (!answered.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				search.reject();
+			} finally {
+				complete();
+			}
+		}
+
+		/**
+		 * Completes the request, unless the server already completed it because it
+		 * timed out while the search was still writing.
+		 */
+		private void complete() {
+			try {
+				context.complete();
+			} catch (IllegalStateException e) {
+				System.out.println("The search answered after its request timed out");
+			}
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) throws IOException {
+			// an expired deadline answers at once with no results
+			deadline.expire();
+			answer();
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			// nothing to do once the request is answered
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			// the connection is gone, so the search is not needed anymore
+			deadline.expire();
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			// the listener is added after the request is asynchronous
+		}
+	}
+}
@@ -0,0 +1,195 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * @author geoaldana
+ * This is a class that finds pages that are near-duplicates of pages seen
+ * before. Every page gets a 64-bit SimHash fingerprint computed over shingles
+ * (runs of consecutive words) of its stems, and two pages are near-duplicates if
+ * their fingerprints differ in at most a few bits. The fingerprints are split
+ * into blocks and indexed by every block, so if two fingerprints differ in
+ * fewer bits than there are blocks at least one block matches exactly and only
+ * fingerprints sharing a block are compared.
+ */
+public class SimHashDetector {
+
+	/**
+	 * The default max amount of bits two near-duplicate fingerprints differ in.
+	 */
+	public static final int DEFAULT_DISTANCE = 6;
+
+	/**
+	 * number of consecutive words in a shingle
+	 */
+	public static final int SHINGLE = 3;
+
+	/**
+	 * number of blocks the fingerprints are split into for the lookup tables
+	 */
+	private static final int BLOCKS = 8;
+
+	/**
+	 * number of bits in a block
+	 */
+	private static final int BLOCK_BITS = Long.SIZE / BLOCKS;
+
+	/**
+	 * max amount of bits two near-duplicate fingerprints differ in
+	 */
+	private final int distance;
+
+	/**
+	 * lookup tables from the value of a block to the fingerprints with that block
+	 */
+	private final ArrayList<HashMap<Integer, ArrayList<Long>>> tables;
+
+	/**
+	 * number of pages found to be near-duplicates
+	 */
+	private int duplicates;
+
+	/**
+	 * @param distance max amount of bits two near-duplicate fingerprints differ
+	 *        in, between 0 and 7
+	 */
+	public SimHashDetector(int distance) {
+		this.distance = Math.max(0, Math.min(BLOCKS - 1, distance));
+		this.tables = new ArrayList<>(BLOCKS);
+		for (int i = 0; i < BLOCKS; i++) {
+			tables.add(new HashMap<>());
+		}
+		this.duplicates = 0;
+	}
+
+	/**
+	 * Starts a detector with the default distance.
+	 */
+	public SimHashDetector() {
+		this(DEFAULT_DISTANCE);
+	}
+
+	/**
+	 * Checks if the page is a near-duplicate of a page seen before. If it is not,
+	 * its fingerprint is remembered so later pages are checked against it. Pages
+	 * without any words are never near-duplicates.
+	 *
+	 * @param stems the stems of the page in the order they were found
+	 * @return true if the page is a near-duplicate of a page seen before
+	 */
+	public boolean isDuplicate(List<String> stems) {
+		if (stems.isEmpty()) {
+			return false;
+		}
+		long fingerprint = fingerprint(stems);
+
+		synchronized (tables) {
+			for (int i = 0; i < BLOCKS; i++) {
+				ArrayList<Long> candidates = tables.get(i).get(block(fingerprint, i));
+				if (candidates == null) {
+					continue;
+				}
+				for (long candidate : candidates) {
+					if (Long.bitCount(candidate ^ fingerprint) <= distance) {
+						duplicates++;
+						return true;
+					}
+				}
+			}
+			for (int i = 0; i < BLOCKS; i++) {
+				tables.get(i).computeIfAbsent(block(fingerprint, i), key -> new ArrayList<>()).add(fingerprint);
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Number of pages found to be near-duplicates
+	 *
+	 * @return the number of near-duplicates found
+	 */
+	public int duplicates() {
+		synchronized (tables) {
+			return duplicates;
+		}
+	}
+
+	/**
+	 * Computes the 64-bit SimHash fingerprint of the words. Each shingle is hashed
+	 * and votes on every bit of the fingerprint, and the bits with more votes for
+	 * one than for zero are set. Pages with fewer words than a shingle are hashed
+	 * as a single shingle.
+	 *
+	 * @param words the words in the order they were found
+	 * @return the fingerprint of the words
+	 */
+	public static long fingerprint(List<String> words) {
+		long[] hashes = new long[words.size()];
+		for (int i = 0; i < hashes.length; i++) {
+			hashes[i] = hash(words.get(i));
+		}
+
+		int[] votes = new int[Long.SIZE];
+		int shingles = Math.max(1, hashes.length - SHINGLE + 1);
+		for (int i = 0; i < shingles; i++) {
+			long shingle = 0;
+			for (int j = i; j < Math.min(hashes.length, i + SHINGLE); j++) {
+				shingle = shingle * 0x100000001B3L + hashes[j];
+			}
+			shingle = mix(shingle);
+			for (int bit = 0; bit < Long.SIZE; bit++) {
+				votes[bit] += ((shingle >>> bit) & 1) == 1 ? 1 : -1;
+			}
+		}
+
+		long fingerprint = 0;
+		for (int bit = 0; bit < Long.SIZE; bit++) {
+			if (votes[bit] > 0) {
+				fingerprint |= 1L << bit;
+			}
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Returns the 64-bit FNV-1a hash of a word.
+	 *
+	 * @param word the word to hash
+	 * @return the hash of the word
+	 */
+	private static long hash(String word) {
+		long hash = 0xCBF29CE484222325L;
+		for (int i = 0; i < word.length(); i++) {
+			hash ^= word.charAt(i);
+			hash *= 0x100000001B3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Spreads the bits of a hash so every bit of the result depends on every bit
+	 * of the input (the MurmurHash3 finalizer).
+	 *
+	 * @param hash the hash to mix
+	 * @return the mixed hash
+	 */
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * Returns one block of a fingerprint.
+	 *
+	 * @param fingerprint the fingerprint
+	 * @param i the block to return
+	 * @return the value of the block
+	 */
+	private static int block(long fingerprint, int i) {
+		return (int) ((fingerprint >>> (i * BLOCK_BITS)) & ((1L << BLOCK_BITS) - 1));
+	}
+}
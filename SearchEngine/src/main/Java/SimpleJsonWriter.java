@@ -171,6 +171,47 @@ public class SimpleJsonWriter {
 		writer.write('"');
 	}
 
+	/**
+	 * Writes the text element surrounded by {@code " "} quotation marks, escaping
+	 * the quotation marks, backslashes and control characters that can not be
+	 * written inside a JSON string as they are.
+	 *
+	 * @param element the element to write
+	 * @param writer  the writer to use
+	 * @throws IOException if an IO error occurs
+	 */
+	public static void escapeAndQuote(String element, Writer writer) throws IOException {
+		writer.write('"');
+		for (int i = 0; i < element.length(); i++) {
+			char c = element.charAt(i);
+			switch (c) {
+			case '"':
+				writer.write("\\\"");
+				break;
+			case '\\':
+				writer.write("\\\\");
+				break;
+			case '\n':
+				writer.write("\\n");
+				break;
+			case '\r':
+				writer.write("\\r");
+				break;
+			case '\t':
+				writer.write("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					writer.write(String.format("\\u%04x", (int) c));
+				}
+				else {
+					writer.write(c);
+				}
+			}
+		}
+		writer.write('"');
+	}
+
 	/**
 	 * Indents and then writes the text element.
 	 *
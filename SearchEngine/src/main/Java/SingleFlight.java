@@ -0,0 +1,97 @@
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * @author geoaldana
+ * This is a class that coalesces concurrent calls for the same key. The first
+ * caller of a key computes the value, and callers that come while it is being
+ * computed wait for that value instead of computing it again. Once the value is
+ * done the key is forgotten, so later callers compute it again, which keeps
+ * caching a separate concern.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class SingleFlight<K, V> {
+
+	/**
+	 * the values being computed by their keys
+	 */
+	private final HashMap<K, CompletableFuture<V>> flights;
+
+	/**
+	 * number of calls that waited for another call
+	 */
+	private final LongAdder shared;
+
+	/**
+	 * Initializes without calls.
+	 */
+	public SingleFlight() {
+		this.flights = new HashMap<>();
+		this.shared = new LongAdder();
+	}
+
+	/**
+	 * Returns the value of a key, computed by this call or by a call for the same
+	 * key that is already running.
+	 *
+	 * @param key the key of the value
+	 * @param compute computes the value
+	 * @return the value
+	 */
+	public V run(K key, Supplier<V> compute) {
+		CompletableFuture<V> future = new CompletableFuture<>();
+		CompletableFuture<V> flight;
+		synchronized (flights) {
+			flight = flights.putIfAbsent(key, future);
+		}
+		if (flight != null) {
+			shared.increment();
+			try {
+				return flight.join();
+			} catch (CompletionException e) {
+				// the waiters fail the same way the first caller did
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				throw e;
+			}
+		}
+
+		try {
+			V value = compute.get();
+			future.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			synchronized (flights) {
+				flights.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of calls that waited for another call
+	 */
+	public long shared() {
+		return shared.sum();
+	}
+
+	/**
+	 * @return the number of values being computed
+	 */
+	public int size() {
+		synchronized (flights) {
+			return flights.size();
+		}
+	}
+}
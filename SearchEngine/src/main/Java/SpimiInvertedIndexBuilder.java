@@ -0,0 +1,416 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * @author geoaldana
+ * This is a builder that builds a {@link DiskInvertedIndex} with single-pass
+ * in-memory indexing (SPIMI). The words of the files are added to an in-memory
+ * block, and whenever the block reaches the memory budget it is written to a
+ * temporary file as a sorted run and a new block is started, even in the middle
+ * of a file. After every file is read, the runs are merged word by word into the
+ * disk index, so only one block and one word from every run are ever in memory.
+ * When there are more runs than can be open at once, they are first merged in
+ * groups into longer runs.
+ */
+public class SpimiInvertedIndexBuilder extends InvertedIndexBuilder {
+
+	/**
+	 * The default memory budget of a block in megabytes.
+	 */
+	public static final int DEFAULT_BUDGET = 64;
+
+	/**
+	 * Rough number of bytes a position takes in an {@link InvertedIndex}, counting
+	 * the boxed integer, its tree set entry and a share of the maps above it.
+	 */
+	private static final int POSITION_BYTES = 64;
+
+	/**
+	 * The most runs that are merged at once.
+	 */
+	private static final int FAN_IN = 64;
+
+	/**
+	 * the index the runs are merged into
+	 */
+	private final DiskInvertedIndex index;
+
+	/**
+	 * number of bytes read from a file at a time
+	 */
+	private final int readSize;
+
+	/**
+	 * the block the words are added to
+	 */
+	private final Block block;
+
+	/**
+	 * directory of the runs
+	 */
+	private Path directory;
+
+	/**
+	 * the runs that are not merged yet
+	 */
+	private List<Path> runs;
+
+	/**
+	 * number of runs written so far
+	 */
+	private int written;
+
+	/**
+	 * Constructor for SpimiInvertedIndexBuilder
+	 * @param index the index the runs are merged into
+	 * @param budget memory budget of a block in bytes
+	 * @param readSize number of bytes read from a file at a time
+	 */
+	public SpimiInvertedIndexBuilder(DiskInvertedIndex index, long budget, int readSize) {
+		super(readSize);
+		this.index = index;
+		this.readSize = readSize;
+		this.block = new Block(Math.max(1, budget / POSITION_BYTES));
+		this.runs = new ArrayList<>();
+		this.written = 0;
+	}
+
+	/**
+	 * Builds the index from the files and then merges the runs into it. The disk
+	 * index can only be built once.
+	 */
+	@Override
+	public void buildIndex(Path directory) throws IOException {
+		this.directory = Files.createTempDirectory("spimi");
+		try {
+			super.buildIndex(directory);
+			block.flush();
+			merge();
+		} finally {
+			try (DirectoryStream<Path> listing = Files.newDirectoryStream(this.directory)) {
+				for (Path run : listing) {
+					Files.deleteIfExists(run);
+				}
+			}
+			Files.deleteIfExists(this.directory);
+		}
+	}
+
+	/**
+	 * Builds the index from every file. A disk index is only built once, so there
+	 * is never an earlier build to update and the manifest is not used.
+	 */
+	@Override
+	public void buildIndex(Path directory, IndexManifest manifest) throws IOException {
+		buildIndex(directory);
+	}
+
+	@Override
+	public void read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			int count = read(new ChannelLineReader(channel, 0, channel.size(), readSize), path.toString(), block);
+			if (count > 0) {
+				index.count(path.toString(), count);
+			}
+		}
+	}
+
+	/**
+	 * Creates a new run. A run holds its words one at a time in sorted order and
+	 * ends with a negative length.
+	 *
+	 * @return the output of the run
+	 * @throws IOException if an IO error occurs
+	 */
+	private DataOutputStream newRun() throws IOException {
+		Path run = directory.resolve("run" + written++);
+		runs.add(run);
+		return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16));
+	}
+
+	/**
+	 * Writes a block to a new run.
+	 *
+	 * @param words the block
+	 * @throws IOException if an IO error occurs
+	 */
+	private void write(InvertedIndex words) throws IOException {
+		try (DataOutputStream out = newRun()) {
+			for (String word : words.getWords()) {
+				TreeMap<String, int[]> postings = new TreeMap<>();
+				for (String location : words.getLocations(word)) {
+					postings.put(location, words.getPositions(word, location).stream().mapToInt(Integer::intValue).toArray());
+				}
+				DiskInvertedIndex.write(out, word, postings);
+			}
+			out.writeInt(-1);
+		}
+	}
+
+	/**
+	 * Merges the runs into the index. While there are more runs than can be
+	 * merged at once, every group of runs is merged into a new run first.
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	private void merge() throws IOException {
+		while (runs.size() > FAN_IN) {
+			List<Path> previous = runs;
+			runs = new ArrayList<>();
+			for (int i = 0; i < previous.size(); i += FAN_IN) {
+				List<Path> group = previous.subList(i, Math.min(i + FAN_IN, previous.size()));
+				try (DataOutputStream out = newRun()) {
+					merge(group, (word, postings) -> DiskInvertedIndex.write(out, word, postings));
+					out.writeInt(-1);
+				}
+				for (Path run : group) {
+					Files.delete(run);
+				}
+			}
+		}
+		merge(runs, index::write);
+		index.finish();
+	}
+
+	/**
+	 * Merges runs with a k-way merge, always taking the smallest word among the
+	 * runs and combining its positions from every run that has it.
+	 *
+	 * @param group the runs to merge
+	 * @param output where the merged words are written
+	 * @throws IOException if an IO error occurs
+	 */
+	private static void merge(List<Path> group, Output output) throws IOException {
+		PriorityQueue<Run> queue = new PriorityQueue<>();
+		try {
+			for (int i = 0; i < group.size(); i++) {
+				Run run = new Run(group.get(i), i);
+				if (run.next()) {
+					queue.add(run);
+				}
+				else {
+					run.close();
+				}
+			}
+			while (!queue.isEmpty()) {
+				String word = queue.peek().word;
+				TreeMap<String, int[]> postings = new TreeMap<>();
+				while (!queue.isEmpty() && queue.peek().word.equals(word)) {
+					Run run = queue.poll();
+					for (Map.Entry<String, int[]> entry : run.postings.entrySet()) {
+						postings.merge(entry.getKey(), entry.getValue(), SpimiInvertedIndexBuilder::union);
+					}
+					if (run.next()) {
+						queue.add(run);
+					}
+					else {
+						run.close();
+					}
+				}
+				output.write(word, postings);
+			}
+		} finally {
+			for (Run run : queue) {
+				run.close();
+			}
+		}
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is where a merge writes its words.
+	 */
+	private interface Output {
+
+		/**
+		 * Writes the next word and its positions.
+		 *
+		 * @param word the word
+		 * @param postings the positions of the word by location
+		 * @throws IOException if an IO error occurs
+		 */
+		void write(String word, Map<String, int[]> postings) throws IOException;
+	}
+
+	/**
+	 * Combines two sorted arrays of positions without duplicates.
+	 *
+	 * @param first the first positions
+	 * @param second the second positions
+	 * @return the positions of both in sorted order
+	 */
+	private static int[] union(int[] first, int[] second) {
+		int[] positions = new int[first.length + second.length];
+		int i = 0, j = 0, length = 0;
+		while (i < first.length || j < second.length) {
+			int next;
+			if (j == second.length || (i < first.length && first[i] <= second[j])) {
+				next = first[i++];
+			}
+			else {
+				next = second[j++];
+			}
+			if (length == 0 || positions[length - 1] != next) {
+				positions[length++] = next;
+			}
+		}
+		return Arrays.copyOf(positions, length);
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is the in-memory block. The words are added to an inverted index that
+	 * is written to a run and replaced once it holds as many positions as the
+	 * budget allows.
+	 */
+	private class Block extends InvertedIndex {
+
+		/**
+		 * the number of positions that fit in the budget
+		 */
+		private final long limit;
+
+		/**
+		 * the words of the block
+		 */
+		private InvertedIndex words;
+
+		/**
+		 * number of positions added to the words
+		 */
+		private long positions;
+
+		/**
+		 * @param limit the number of positions that fit in the budget
+		 */
+		public Block(long limit) {
+			this.limit = limit;
+			this.words = new InvertedIndex();
+			this.positions = 0;
+		}
+
+		@Override
+		public void add(String word, String path, int position) {
+			words.add(word, path, position);
+			if (++positions >= limit) {
+				try {
+					flush();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+
+		@Override
+		public void addForm(String word, CharSequence form) {
+			// the index on disk does not suggest words
+		}
+
+		@Override
+		public void addForms(WordForms words) {
+			// the index on disk does not suggest words
+		}
+
+		/**
+		 * Writes the words to a run if there are any and starts a new block.
+		 *
+		 * @throws IOException if an IO error occurs
+		 */
+		public void flush() throws IOException {
+			if (positions > 0) {
+				write(words);
+				words = new InvertedIndex();
+				positions = 0;
+			}
+		}
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a reader of a run that holds its current word and positions.
+	 */
+	private static class Run implements Comparable<Run> {
+
+		/**
+		 * the input of the run
+		 */
+		private final DataInputStream in;
+
+		/**
+		 * the order the run was written in
+		 */
+		private final int number;
+
+		/**
+		 * the current word
+		 */
+		private String word;
+
+		/**
+		 * the positions of the current word by location
+		 */
+		private TreeMap<String, int[]> postings;
+
+		/**
+		 * @param path the run
+		 * @param number the order the run was written in
+		 * @throws IOException if an IO error occurs
+		 */
+		public Run(Path path, int number) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+			this.number = number;
+		}
+
+		/**
+		 * Reads the next word of the run.
+		 *
+		 * @return whether there was another word
+		 * @throws IOException if an IO error occurs
+		 */
+		public boolean next() throws IOException {
+			int length = in.readInt();
+			if (length < 0) {
+				return false;
+			}
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			word = new String(bytes, StandardCharsets.UTF_8);
+			postings = DiskInvertedIndex.readPostings(in);
+			return true;
+		}
+
+		/**
+		 * Closes the run.
+		 *
+		 * @throws IOException if an IO error occurs
+		 */
+		public void close() throws IOException {
+			in.close();
+		}
+
+		@Override
+		public int compareTo(Run o) {
+			int comparing = word.compareTo(o.word);
+			if (comparing == 0) {
+				comparing = Integer.compare(number, o.number);
+			}
+			return comparing;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * @author geoaldana
+ * This class suggests completions of the last word being typed as JSON, for
+ * example {@code GET /suggest?prefix=apple+pi}. The word is cleaned like the
+ * text of the index, and the completions are the words read into the index that
+ * start with it, as they were before they were stemmed and at most one for
+ * every stem, ranked by the number of locations of the stem. It is cheap enough
+ * to be called on every keystroke.
+ */
+public class SuggestServlet extends HttpServlet {
+
+	/**
+	 * default serial Version
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * index that will be used to suggest
+	 */
+	private final ThreadSafeInvertedIndex index;
+
+	/**
+	 * @param index that will be used to suggest
+	 */
+	public SuggestServlet(ThreadSafeInvertedIndex index) {
+		super();
+		this.index = index;
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+
+		String prefix = request.getParameter("prefix");
+		String[] words = TextParser.parse(prefix == null ? "" : prefix);
+		// a prefix ending in a space has no word being typed
+		boolean typing = words.length > 0 && !Character.isWhitespace(prefix.charAt(prefix.length() - 1));
+		String word = typing ? words[words.length - 1] : "";
+		List<String> suggestions = word.isEmpty() ? List.of() : index.suggest(word, SuggestionTrie.DEFAULT_SIZE);
+
+		response.setStatus(HttpServletResponse.SC_OK);
+		PrintWriter out = response.getWriter();
+		out.write("{\"prefix\":");
+		SimpleJsonWriter.escapeAndQuote(word, out);
+		out.write(",\"suggestions\":[");
+		for (int i = 0; i < suggestions.size(); i++) {
+			if (i > 0) {
+				out.write(',');
+			}
+			SimpleJsonWriter.escapeAndQuote(suggestions.get(i), out);
+		}
+		out.write("]}");
+		out.flush();
+	}
+}
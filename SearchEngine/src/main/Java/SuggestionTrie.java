@@ -0,0 +1,320 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author geoaldana
+ * This is a trie over the words of an index for suggesting completions of a
+ * prefix. The words are the ones that were read, not their stems, and every
+ * node keeps the best completions of its prefix with at most one word for
+ * every stem, the shortest, so "happ" suggests "happy" and not also "happier"
+ * and "happiness", while "happin" still suggests "happiness". They are ranked
+ * by the number of locations of the stem and then alphabetically, so a lookup
+ * walks the prefix and copies a short list without scanning any words. A word
+ * is offered to every node on its path when it is added or its number of
+ * locations grows, which keeps the lists exact while words are only added, like
+ * during a crawl. When a word loses locations, the nodes on its path choose
+ * their completions again from the lists of their children, deepest first.
+ */
+public class SuggestionTrie {
+
+	/**
+	 * The default number of completions kept for every prefix.
+	 */
+	public static final int DEFAULT_SIZE = 10;
+
+	/**
+	 * number of completions kept for every prefix
+	 */
+	private final int size;
+
+	/**
+	 * lock that protects the nodes
+	 */
+	private final SimpleReadWriteLock lock;
+
+	/**
+	 * the node of the empty prefix
+	 */
+	private final Node root;
+
+	/**
+	 * @param size number of completions kept for every prefix
+	 */
+	public SuggestionTrie(int size) {
+		this.size = Math.max(1, size);
+		this.lock = new SimpleReadWriteLock();
+		this.root = new Node();
+	}
+
+	/**
+	 * Adds a word or updates the number of locations of a word. A word without
+	 * any locations is taken out.
+	 *
+	 * @param word the word
+	 * @param stem the stem of the word
+	 * @param frequency the number of locations of the stem, or 0 to take it out
+	 */
+	public void update(String word, String stem, int frequency) {
+		lock.writeLock().lock();
+		try {
+			Node[] path = new Node[word.length() + 1];
+			path[0] = root;
+			for (int i = 0; i < word.length(); i++) {
+				path[i + 1] = path[i].child(word.charAt(i), frequency > 0);
+				if (path[i + 1] == null) {
+					// a word that was never added has nothing to take out
+					return;
+				}
+			}
+			Node end = path[word.length()];
+			int old = end.word == null ? 0 : end.frequency;
+			end.word = frequency > 0 ? word : null;
+			end.stem = frequency > 0 ? stem : null;
+			end.frequency = Math.max(0, frequency);
+			if (frequency >= old) {
+				if (frequency > 0) {
+					for (Node node : path) {
+						node.offer(word, stem, frequency, size);
+					}
+				}
+				return;
+			}
+			// the word may have made room for words of other branches
+			for (int i = path.length - 1; i >= 0; i--) {
+				path[i].rebuild(size);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the best completions of a prefix.
+	 *
+	 * @param prefix the prefix
+	 * @param limit the most completions returned
+	 * @return the completions, best first
+	 */
+	public List<String> suggest(String prefix, int limit) {
+		lock.readLock().lock();
+		try {
+			Node node = root;
+			for (int i = 0; i < prefix.length() && node != null; i++) {
+				node = node.child(prefix.charAt(i), false);
+			}
+			if (node == null) {
+				return List.of();
+			}
+			int count = Math.min(Math.max(0, limit), node.length);
+			return List.of(Arrays.copyOf(node.words, count));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of completions kept for every prefix
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @author geoaldana
+	 * This is a node of the trie. The children are kept in arrays sorted by their
+	 * letter and the completions in arrays that grow up to the size of the trie,
+	 * because most nodes are deep and only have a single completion.
+	 */
+	private static class Node {
+
+		/**
+		 * letters of the children, sorted
+		 */
+		private char[] letters;
+
+		/**
+		 * the children in the order of their letters
+		 */
+		private Node[] children;
+
+		/**
+		 * number of children
+		 */
+		private int count;
+
+		/**
+		 * the best completions, best first
+		 */
+		private String[] words;
+
+		/**
+		 * the stem of every completion
+		 */
+		private String[] stems;
+
+		/**
+		 * the number of locations of every completion
+		 */
+		private int[] frequencies;
+
+		/**
+		 * number of completions
+		 */
+		private int length;
+
+		/**
+		 * the word that ends at the node, or {@code null} if there is none
+		 */
+		private String word;
+
+		/**
+		 * the stem of the word that ends at the node
+		 */
+		private String stem;
+
+		/**
+		 * the number of locations of the word that ends at the node
+		 */
+		private int frequency;
+
+		/**
+		 * Initializes a node without children or completions.
+		 */
+		public Node() {
+			this.letters = new char[0];
+			this.children = new Node[0];
+			this.words = new String[0];
+			this.stems = new String[0];
+			this.frequencies = new int[0];
+		}
+
+		/**
+		 * Returns the child of a letter.
+		 *
+		 * @param letter the letter of the child
+		 * @param create whether to add the child if it is missing
+		 * @return the child or {@code null} if missing and not created
+		 */
+		public Node child(char letter, boolean create) {
+			int i = Arrays.binarySearch(letters, 0, count, letter);
+			if (i >= 0) {
+				return children[i];
+			}
+			if (!create) {
+				return null;
+			}
+			i = -i - 1;
+			if (count == letters.length) {
+				letters = Arrays.copyOf(letters, Math.max(2, count * 2));
+				children = Arrays.copyOf(children, letters.length);
+			}
+			System.arraycopy(letters, i, letters, i + 1, count - i);
+			System.arraycopy(children, i, children, i + 1, count - i);
+			letters[i] = letter;
+			children[i] = new Node();
+			count++;
+			return children[i];
+		}
+
+		/**
+		 * Offers a completion, which is kept if it is among the best. A completion
+		 * with the same stem as one that is kept replaces it if it is shorter.
+		 *
+		 * @param word the completion
+		 * @param stem the stem of the completion
+		 * @param frequency the number of locations of the stem
+		 * @param size the most completions kept
+		 */
+		public void offer(String word, String stem, int frequency, int size) {
+			int i = 0;
+			while (i < length && !stems[i].equals(stem)) {
+				i++;
+			}
+			if (i == length) {
+				if (length < size) {
+					if (length == words.length) {
+						words = Arrays.copyOf(words, Math.min(size, Math.max(1, length * 2)));
+						stems = Arrays.copyOf(stems, words.length);
+						frequencies = Arrays.copyOf(frequencies, words.length);
+					}
+					length++;
+				}
+				else if (!better(word, frequency, words[length - 1], frequencies[length - 1])) {
+					return;
+				}
+				i = length - 1;
+			}
+			else if (word.length() > words[i].length()
+					|| (word.length() == words[i].length() && word.compareTo(words[i]) > 0)) {
+				word = words[i];
+			}
+			words[i] = word;
+			stems[i] = stem;
+			frequencies[i] = frequency;
+			// moves the completion up or down to its place
+			while (i > 0 && better(words[i], frequencies[i], words[i - 1], frequencies[i - 1])) {
+				swap(i, i - 1);
+				i--;
+			}
+			while (i < length - 1 && better(words[i + 1], frequencies[i + 1], words[i], frequencies[i])) {
+				swap(i, i + 1);
+				i++;
+			}
+		}
+
+		/**
+		 * Chooses the completions again from the word that ends at the node and the
+		 * completions of the children, which are the best of their branches.
+		 *
+		 * @param size the most completions kept
+		 */
+		public void rebuild(int size) {
+			Arrays.fill(words, 0, length, null);
+			Arrays.fill(stems, 0, length, null);
+			length = 0;
+			if (word != null) {
+				offer(word, stem, frequency, size);
+			}
+			for (int i = 0; i < count; i++) {
+				Node child = children[i];
+				for (int j = 0; j < child.length; j++) {
+					offer(child.words[j], child.stems[j], child.frequencies[j], size);
+				}
+			}
+		}
+
+		/**
+		 * Swaps two completions.
+		 *
+		 * @param i the first completion
+		 * @param j the second completion
+		 */
+		private void swap(int i, int j) {
+			String word = words[i];
+			words[i] = words[j];
+			words[j] = word;
+			String stem = stems[i];
+			stems[i] = stems[j];
+			stems[j] = stem;
+			int frequency = frequencies[i];
+			frequencies[i] = frequencies[j];
+			frequencies[j] = frequency;
+		}
+
+		/**
+		 * Compares two completions.
+		 *
+		 * @param word the first completion
+		 * @param frequency the number of locations of the first completion
+		 * @param other the second completion
+		 * @param otherFrequency the number of locations of the second completion
+		 * @return whether the first completion is ranked above the second
+		 */
+		private static boolean better(String word, int frequency, String other, int otherFrequency) {
+			if (frequency != otherFrequency) {
+				return frequency > otherFrequency;
+			}
+			return word.compareTo(other) < 0;
+		}
+	}
+}
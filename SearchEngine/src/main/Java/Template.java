@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/**
+ * @author geoaldana
+ * This is an html template that is parsed once into the text between its
+ * variables, like {@code ${title}}, and the slots of those variables. The text
+ * is kept already encoded as UTF-8, so rendering a page only writes bytes and
+ * the values of the slots to the output. A variable without a value is written
+ * back unchanged, like the substitutor the servlets used before.
+ */
+public class Template {
+
+	/**
+	 * the encoded text before every slot and after the last slot
+	 */
+	private final byte[][] texts;
+
+	/**
+	 * the variable of every slot, as an index into the names
+	 */
+	private final int[] slots;
+
+	/**
+	 * the names of the variables, without repeats
+	 */
+	private final String[] names;
+
+	/**
+	 * @param template the text of the template
+	 */
+	public Template(String template) {
+		ArrayList<byte[]> texts = new ArrayList<>();
+		ArrayList<Integer> slots = new ArrayList<>();
+		ArrayList<String> names = new ArrayList<>();
+		int from = 0;
+		int start = template.indexOf("${");
+		while (start >= 0) {
+			int end = template.indexOf('}', start + 2);
+			if (end < 0) {
+				break;
+			}
+			String name = template.substring(start + 2, end);
+			if (!names.contains(name)) {
+				names.add(name);
+			}
+			texts.add(template.substring(from, start).getBytes(StandardCharsets.UTF_8));
+			slots.add(names.indexOf(name));
+			from = end + 1;
+			start = template.indexOf("${", from);
+		}
+		texts.add(template.substring(from).getBytes(StandardCharsets.UTF_8));
+
+		this.texts = texts.toArray(new byte[0][]);
+		this.slots = new int[slots.size()];
+		for (int i = 0; i < this.slots.length; i++) {
+			this.slots[i] = slots.get(i);
+		}
+		this.names = names.toArray(new String[0]);
+	}
+
+	/**
+	 * Reads and parses a template.
+	 *
+	 * @param path the path of the template
+	 * @return the template
+	 * @throws IOException if an IO error occurs
+	 */
+	public static Template load(Path path) throws IOException {
+		return new Template(Files.readString(path, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Returns the slot of a variable, which is where its value goes in the array
+	 * of values given to {@link #render(OutputStream, String[])}.
+	 *
+	 * @param name the name of the variable
+	 * @return the slot, or -1 if the template does not have the variable
+	 */
+	public int slot(String name) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the number of slots, the length of the array of values
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * Writes the template with the values of its variables.
+	 *
+	 * @param out the output
+	 * @param values the values by slot, where {@code null} keeps the variable
+	 * @throws IOException if an IO error occurs
+	 */
+	public void render(OutputStream out, String[] values) throws IOException {
+		for (int i = 0; i < slots.length; i++) {
+			out.write(texts[i]);
+			String value = slots[i] < values.length ? values[slots[i]] : null;
+			out.write((value != null ? value : "${" + names[slots[i]] + "}").getBytes(StandardCharsets.UTF_8));
+		}
+		out.write(texts[slots.length]);
+	}
+
+	@Override
+	public String toString() {
+		return "Template with " + slots.length + " slots of " + names.length + " variables";
+	}
+}
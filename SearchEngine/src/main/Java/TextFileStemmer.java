@@ -49,9 +49,24 @@ public class TextFileStemmer {
 	 * @param stems the stems
 	 */
 	public static void stemLine(String line, Stemmer stemmer, Collection<String> stems) {
-		String list[] = TextParser.parse(line);
-		for(int i = 0 ; i < list.length; i++) {
-			stems.add(stemmer.stem(list[i]).toString());
+		stemLine(line, stemmer, new TextTokenizer(), stems);
+	}
+
+	/**
+	 * Cleans, splits, and stems the line with a tokenizer that can be reused
+	 * for every line of a file.
+	 *
+	 * @param line the line of words to clean, split, and stem
+	 * @param stemmer the stemmer to use
+	 * @param tokenizer the tokenizer to use
+	 * @param stems the stems
+	 *
+	 * @see TextTokenizer
+	 */
+	public static void stemLine(String line, Stemmer stemmer, TextTokenizer tokenizer, Collection<String> stems) {
+		tokenizer.reset(line);
+		while (tokenizer.next()) {
+			stems.add(stemmer.stem(tokenizer.token()).toString());
 		}
 	}
 
@@ -68,7 +83,7 @@ public class TextFileStemmer {
 	 * @see #listStems(String, Stemmer)
 	 */
 	public static ArrayList<String> listStems(String line) {
-		return listStems(line, new SnowballStemmer(DEFAULT));
+		return listStems(line, CachedStemmer.get());
 	}
 
 	/**
@@ -86,9 +101,10 @@ public class TextFileStemmer {
 		ArrayList<String> list = new ArrayList<String>();
 		try(BufferedReader read = Files.newBufferedReader(inputFile);){
 			String line = null;
-			Stemmer stemmer = new SnowballStemmer(DEFAULT);
+			Stemmer stemmer = CachedStemmer.get();
+			TextTokenizer tokenizer = new TextTokenizer();
 			while((line = read.readLine()) != null) {
-				stemLine(line, stemmer, list);
+				stemLine(line, stemmer, tokenizer, list);
 			}
 		}
 		return list;
@@ -106,7 +122,7 @@ public class TextFileStemmer {
 	 * @see #uniqueStems(String, Stemmer)
 	 */
 	public static TreeSet<String> uniqueStems(String line) {
-		return uniqueStems(line, new SnowballStemmer(DEFAULT));
+		return uniqueStems(line, CachedStemmer.get());
 	}
 
 	/**
@@ -142,9 +158,10 @@ public class TextFileStemmer {
 		TreeSet<String> set = new TreeSet<String>();
 		try(BufferedReader read = Files.newBufferedReader(inputFile);){
 			String line = null;
-			Stemmer stemmer = new SnowballStemmer(DEFAULT);
+			Stemmer stemmer = CachedStemmer.get();
+			TextTokenizer tokenizer = new TextTokenizer();
 			while((line = read.readLine()) != null) {
-				stemLine(line, stemmer, set);
+				stemLine(line, stemmer, tokenizer, set);
 			}
 		}
 		return set;
@@ -0,0 +1,221 @@
+import java.util.Locale;
+
+/**
+ * Splits text into clean words the same way {@link TextParser#parse(String)}
+ * does, without creating intermediate strings or arrays. Words are read one at
+ * a time into a buffer that is reused for every word:
+ *
+ * <pre>
+ * tokenizer.reset(line);
+ * while (tokenizer.next()) {
+ *     CharSequence word = tokenizer.token();
+ * }
+ * </pre>
+ *
+ * Runs of ASCII text are cleaned and lowercased character by character. Only
+ * runs with other characters are normalized and cleaned with
+ * {@link TextParser#clean(String)}, and text where lowercasing depends on the
+ * surrounding words falls back to {@link TextParser#parse(String)}. A tokenizer
+ * is not thread-safe, so every thread needs its own.
+ *
+ * @author geoaldana
+ *
+ * @see TextParser
+ */
+public class TextTokenizer {
+
+	/**
+	 * The text being split into words
+	 */
+	private CharSequence text;
+
+	/**
+	 * Position in the text of the next character to read
+	 */
+	private int position;
+
+	/**
+	 * Buffer that holds the current word
+	 */
+	private final StringBuilder token;
+
+	/**
+	 * Whether the current word is the empty word {@link TextParser#parse(String)}
+	 * returns before the first word when the cleaned text starts with whitespace
+	 * that {@link String#strip()} does not remove, like a non-breaking space
+	 */
+	private boolean blank;
+
+	/**
+	 * Whether the text may start with that empty word
+	 */
+	private boolean leading;
+
+	/**
+	 * Whether letters can not be lowercased one by one in the default locale
+	 * (like the dotless i in Turkish)
+	 */
+	private final boolean special;
+
+	/**
+	 * Words from {@link TextParser#parse(String)} used instead of the buffer for
+	 * text that can not be split word by word, or {@code null}
+	 */
+	private String[] words;
+
+	/**
+	 * Number of words returned so far
+	 */
+	private int count;
+
+	/**
+	 * Initializes a tokenizer with no text.
+	 */
+	public TextTokenizer() {
+		this.token = new StringBuilder();
+		String language = Locale.getDefault().getLanguage();
+		this.special = language.equals("tr") || language.equals("az") || language.equals("lt");
+		reset("");
+	}
+
+	/**
+	 * Starts splitting new text into words.
+	 *
+	 * @param text the text to split
+	 */
+	public void reset(CharSequence text) {
+		this.text = text;
+		this.position = 0;
+		this.blank = false;
+		this.count = 0;
+		this.words = special ? TextParser.parse(text.toString()) : null;
+		this.leading = words == null && startsWithBlank();
+		this.token.setLength(0);
+	}
+
+	/**
+	 * Reads the next word of the text.
+	 *
+	 * @return true if there was another word, false if the end of the text was
+	 *         reached
+	 */
+	public boolean next() {
+		if (words != null) {
+			if (count < words.length) {
+				count++;
+				return true;
+			}
+			return false;
+		}
+
+		if (blank) {
+			// the word found before the empty word was returned
+			blank = false;
+			count++;
+			return true;
+		}
+
+		while (position < text.length()) {
+			char c = text.charAt(position);
+			if (isSpace(c)) {
+				position++;
+				continue;
+			}
+
+			int start = position;
+			boolean ascii = true;
+			token.setLength(0);
+			while (position < text.length() && !isSpace(c = text.charAt(position))) {
+				if (c == '\u03A3') {
+					// lowercasing sigma depends on the words around it, so the rest of
+					// the text is split the same way TextParser does
+					words = TextParser.parse(text.toString());
+					return next();
+				}
+				if (c >= 0x80) {
+					ascii = false;
+				}
+				else if (ascii) {
+					if (c >= 'a' && c <= 'z') {
+						token.append(c);
+					}
+					else if (c >= 'A' && c <= 'Z') {
+						token.append((char) (c + ('a' - 'A')));
+					}
+				}
+				position++;
+			}
+
+			if (!ascii) {
+				token.setLength(0);
+				token.append(TextParser.clean(text.subSequence(start, position).toString()));
+			}
+
+			if (token.length() > 0) {
+				if (leading) {
+					leading = false;
+					blank = true;
+				}
+				count++;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the current word. The buffer is reused, so the word must be copied
+	 * (for example with {@link Object#toString()}) if it is needed after the next
+	 * call to {@link #next()}.
+	 *
+	 * @return the current word
+	 */
+	public CharSequence token() {
+		if (words != null) {
+			return words[count - 1];
+		}
+		return blank ? "" : token;
+	}
+
+	/**
+	 * Checks if the cleaned text starts with whitespace that {@link String#strip()}
+	 * does not remove, skipping over characters that cleaning removes.
+	 *
+	 * @return true if the text starts with such whitespace
+	 */
+	private boolean startsWithBlank() {
+		int i = 0;
+		while (i < text.length()) {
+			int c = Character.codePointAt(text, i);
+			if (isSpace(c)) {
+				if (!Character.isWhitespace(c)) {
+					return true;
+				}
+			}
+			else if (c < 0x80) {
+				if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+					return false;
+				}
+			}
+			else if (!TextParser.clean(new String(Character.toChars(c))).isEmpty()) {
+				return false;
+			}
+			i += Character.charCount(c);
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if the character is whitespace as matched by
+	 * {@link TextParser#SPLIT_REGEX}, which is the Unicode White_Space property.
+	 *
+	 * @param c the character
+	 * @return true if the character is whitespace
+	 */
+	private static boolean isSpace(int c) {
+		if (c < 0x80) {
+			return c == ' ' || (c >= '\t' && c <= '\r');
+		}
+		return c == '\u0085' || Character.isSpaceChar(c);
+	}
+}
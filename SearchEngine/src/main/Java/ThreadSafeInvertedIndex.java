@@ -3,6 +3,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * @author geoaldana
@@ -42,6 +43,66 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 
+	@Override
+	public void addForm(String word, CharSequence form) {
+		lock.writeLock().lock();
+		try {
+			super.addForm(word, form);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void addForms(WordForms words) {
+		lock.writeLock().lock();
+		try {
+			super.addForms(words);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void delete(String location) {
+		lock.writeLock().lock();
+		try {
+			super.delete(location);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void purge() {
+		lock.writeLock().lock();
+		try {
+			super.purge();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public long generation() {
+		lock.readLock().lock();
+		try {
+			return super.generation();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void writeSnapshot(Path path) throws IOException {
+		lock.readLock().lock();
+		try {
+			super.writeSnapshot(path);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
 	@Override
 	public void writeFile(Path path) throws IOException {
 		lock.readLock().lock();
@@ -175,20 +236,80 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	}
 
 	@Override
-	public ArrayList<SearchResult> exactSearch(Collection<String> queries) {
+	public ArrayList<SearchResult> exactSearch(Collection<String> queries, Deadline deadline) {
+		lock.readLock().lock();
+		try {
+			return super.exactSearch(queries, deadline);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public ArrayList<SearchResult> fuzzySearch(Collection<String> queries, Deadline deadline) {
+		lock.readLock().lock();
+		try {
+			return super.fuzzySearch(queries, deadline);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public TreeSet<String> matches(Collection<String> queries, String mode, Deadline deadline) {
+		lock.readLock().lock();
+		try {
+			return super.matches(queries, mode, deadline);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public TreeSet<Integer> positions(Collection<String> words, String location, Deadline deadline) {
+		lock.readLock().lock();
+		try {
+			return super.positions(words, location, deadline);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void refresh(Collection<String> words) {
+		lock.readLock().lock();
+		try {
+			super.refresh(words);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void publish() {
+		lock.readLock().lock();
+		try {
+			super.publish();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void publishChanges() {
 		lock.readLock().lock();
 		try {
-			return super.exactSearch(queries);
+			super.publishChanges();
 		} finally {
 			lock.readLock().unlock();
 		}
 	}
 
 	@Override
-	public ArrayList<SearchResult> partialSearch(Collection<String> queries) {
+	public ArrayList<SearchResult> partialSearch(Collection<String> queries, Deadline deadline) {
 		lock.readLock().lock();
 		try {
-			return super.partialSearch(queries);
+			return super.partialSearch(queries, deadline);
 		} finally {
 			lock.readLock().unlock();
 		}
@@ -203,4 +324,14 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 			lock.writeLock().unlock();
 		}
 	}
+
+	@Override
+	public void merge(InvertedIndex local, int offset) {
+		lock.writeLock().lock();
+		try {
+			super.merge(local, offset);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
 }
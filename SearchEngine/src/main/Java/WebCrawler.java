@@ -3,9 +3,10 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * @author geoaldana
@@ -14,9 +15,9 @@ import opennlp.tools.stemmer.snowball.SnowballStemmer;
 public class WebCrawler {
 
 	/**
-	 * Work Queue that will be used
+	 * Host scheduler that hands tasks to the work queue per host
 	 */
-	private final WorkQueue queue;
+	private final HostScheduler queue;
 
 	/**
 	 * InvertedIndex that will be used
@@ -33,15 +34,76 @@ public class WebCrawler {
 	 */
 	private final int max;
 
+	/**
+	 * cache of previously crawled pages or {@code null} if not used
+	 */
+	private final CrawlCache cache;
+
+	/**
+	 * near-duplicate detector or {@code null} if not used
+	 */
+	private final SimHashDetector detector;
+
+	/**
+	 * store the words of the pages are kept in, or {@code null} if not kept
+	 */
+	private final DocumentStore documents;
+
 	/**
 	 * @param queue that will be used
 	 * @param index that will be accessed
 	 * @param max amount of URLs
 	 */
 	public WebCrawler (WorkQueue queue, InvertedIndex index, int max) {
+		this(new HostScheduler(queue), index, max);
+	}
+
+	/**
+	 * @param queue host scheduler that will be used
+	 * @param index that will be accessed
+	 * @param max amount of URLs
+	 */
+	public WebCrawler (HostScheduler queue, InvertedIndex index, int max) {
+		this(queue, index, max, null);
+	}
+
+	/**
+	 * @param queue host scheduler that will be used
+	 * @param index that will be accessed
+	 * @param max amount of URLs
+	 * @param cache of previously crawled pages or {@code null} to always refetch
+	 */
+	public WebCrawler (HostScheduler queue, InvertedIndex index, int max, CrawlCache cache) {
+		this(queue, index, max, cache, null);
+	}
+
+	/**
+	 * @param queue host scheduler that will be used
+	 * @param index that will be accessed
+	 * @param max amount of URLs
+	 * @param cache of previously crawled pages or {@code null} to always refetch
+	 * @param detector used to skip near-duplicate pages or {@code null} to index every page
+	 */
+	public WebCrawler (HostScheduler queue, InvertedIndex index, int max, CrawlCache cache, SimHashDetector detector) {
+		this(queue, index, max, cache, detector, null);
+	}
+
+	/**
+	 * @param queue host scheduler that will be used
+	 * @param index that will be accessed
+	 * @param max amount of URLs
+	 * @param cache of previously crawled pages or {@code null} to always refetch
+	 * @param detector used to skip near-duplicate pages or {@code null} to index every page
+	 * @param documents store the words of the pages are kept in or {@code null}
+	 */
+	public WebCrawler (HostScheduler queue, InvertedIndex index, int max, CrawlCache cache, SimHashDetector detector,
+			DocumentStore documents) {
+		this.documents = documents;
 		this.queue = queue;
 		this.index = index;
 		this.max = max;
+		this.cache = cache;
+		this.detector = detector;
 		WebLinks = new HashSet<URL>();
 	}
 
@@ -53,7 +115,7 @@ public class WebCrawler {
 		try {
 			url = LinkParser.normalize(new URL(seed));
 			WebLinks.add(url);
-			queue.execute(new Task(url));
+			queue.execute(url, new Task(url));
 			queue.finish();
 		} catch (MalformedURLException e) {
 			System.out.println("There was an error that prevented the building of the index.");
@@ -82,28 +144,126 @@ public class WebCrawler {
 
 		@Override
 		public void run() {
-			String html = HtmlFetcher.fetch(url, 3);
-			String cleaned = HtmlCleaner.stripBlockElements(html);
-			html = HtmlCleaner.stripHtml(html);
+			CrawlCache.Page page = cache == null ? parse(HtmlFetcher.fetch(url, 3), "", "", "") : fetch();
+			if (page == null) {
+				return;
+			}
+			// links of near-duplicate pages are still followed, only the words are skipped
+			boolean duplicate = detector != null && detector.isDuplicate(page.getStems());
+			// the text is stored before the words are added, so every result found has a
+			// snippet, except pages reused from a cache written without their words
+			List<String> words = page.getWords();
+			if (documents != null && !duplicate && words != null) {
+				documents.put(url.toString(), words);
+			}
+			WordForms forms = null;
+			if (words != null && !duplicate && index.recordsForms()) {
+				forms = new WordForms();
+				for (int i = 0; i < words.size(); i++) {
+					forms.add(page.getStems().get(i), words.get(i));
+				}
+			}
 			synchronized(WebLinks) {
-				ArrayList<URL> URLs = LinkParser.getValidLinks(url, cleaned);
-				for (URL URL : URLs) {
+				for (String link : page.getLinks()) {
 					if (WebLinks.size() >= max) {
 						break;
 					}
-					else if (!WebLinks.contains(URL)) {
+					URL URL;
+					try {
+						URL = new URL(link);
+					} catch (MalformedURLException e) {
+						continue;
+					}
+					if (!WebLinks.contains(URL)) {
 						WebLinks.add(URL);
-						queue.execute(new Task(URL));
+						queue.execute(URL, new Task(URL));
 					}
 				}
-				Stemmer stemmer = new SnowballStemmer(TextFileStemmer.DEFAULT);
+				if (duplicate) {
+					return;
+				}
 				int i = 1;
-				String[] wordsHTML = TextParser.parse(html);
-				for (String word: wordsHTML) {
-					String stemmedWord = stemmer.stem(word).toString();
+				for (String stemmedWord : page.getStems()) {
 					index.add(stemmedWord, url.toString(), i++);
 				}
 			}
+			if (forms != null) {
+				index.addForms(forms);
+			}
+			// suggestions follow the crawl instead of waiting for it to be published,
+			// without holding up the tasks that add links
+			index.refresh(new HashSet<>(page.getStems()));
+		}
+
+		/**
+		 * Fetches the page with a conditional request and reuses the cached links,
+		 * words and stems if the server answers "304 Not Modified" or the content hash
+		 * did not change. Otherwise the page is parsed again and the cache is updated.
+		 *
+		 * @return the links and stems of the page or {@code null} if unable to fetch
+		 *         the page or the page is not html
+		 */
+		private CrawlCache.Page fetch() {
+			String key = url.toString();
+			CrawlCache.Page cached = cache.get(key);
+			Map<String, List<String>> response = HtmlFetcher.fetch(url, 3, cache.conditionalHeaders(key));
+			if (response == null) {
+				return null;
+			}
+
+			int status = HtmlFetcher.getStatusCode(response);
+			String etag = CrawlCache.header(response, "ETag");
+			String modified = CrawlCache.header(response, "Last-Modified");
+			CrawlCache.Page page;
+			if (status == 304 && cached != null) {
+				page = cached.revalidate(etag, modified);
+			}
+			else if (status == 200 && HtmlFetcher.isHtml(response)) {
+				String html = String.join("\n", response.get("Content"));
+				String hash = CrawlCache.hash(html);
+				if (cached != null && cached.getHash().equals(hash)) {
+					page = cached.revalidate(etag, modified);
+				}
+				else {
+					page = parse(html, etag, modified, hash);
+				}
+			}
+			else {
+				return null;
+			}
+			cache.put(key, page);
+			return page;
+		}
+
+		/**
+		 * Cleans the html and finds the links and stems of the page.
+		 *
+		 * @param html the html of the page
+		 * @param etag ETag validator of the response or an empty string
+		 * @param modified Last-Modified validator of the response or an empty string
+		 * @param hash hash of the html
+		 * @return the links and stems of the page or {@code null} if there is no html
+		 */
+		private CrawlCache.Page parse(String html, String etag, String modified, String hash) {
+			if (html == null) {
+				return null;
+			}
+			ArrayList<URL> found = new ArrayList<>();
+			String text = HtmlCleaner.stripHtml(html, url, found);
+			ArrayList<String> links = new ArrayList<>();
+			for (URL link : found) {
+				links.add(link.toString());
+			}
+			Stemmer stemmer = CachedStemmer.get();
+			ArrayList<String> stems = new ArrayList<>();
+			ArrayList<String> words = new ArrayList<>();
+			TextTokenizer tokenizer = new TextTokenizer();
+			tokenizer.reset(text);
+			while (tokenizer.next()) {
+				words.add(tokenizer.token().toString());
+				stems.add(stemmer.stem(tokenizer.token()).toString());
+			}
+			return new CrawlCache.Page(etag, modified, hash, links, stems, words);
 		}
 	}
 }
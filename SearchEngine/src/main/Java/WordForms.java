@@ -0,0 +1,97 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author geoaldana
+ * This is a class that stores the words as they were in the text before they
+ * were stemmed, by their stem, so suggestions can show words that were read
+ * instead of stems. A stem only has a few, so they are kept in an array that is
+ * searched without creating a string for the word. Arrays are replaced and
+ * never changed, so they can be shared between stores.
+ */
+public class WordForms {
+
+	/**
+	 * HashMap that stores the words by their stem
+	 */
+	private final HashMap<String, String[]> forms;
+
+	/**
+	 * Initializes an empty store.
+	 */
+	public WordForms() {
+		this.forms = new HashMap<>();
+	}
+
+	/**
+	 * Records a word as it was in the text before it was stemmed, if it was not
+	 * recorded for the stem yet.
+	 *
+	 * @param word the stem
+	 * @param form the word the stem was stemmed from
+	 */
+	public void add(String word, CharSequence form) {
+		String[] words = forms.get(word);
+		if (words != null) {
+			for (String seen : words) {
+				if (seen.contentEquals(form)) {
+					return;
+				}
+			}
+		}
+		// a word that is its own stem shares the string of the stem
+		String added = word.contentEquals(form) ? word : form.toString();
+		if (words == null) {
+			forms.put(word, new String[] { added });
+		}
+		else {
+			words = Arrays.copyOf(words, words.length + 1);
+			words[words.length - 1] = added;
+			forms.put(word, words);
+		}
+	}
+
+	/**
+	 * Records the words of another store.
+	 *
+	 * @param other the store whose words are recorded
+	 */
+	public void addAll(WordForms other) {
+		for (Map.Entry<String, String[]> entry : other.forms.entrySet()) {
+			if (!forms.containsKey(entry.getKey())) {
+				forms.put(entry.getKey(), entry.getValue());
+			}
+			else {
+				for (String form : entry.getValue()) {
+					add(entry.getKey(), form);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param word the stem
+	 * @return the words the stem was stemmed from, or {@code null} if none were
+	 *         recorded
+	 */
+	public String[] get(String word) {
+		return forms.get(word);
+	}
+
+	/**
+	 * Forgets the words of a stem.
+	 *
+	 * @param word the stem
+	 */
+	public void remove(String word) {
+		forms.remove(word);
+	}
+
+	/**
+	 * Forgets every word.
+	 */
+	public void clear() {
+		forms.clear();
+	}
+}
@@ -30,6 +30,9 @@ public class WorkQueue {
 	 */
 	private int pending;
 
+	/** The most work requests waiting in the queue that {@link #offer(Runnable)} accepts. */
+	private final int capacity;
+
 	/**
 	 * Starts a work queue with the default number of threads.
 	 *
@@ -45,6 +48,19 @@ public class WorkQueue {
 	 * @param threads number of worker threads; should be greater than 1
 	 */
 	public WorkQueue(int threads) {
+		this(threads, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Starts a work queue with the specified number of threads and a limit on the
+	 * work requests that may wait for a thread.
+	 *
+	 * @param threads number of worker threads; should be greater than 1
+	 * @param capacity the most work requests waiting in the queue
+	 * @see #offer(Runnable)
+	 */
+	public WorkQueue(int threads, int capacity) {
+		this.capacity = Math.max(0, capacity);
 		this.queue = new LinkedList<Runnable>();
 		this.workers = new PoolWorker[threads];
 
@@ -72,6 +88,36 @@ public class WorkQueue {
 		}
 	}
 
+	/**
+	 * Adds a work request to the queue unless the queue is full, so callers can
+	 * turn work away instead of waiting behind it.
+	 *
+	 * @param r work request (in the form of a {@link Runnable} object)
+	 * @return whether the work request was added
+	 */
+	public boolean offer(Runnable r) {
+		synchronized (queue) {
+			if (shutdown || queue.size() >= capacity) {
+				return false;
+			}
+			incrementPending();
+			queue.addLast(r);
+			queue.notifyAll();
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of work requests waiting for a thread.
+	 *
+	 * @return number of waiting work requests
+	 */
+	public int queued() {
+		synchronized (queue) {
+			return queue.size();
+		}
+	}
+
 	/**
 	 * Similar to {@link Thread#join()}, waits for all the work to be finished
 	 * and the worker threads to terminate. The work queue cannot be reused after
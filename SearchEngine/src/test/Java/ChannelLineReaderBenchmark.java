@@ -0,0 +1,166 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import opennlp.tools.stemmer.Stemmer;
+
+/**
+ * @author geoaldana
+ * Measures how long a file takes to read line by line with
+ * {@link BufferedReader} and with {@link ChannelLineReader} at a few block
+ * sizes, and to read into an index the way the builders did before and do now.
+ * A text file of about 70 MB is generated first if the file does not exist.
+ * With {@code -cold} the page cache is dropped before every read, so the file
+ * comes from the disk, which needs root on Linux; otherwise every read after
+ * the first comes from memory. Run with the test classes and the dependencies
+ * on the class path:
+ *
+ * <pre>
+ * java ChannelLineReaderBenchmark [file] [-cold]
+ * </pre>
+ */
+public class ChannelLineReaderBenchmark {
+
+	/**
+	 * Block sizes of the channel line reader that are measured.
+	 */
+	private static final int[] SIZES = { 1 << 13, ChannelLineReader.DEFAULT_SIZE, 1 << 20 };
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args the file to read and {@code -cold} to drop the page cache
+	 * @throws IOException if an IO error occurs
+	 * @throws InterruptedException if interrupted while syncing the disk
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Path path = Path.of(args.length > 0 && !args[0].equals("-cold") ? args[0] : "benchmark.txt");
+		boolean cold = args.length > 0 && args[args.length - 1].equals("-cold");
+		if (Files.notExists(path)) {
+			generate(path);
+		}
+		// dirty pages are not dropped, so the file is written out first
+		new ProcessBuilder("sync").inheritIO().start().waitFor();
+		System.out.println(path + ": " + Files.size(path) + " bytes, " + (cold ? "cold" : "warm") + " page cache");
+
+		for (int round = 0; round < 3; round++) {
+			drop(cold);
+			long start = System.nanoTime();
+			long chars = buffered(path);
+			System.out.printf("lines BufferedReader          %5d ms%n", (System.nanoTime() - start) / 1000000);
+			for (int size : SIZES) {
+				drop(cold);
+				start = System.nanoTime();
+				if (channel(path, size) != chars) {
+					throw new IllegalStateException("The readers do not read the same characters");
+				}
+				System.out.printf("lines ChannelLineReader %7d %5d ms%n", size, (System.nanoTime() - start) / 1000000);
+			}
+			drop(cold);
+			start = System.nanoTime();
+			index(path);
+			System.out.printf("index BufferedReader          %5d ms%n", (System.nanoTime() - start) / 1000000);
+			drop(cold);
+			start = System.nanoTime();
+			InvertedIndexBuilder.read(path, new InvertedIndex());
+			System.out.printf("index ChannelLineReader       %5d ms%n", (System.nanoTime() - start) / 1000000);
+		}
+	}
+
+	/**
+	 * Drops the page cache, if the reads are cold.
+	 *
+	 * @param cold whether the reads are cold
+	 * @throws IOException if the page cache can not be dropped
+	 */
+	private static void drop(boolean cold) throws IOException {
+		if (cold) {
+			Files.writeString(Path.of("/proc/sys/vm/drop_caches"), "3");
+		}
+	}
+
+	/**
+	 * Reads the lines of a file with a buffered reader.
+	 *
+	 * @param path the file
+	 * @return the number of characters of the lines
+	 * @throws IOException if an IO error occurs
+	 */
+	private static long buffered(Path path) throws IOException {
+		long chars = 0;
+		try (BufferedReader reader = Files.newBufferedReader(path)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				chars += line.length();
+			}
+		}
+		return chars;
+	}
+
+	/**
+	 * Reads the lines of a file with a channel line reader.
+	 *
+	 * @param path the file
+	 * @param size the number of bytes read at a time
+	 * @return the number of characters of the lines
+	 * @throws IOException if an IO error occurs
+	 */
+	private static long channel(Path path, int size) throws IOException {
+		long chars = 0;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ChannelLineReader reader = new ChannelLineReader(channel, 0, channel.size(), size);
+			CharSequence line;
+			while ((line = reader.readLine()) != null) {
+				chars += line.length();
+			}
+		}
+		return chars;
+	}
+
+	/**
+	 * Reads a file into an index with a buffered reader, the way the builders did
+	 * before they read through a channel.
+	 *
+	 * @param path the file
+	 * @throws IOException if an IO error occurs
+	 */
+	private static void index(Path path) throws IOException {
+		InvertedIndex index = new InvertedIndex();
+		String location = path.toString();
+		Stemmer stemmer = CachedStemmer.get();
+		TextTokenizer tokenizer = new TextTokenizer();
+		int i = 1;
+		try (BufferedReader reader = Files.newBufferedReader(path)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				tokenizer.reset(line);
+				while (tokenizer.next()) {
+					index.add(stemmer.stem(tokenizer.token()).toString(), location, i++);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes a text file of random words.
+	 *
+	 * @param path the file
+	 * @throws IOException if an IO error occurs
+	 */
+	private static void generate(Path path) throws IOException {
+		String[] words = { "the", "search", "engine", "indexes", "running", "files", "Quickly", "café",
+				"naïve", "don't", "12", "words", "and", "of", "a", "text" };
+		Random random = new Random(212);
+		try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+			for (int i = 0; i < 12000000; i++) {
+				writer.write(words[random.nextInt(words.length)]);
+				writer.write(random.nextInt(12) == 0 ? "\n" : " ");
+			}
+		}
+	}
+}
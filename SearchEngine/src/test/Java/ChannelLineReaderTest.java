@@ -0,0 +1,169 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author geoaldana
+ * Tests that {@link ChannelLineReader} reads the same lines as
+ * {@link BufferedReader#readLine()} from {@link Files#newBufferedReader(Path)},
+ * and fails the same way on bytes that are not valid UTF-8. The files are
+ * random text with line feeds, carriage returns and both together, characters
+ * of two, three and four bytes, and sometimes a broken or cut off character,
+ * read with block sizes small enough that lines, line breaks and characters
+ * are split between blocks.
+ */
+public class ChannelLineReaderTest {
+
+	/**
+	 * Number of random files.
+	 */
+	private static final int FILES = 20000;
+
+	/**
+	 * Pieces of the random files.
+	 */
+	private static final String[] PIECES = {
+			"a", "word", " ", "\n", "\r", "\r\n", "\n\r", "\r\r", "\n\n", "caf\u00e9", "\u20ac", "\ud83d\ude00",
+			"\u2028", "na\u00efve", "0123456789" };
+
+	/**
+	 * directory the random files are written to
+	 */
+	@TempDir
+	Path directory;
+
+	/**
+	 * Returns the lines of a file read with a buffered reader, followed by the
+	 * name of the exception if it failed.
+	 *
+	 * @param path the file
+	 * @return the lines
+	 */
+	private static List<String> buffered(Path path) {
+		ArrayList<String> lines = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(path)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} catch (IOException e) {
+			lines.add(e.getClass().getName());
+		}
+		return lines;
+	}
+
+	/**
+	 * Returns the lines of a file read with a channel line reader, followed by
+	 * the name of the exception if it failed.
+	 *
+	 * @param path the file
+	 * @param size the number of bytes read at a time
+	 * @return the lines
+	 */
+	private static List<String> channel(Path path, int size) {
+		ArrayList<String> lines = new ArrayList<>();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ChannelLineReader reader = new ChannelLineReader(channel, 0, channel.size(), size);
+			CharSequence line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line.toString());
+			}
+		} catch (IOException e) {
+			lines.add(e.getClass().getName());
+		}
+		return lines;
+	}
+
+	/**
+	 * Returns the lines of bytes in memory read with a channel line reader,
+	 * followed by the name of the exception if it failed.
+	 *
+	 * @param bytes the bytes
+	 * @return the lines
+	 */
+	private static List<String> memory(byte[] bytes) {
+		ArrayList<String> lines = new ArrayList<>();
+		try {
+			ChannelLineReader reader = new ChannelLineReader(bytes, bytes.length);
+			CharSequence line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line.toString());
+			}
+		} catch (IOException e) {
+			lines.add(e.getClass().getName());
+		}
+		return lines;
+	}
+
+	/**
+	 * Tests random files against a buffered reader.
+	 *
+	 * @throws IOException if a file can not be written
+	 */
+	@Test
+	public void testSameLines() throws IOException {
+		Random random = new Random(212);
+		Path path = directory.resolve("lines.txt");
+		for (int i = 0; i < FILES; i++) {
+			StringBuilder builder = new StringBuilder();
+			int pieces = random.nextInt(40);
+			for (int j = 0; j < pieces; j++) {
+				builder.append(PIECES[random.nextInt(PIECES.length)]);
+			}
+			byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+			if (bytes.length > 0 && random.nextInt(8) == 0) {
+				// a byte that can not start a character, or a character that is cut off
+				if (random.nextBoolean()) {
+					bytes[random.nextInt(bytes.length)] = (byte) 0xFF;
+				}
+				else {
+					bytes = Arrays.copyOf(bytes, bytes.length + 1 + random.nextInt(3));
+					bytes[bytes.length - 1] = (byte) 0xF0;
+				}
+			}
+			Files.write(path, bytes);
+
+			List<String> expected = buffered(path);
+			boolean failed = !expected.isEmpty() && expected.get(expected.size() - 1).endsWith("Exception");
+			int size = 16 + random.nextInt(20);
+			List<String> actual = channel(path, size);
+			if (failed) {
+				// the lines read before the error depend on how much each reader buffers
+				String error = expected.get(expected.size() - 1);
+				assertEquals(error, actual.get(actual.size() - 1), "block size " + size);
+				List<String> read = memory(bytes);
+				assertEquals(error, read.get(read.size() - 1));
+			}
+			else {
+				assertEquals(expected, actual, "block size " + size);
+				assertEquals(expected, memory(bytes));
+			}
+		}
+	}
+
+	/**
+	 * Tests a line longer than the block, which grows the buffer.
+	 *
+	 * @throws IOException if the file can not be written
+	 */
+	@Test
+	public void testLongLine() throws IOException {
+		Path path = directory.resolve("long.txt");
+		Files.writeString(path, "x".repeat(100000) + "\r\ny\r", StandardCharsets.UTF_8);
+		assertEquals(buffered(path), channel(path, 16));
+		assertEquals(List.of("x".repeat(100000), "y"), channel(path, 16));
+	}
+}
@@ -0,0 +1,115 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * @author geoaldana
+ * Tests that {@link EnglishStemmer} returns the same stems as
+ * {@link SnowballStemmer} with {@link SnowballStemmer.ALGORITHM#ENGLISH}. The
+ * words are half a million made up words built to reach every step of the
+ * algorithm, and every word parsed from the files under the directory given by
+ * the {@code stemmer.words} property, if there is one.
+ */
+public class EnglishStemmerTest {
+
+	/**
+	 * Number of made up words.
+	 */
+	private static final int WORDS = 500000;
+
+	/**
+	 * Letters of the made up words, the most common first.
+	 */
+	private static final String LETTERS = "etaoinshrdlucmfywgpbvkxqjz\u00e9\u00fc'";
+
+	/**
+	 * Suffixes added to the made up words, which are the ones the steps look for.
+	 */
+	private static final String[] SUFFIXES = {
+			"", "s", "es", "ies", "ied", "us", "ss", "ed", "eed", "eedly", "ing", "ingly", "edly", "ly", "y", "yy",
+			"e", "ll", "li", "bli", "ogi", "alli", "ousli", "entli", "fulli", "lessli", "ness", "ful", "ation",
+			"ational", "tional", "izer", "ization", "iveness", "fulness", "ousness", "biliti", "iviti", "aliti",
+			"alize", "icate", "iciti", "ative", "ical", "ement", "ment", "ance", "ence", "able", "ible", "ism",
+			"ate", "iti", "ous", "ive", "ize", "ion", "sion", "tion", "al", "er", "ic", "'s", "'s'" };
+
+	/**
+	 * Returns the words to stem, sorted and without repeats.
+	 *
+	 * @return the words to stem
+	 * @throws IOException if the words can not be read
+	 */
+	static List<String> words() throws IOException {
+		TreeSet<String> words = new TreeSet<>();
+		// the most common letters come up most often, so the words look like words
+		Random random = new Random(212);
+		for (int i = 0; i < WORDS; i++) {
+			StringBuilder word = new StringBuilder();
+			int letters = 1 + random.nextInt(9);
+			for (int j = 0; j < letters; j++) {
+				double x = random.nextDouble();
+				word.append(LETTERS.charAt((int) (x * x * LETTERS.length())));
+			}
+			word.append(SUFFIXES[random.nextInt(SUFFIXES.length)]);
+			words.add(word.toString());
+		}
+
+		String directory = System.getProperty("stemmer.words");
+		if (directory != null) {
+			try (Stream<Path> paths = Files.walk(Path.of(directory))) {
+				for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+					String text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+					for (String word : TextParser.parse(text)) {
+						words.add(word);
+					}
+				}
+			}
+		}
+		return new ArrayList<>(words);
+	}
+
+	/**
+	 * Tests that every word has the same stem.
+	 *
+	 * @throws IOException if the words can not be read
+	 */
+	@Test
+	public void testSameStems() throws IOException {
+		SnowballStemmer snowball = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
+		EnglishStemmer english = new EnglishStemmer();
+		List<String> words = words();
+		assertTrue(words.size() > WORDS / 2);
+		for (String word : words) {
+			assertEquals(snowball.stem(word).toString(), english.stem(word), word);
+		}
+	}
+
+	/**
+	 * Tests that stemming part of an array gives the same stem and leaves the
+	 * rest of the array alone.
+	 */
+	@Test
+	public void testStemInPlace() {
+		SnowballStemmer snowball = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
+		EnglishStemmer english = new EnglishStemmer();
+		for (String word : List.of("generously", "happiness", "skies", "agreed", "communication", "y")) {
+			char[] array = ("[" + word + "]").toCharArray();
+			int length = english.stem(array, 1, word.length());
+			assertEquals(snowball.stem(word).toString(), new String(array, 1, length), word);
+			assertEquals('[', array[0]);
+			assertEquals(']', array[array.length - 1]);
+		}
+	}
+}
@@ -0,0 +1,112 @@
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+
+/**
+ * @author geoaldana
+ * Measures how long {@link RegexHtmlCleaner} and {@link HtmlCleaner} take to
+ * clean generated pages of 64 KB, 256 KB and 1 MB with paragraphs, anchors,
+ * comments, scripts, svg and noscript elements, and how long the crawler takes
+ * to get the text and the links of a page, with the regular expressions and
+ * {@link LinkParser} before and with a single scan now. Every cleaner runs a
+ * few times to warm up before it is measured. Run with the test classes and
+ * the dependencies on the class path:
+ *
+ * <pre>
+ * java HtmlCleanerBenchmark
+ * </pre>
+ */
+public class HtmlCleanerBenchmark {
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args unused
+	 * @throws MalformedURLException if the base url is not valid
+	 */
+	public static void main(String[] args) throws MalformedURLException {
+		for (int size : new int[] { 64, 256, 1024 }) {
+			String html = page(size);
+			if (!RegexHtmlCleaner.stripHtml(html).equals(HtmlCleaner.stripHtml(html))) {
+				throw new IllegalStateException("The cleaners do not agree on the page of " + size + " KB");
+			}
+			int rounds = size >= 1024 ? 3 : 10;
+			for (int i = 0; i < 2; i++) {
+				RegexHtmlCleaner.stripHtml(html);
+				HtmlCleaner.stripHtml(html);
+			}
+			long start = System.nanoTime();
+			for (int i = 0; i < rounds; i++) {
+				RegexHtmlCleaner.stripHtml(html);
+			}
+			double regex = (System.nanoTime() - start) / 1e6 / rounds;
+			start = System.nanoTime();
+			for (int i = 0; i < rounds * 20; i++) {
+				HtmlCleaner.stripHtml(html);
+			}
+			double scan = (System.nanoTime() - start) / 1e6 / (rounds * 20);
+			System.out.printf("%5d KB: regex %.1f ms, scan %.2f ms, %.0fx%n", size, regex, scan, regex / scan);
+		}
+
+		URL base = new URL("https://example.com/");
+		String html = page(256);
+		for (int i = 0; i < 3; i++) {
+			crawl(html, base, true);
+			crawl(html, base, false);
+		}
+		int rounds = 5;
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			crawl(html, base, true);
+		}
+		double before = (System.nanoTime() - start) / 1e6 / rounds;
+		start = System.nanoTime();
+		for (int i = 0; i < rounds * 10; i++) {
+			crawl(html, base, false);
+		}
+		double after = (System.nanoTime() - start) / 1e6 / (rounds * 10);
+		System.out.printf("  256 KB page with links: regex and LinkParser %.1f ms, single scan %.2f ms%n", before,
+				after);
+	}
+
+	/**
+	 * Returns the text and links of a page the way the crawler gets them.
+	 *
+	 * @param html the page
+	 * @param base the url of the page
+	 * @param regex whether the regular expressions and {@link LinkParser} are used
+	 * @return the text of the page
+	 */
+	private static String crawl(String html, URL base, boolean regex) {
+		if (regex) {
+			LinkParser.getValidLinks(base, RegexHtmlCleaner.stripBlockElements(html));
+			return RegexHtmlCleaner.stripHtml(html);
+		}
+		return HtmlCleaner.stripHtml(html, base, new ArrayList<>());
+	}
+
+	/**
+	 * Generates a page.
+	 *
+	 * @param size the size of the page in KB
+	 * @return the html of the page
+	 */
+	private static String page(int size) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("<html><head><title>t</title><style>\nbody{}\n</style></head><body>\n");
+		for (int i = 1; builder.length() < size * 1024; i++) {
+			builder.append("<div class=\"c\"><p>Lorem ipsum &amp; dolor sit amet, <a href=\"/x/");
+			builder.append(i).append("\">link</a> consectetur</p>\n");
+			if (i % 10 == 0) {
+				builder.append("<!-- comment ").append(i).append(" -->\n<script>\nvar x = ");
+				builder.append(i).append(";\n</script>\n");
+			}
+			if (i % 25 == 0) {
+				builder.append("<svg><path d=\"M0\"/></svg><noscript>n</noscript>\n");
+			}
+			builder.append("</div>\n");
+		}
+		builder.append("</body></html>");
+		return builder.toString();
+	}
+}
@@ -0,0 +1,177 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author geoaldana
+ * Tests that {@link HtmlCleaner} cleans html the same way as the regular
+ * expressions of {@link RegexHtmlCleaner}. The html is random fragments built
+ * from the tags, comments, entities and line terminators the cleaner looks for.
+ * Fragments where removing a comment joins the text around it into a new
+ * comment are made often by fragments of mostly comments.
+ * The links found while cleaning are checked against {@link LinkParser}.
+ */
+public class HtmlCleanerTest {
+
+	/**
+	 * Number of random fragments.
+	 */
+	private static final int FRAGMENTS = 300000;
+
+	/**
+	 * Pieces of the random fragments.
+	 */
+	private static final String[] PIECES = {
+			"<head>", "</head>", "<header>", "<HEAD >", "<style>", "</style>", "<script>", "</script>",
+			"< script type='x'>", "</ SCRIPT >", "<noscript>", "</noscript>", "<iframe>", "</iframe>", "<svg>",
+			"</svg>", "<!--", "-->", "<p>", "</p>", "<", ">", "&", ";", "&amp;", "&nbsp;", " ", "\n", "\r", "\r\n",
+			"\u2028", "text", "a", "<!-- c -->", "<!--\n-->", "/", "-", "!" };
+
+	/**
+	 * Pieces of the random fragments with links, which are anchors with tags,
+	 * quotes and comments in and around their links.
+	 */
+	private static final String[] LINK_PIECES = {
+			"<a href=\"", "<A HREF='", "<a class=\"x\" href=\"", "<p title=\"<a href='", "\"", "'", ">", "<b>",
+			"</a>", "c.html", "/d?e=f#g", "<!-- c -->", "<script>", "</script>", " ", "\n", "text" };
+
+	/**
+	 * Pieces of the random fragments that join comments, which are comments, the
+	 * start and end of comments, and the text that can join into them.
+	 */
+	private static final String[] COMMENT_PIECES = {
+			"<!-- c -->", "<!--\n-->", "<!--", "-->", "<", "!", "-", "--", "<!", "<script>", "</script>", ">",
+			"text", " ", "\n" };
+
+	/**
+	 * Regular expression the old passes use to find comments.
+	 */
+	private static final Pattern COMMENT = Pattern.compile("(?s)(?i)<!--.*?-->");
+
+	/**
+	 * Returns whether removing the comments of the html one at a time, searching
+	 * again from the start every time like {@link RegexHtmlCleaner} does, removes
+	 * other text than removing the comments that are in the html.
+	 *
+	 * @param html the html
+	 * @return whether a removed comment joins the text around it into a new one
+	 */
+	private static boolean joins(String html) {
+		String once = COMMENT.matcher(html).replaceAll(match -> match.group().contains("\n") ? " " : "");
+		return !once.equals(RegexHtmlCleaner.stripComments(html));
+	}
+
+	/**
+	 * Tests random fragments against the regular expressions.
+	 */
+	@Test
+	public void testSameText() {
+		Random random = new Random(212);
+		for (int i = 0; i < FRAGMENTS; i++) {
+			StringBuilder builder = new StringBuilder();
+			int pieces = random.nextInt(25);
+			for (int j = 0; j < pieces; j++) {
+				builder.append(PIECES[random.nextInt(PIECES.length)]);
+			}
+			String html = builder.toString();
+			assertEquals(RegexHtmlCleaner.stripHtml(html), HtmlCleaner.stripHtml(html), html);
+			assertEquals(RegexHtmlCleaner.stripBlockElements(html), HtmlCleaner.stripBlockElements(html), html);
+			assertEquals(RegexHtmlCleaner.stripComments(html), HtmlCleaner.stripComments(html), html);
+			assertEquals(RegexHtmlCleaner.stripElement(html, "script"), HtmlCleaner.stripElement(html, "script"),
+					html);
+		}
+	}
+
+	/**
+	 * Tests random fragments made mostly of comments and the pieces of comments,
+	 * so removing a comment often joins the text around it into a new comment.
+	 */
+	@Test
+	public void testJoinedComments() {
+		Random random = new Random(212);
+		int joined = 0;
+		for (int i = 0; i < FRAGMENTS / 10; i++) {
+			StringBuilder builder = new StringBuilder();
+			int pieces = random.nextInt(15);
+			for (int j = 0; j < pieces; j++) {
+				builder.append(COMMENT_PIECES[random.nextInt(COMMENT_PIECES.length)]);
+			}
+			String html = builder.toString();
+			if (joins(html)) {
+				joined++;
+			}
+			assertEquals(RegexHtmlCleaner.stripHtml(html), HtmlCleaner.stripHtml(html), html);
+			assertEquals(RegexHtmlCleaner.stripBlockElements(html), HtmlCleaner.stripBlockElements(html), html);
+			assertEquals(RegexHtmlCleaner.stripComments(html), HtmlCleaner.stripComments(html), html);
+		}
+		assertTrue(joined > 0, "no fragments joined comments");
+	}
+
+	/**
+	 * Tests the links of random fragments against {@link LinkParser}.
+	 *
+	 * @throws MalformedURLException if the base url is not valid
+	 */
+	@Test
+	public void testSameLinks() throws MalformedURLException {
+		URL base = new URL("https://example.com/a/");
+		Random random = new Random(212);
+		for (int i = 0; i < FRAGMENTS / 10; i++) {
+			StringBuilder builder = new StringBuilder();
+			int pieces = random.nextInt(20);
+			for (int j = 0; j < pieces; j++) {
+				builder.append(LINK_PIECES[random.nextInt(LINK_PIECES.length)]);
+			}
+			String html = builder.toString();
+			ArrayList<URL> links = new ArrayList<>();
+			assertEquals(RegexHtmlCleaner.stripHtml(html), HtmlCleaner.stripHtml(html, base, links), html);
+			assertEquals(LinkParser.getValidLinks(base, RegexHtmlCleaner.stripBlockElements(html)), links, html);
+		}
+	}
+
+	/**
+	 * Tests a link with a tag in it, which goes on past the end of the tag the
+	 * tag filter sees.
+	 *
+	 * @throws MalformedURLException if the base url is not valid
+	 */
+	@Test
+	public void testTagInLink() throws MalformedURLException {
+		URL base = new URL("https://example.com/a/");
+		ArrayList<URL> links = new ArrayList<>();
+		assertEquals("c.html\">x", HtmlCleaner.stripHtml("<a href=\"<b>c.html\">x</a>", base, links));
+		assertEquals(1, links.size());
+		assertEquals("https://example.com/a/%3Cb%3Ec.html", links.get(0).toString());
+	}
+
+	/**
+	 * Tests html where removing a comment joins the text around it into a new
+	 * comment, which the regular expressions remove in place of the last comment
+	 * of the html.
+	 *
+	 * @throws MalformedURLException if the base url is not valid
+	 */
+	@Test
+	public void testJoinedComment() throws MalformedURLException {
+		String html = "<!<!-- x -->-- y --><!-- z -->";
+		assertTrue(joins(html));
+		assertEquals("<!-- z -->", RegexHtmlCleaner.stripComments(html));
+		assertEquals("<!-- z -->", HtmlCleaner.stripComments(html));
+		assertEquals(RegexHtmlCleaner.stripHtml(html), HtmlCleaner.stripHtml(html));
+
+		// the comment of the html with the same number decides if a space is left
+		html = "<!<!-- x -->-- y <a href='b.html'> --><!--\n-->z";
+		URL base = new URL("https://example.com/a/");
+		ArrayList<URL> links = new ArrayList<>();
+		assertEquals(RegexHtmlCleaner.stripComments(html), HtmlCleaner.stripComments(html));
+		assertEquals(RegexHtmlCleaner.stripHtml(html), HtmlCleaner.stripHtml(html, base, links));
+		assertEquals(LinkParser.getValidLinks(base, RegexHtmlCleaner.stripBlockElements(html)), links);
+	}
+}
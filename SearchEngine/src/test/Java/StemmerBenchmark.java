@@ -0,0 +1,108 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * @author geoaldana
+ * Measures how long {@link SnowballStemmer}, {@link EnglishStemmer} and
+ * {@link CachedStemmer} take to stem the words of {@link EnglishStemmerTest},
+ * and how many bytes they allocate, first with every word once and then with
+ * the words repeated like in a text. Every stemmer stems the words a few times
+ * to warm up before it is measured. Run with the test classes and the
+ * dependencies on the class path, adding {@code -Dstemmer.words=<directory>}
+ * to stem the words of real documents too:
+ *
+ * <pre>
+ * java StemmerBenchmark [rounds]
+ * </pre>
+ */
+public class StemmerBenchmark {
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args the number of measured rounds, 5 by default
+	 * @throws IOException if the words can not be read
+	 */
+	public static void main(String[] args) throws IOException {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		List<String> words = EnglishStemmerTest.words();
+
+		// in a text a few words are most of the words, which is what the cache is for
+		Random random = new Random(212);
+		ArrayList<String> text = new ArrayList<>();
+		for (int i = 0; i < words.size(); i++) {
+			double x = random.nextDouble();
+			text.add(words.get((int) (x * x * x * x * words.size())));
+		}
+
+		System.out.println(words.size() + " different words, " + rounds + " rounds");
+		measure(words, rounds);
+		System.out.println(text.size() + " words of text, " + rounds + " rounds");
+		measure(text, rounds);
+	}
+
+	/**
+	 * Measures every stemmer.
+	 *
+	 * @param words the words to stem
+	 * @param rounds the number of measured rounds
+	 */
+	private static void measure(List<String> words, int rounds) {
+		measure("snowball", new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH), words, rounds);
+		measure("english", new EnglishStemmer(), words, rounds);
+		measure("cached snowball", new CachedStemmer(new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH),
+				CachedStemmer.DEFAULT_SIZE), words, rounds);
+		measure("cached english", new CachedStemmer(new EnglishStemmer(), CachedStemmer.DEFAULT_SIZE), words, rounds);
+	}
+
+	/**
+	 * Stems the words and prints the best time and the bytes allocated per word.
+	 *
+	 * @param name the name of the stemmer
+	 * @param stemmer the stemmer
+	 * @param words the words to stem
+	 * @param rounds the number of measured rounds
+	 */
+	private static void measure(String name, Stemmer stemmer, List<String> words, int rounds) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long id = Thread.currentThread().getId();
+		long length = 0;
+		for (int i = 0; i < 3; i++) {
+			length += stem(stemmer, words);
+		}
+
+		long best = Long.MAX_VALUE;
+		long bytes = threads.getThreadAllocatedBytes(id);
+		for (int i = 0; i < rounds; i++) {
+			long start = System.nanoTime();
+			length += stem(stemmer, words);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		bytes = threads.getThreadAllocatedBytes(id) - bytes;
+
+		System.out.println(String.format(Locale.ROOT, "%-16s %8.1f ns/word %8.1f bytes/word (%d)", name,
+				(double) best / words.size(), (double) bytes / rounds / words.size(), length));
+	}
+
+	/**
+	 * Stems every word once.
+	 *
+	 * @param stemmer the stemmer
+	 * @param words the words to stem
+	 * @return the total length of the stems, so the work is not optimized away
+	 */
+	private static long stem(Stemmer stemmer, List<String> words) {
+		long length = 0;
+		for (String word : words) {
+			length += stemmer.stem(word).length();
+		}
+		return length;
+	}
+}
@@ -0,0 +1,203 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author geoaldana
+ * Tests that the suggestions of an index are the words that were read and not
+ * their stems, one for every stem, and that they do not run out while the word
+ * being typed is longer than its stem. An index published again after only
+ * some of its words changed is checked against publishing it in full.
+ */
+public class SuggestionTrieTest {
+
+	/**
+	 * directory the files read by the builder are written to
+	 */
+	@TempDir
+	Path directory;
+
+	/**
+	 * Adds the words to a location of an index, stemmed with the stemmer of the
+	 * builders.
+	 *
+	 * @param index the index
+	 * @param location the location
+	 * @param words the words
+	 */
+	private static void read(InvertedIndex index, String location, String... words) {
+		int position = 1;
+		for (String word : words) {
+			String stem = CachedStemmer.get().stem(word);
+			index.add(stem, location, position++);
+			index.addForm(stem, word);
+		}
+	}
+
+	/**
+	 * Tests that the words are suggested in place of their stems.
+	 */
+	@Test
+	public void testWordsNotStems() {
+		InvertedIndex index = new InvertedIndex();
+		read(index, "a", "happiness", "happy", "apples", "happen");
+		read(index, "b", "happily", "happen", "apple");
+		index.publish();
+
+		// "happy" and "happiness" have the same stem, "happily" has another
+		assertEquals(List.of("happen", "happily", "happy"), index.suggest("happ", 10));
+		assertEquals(List.of("happily", "happiness"), index.suggest("happi", 10));
+		assertEquals(List.of("happiness"), index.suggest("happine", 10));
+		assertEquals(List.of("apple"), index.suggest("appl", 10));
+		assertEquals(List.of("apples"), index.suggest("apples", 10));
+	}
+
+	/**
+	 * Tests that the words of locations added after the index was published are
+	 * suggested, like the pages of a crawl.
+	 */
+	@Test
+	public void testRefresh() {
+		InvertedIndex index = new InvertedIndex();
+		read(index, "a", "running");
+		index.publish();
+		read(index, "b", "runner", "runs");
+		index.refresh(List.of(CachedStemmer.get().stem("runner"), CachedStemmer.get().stem("runs")));
+
+		// "running" and "runs" have the same stem, which is now in two locations
+		assertEquals(List.of("runs", "runner"), index.suggest("run", 10));
+		assertEquals(List.of("running"), index.suggest("runni", 10));
+		assertEquals(List.of("runner"), index.suggest("runne", 10));
+	}
+
+	/**
+	 * Tests that the words of local indexes merged into a thread safe index, like
+	 * the files of the multithreaded builder, are suggested.
+	 */
+	@Test
+	public void testMerge() {
+		ThreadSafeInvertedIndex index = new ThreadSafeInvertedIndex();
+		InvertedIndex first = new InvertedIndex();
+		read(first, "a", "happiness");
+		InvertedIndex second = new InvertedIndex();
+		read(second, "b", "happy");
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			index.merge(first);
+			index.merge(second);
+			index.publish();
+		});
+
+		assertEquals(List.of("happy"), index.suggest("happ", 10));
+		assertEquals(List.of("happiness"), index.suggest("happin", 10));
+	}
+
+	/**
+	 * Tests that a stem without the words it was stemmed from, like one read from
+	 * a snapshot, is suggested as it is.
+	 */
+	@Test
+	public void testStemWithoutWords() {
+		InvertedIndex index = new InvertedIndex();
+		index.add("happi", "a", 1);
+		index.publish();
+
+		assertEquals(List.of("happi"), index.suggest("hap", 10));
+	}
+
+	/**
+	 * Tests that the builders only record the words that were read for an index
+	 * that records them, like one that is served.
+	 *
+	 * @throws IOException if the file can not be written or read
+	 */
+	@Test
+	public void testBuilderForms() throws IOException {
+		Path path = directory.resolve("happy.txt");
+		Files.writeString(path, "happiness happy happily happiness");
+
+		InvertedIndex index = new InvertedIndex();
+		InvertedIndexBuilder.read(path, index);
+		index.publish();
+		assertEquals(List.of("happi", "happili"), index.suggest("happ", 10));
+
+		ThreadSafeInvertedIndex served = new ThreadSafeInvertedIndex();
+		served.recordForms(true);
+		InvertedIndex local = served.local();
+		InvertedIndexBuilder.read(path, local);
+		served.merge(local);
+		served.publish();
+		assertEquals(List.of("happily", "happy"), served.suggest("happ", 10));
+	}
+
+	/**
+	 * Returns the suggestions and partial search results of every prefix of the
+	 * words, up to four letters.
+	 *
+	 * @param index the index
+	 * @param words the words
+	 * @return the suggestions and results
+	 */
+	private static List<String> published(InvertedIndex index, String[] words) {
+		ArrayList<String> published = new ArrayList<>();
+		for (String word : words) {
+			for (int length = 0; length <= Math.min(4, word.length()); length++) {
+				String prefix = word.substring(0, length);
+				published.add(prefix + " " + index.suggest(prefix, 10));
+				for (InvertedIndex.SearchResult result : index.partialSearch(List.of(prefix), null)) {
+					published.add(prefix + " " + result.getWhere() + " " + result.getCount());
+				}
+			}
+		}
+		return published;
+	}
+
+	/**
+	 * Tests that publishing the changes of random batches, which add, replace and
+	 * delete locations like a watched directory, gives the same suggestions and
+	 * partial search results as publishing the whole index.
+	 */
+	@Test
+	public void testPublishChanges() {
+		String[] words = { "a", "an", "and", "ant", "apple", "apples", "apply", "applied", "happy", "happiness",
+				"happily", "happen", "run", "runs", "running", "runner", "ran" };
+		Random random = new Random(212);
+		// the same batches go to an index published in full every time
+		ThreadSafeInvertedIndex index = new ThreadSafeInvertedIndex();
+		ThreadSafeInvertedIndex full = new ThreadSafeInvertedIndex();
+		index.publish();
+		full.publish();
+		for (int batch = 0; batch < 300; batch++) {
+			InvertedIndex local = new InvertedIndex();
+			InvertedIndex fullLocal = new InvertedIndex();
+			for (int i = random.nextInt(4); i > 0; i--) {
+				String location = "file" + random.nextInt(12);
+				index.delete(location);
+				full.delete(location);
+				if (random.nextBoolean()) {
+					String[] read = new String[1 + random.nextInt(6)];
+					for (int j = 0; j < read.length; j++) {
+						read[j] = words[random.nextInt(words.length)];
+					}
+					read(local, location, read);
+					read(fullLocal, location, read);
+				}
+			}
+			index.merge(local);
+			full.merge(fullLocal);
+			index.publishChanges();
+			full.publish();
+			assertEquals(published(full, words), published(index, words), "batch " + batch);
+		}
+	}
+}
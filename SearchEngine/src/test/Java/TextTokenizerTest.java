@@ -0,0 +1,112 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author geoaldana
+ * Tests that {@link TextTokenizer} splits text into the same words as
+ * {@link TextParser#parse(String)}. The text is random fragments of ASCII
+ * words, digits and punctuation, letters with accents and combining marks,
+ * Greek sigmas, ligatures, letters outside of the basic plane, and the kinds
+ * of whitespace that {@link String#strip()} and the split pattern see
+ * differently. The fragments are also split in a locale where lowercasing
+ * depends on the letters around it.
+ */
+public class TextTokenizerTest {
+
+	/**
+	 * Number of random fragments.
+	 */
+	private static final int FRAGMENTS = 200000;
+
+	/**
+	 * Pieces of the random fragments.
+	 */
+	private static final String[] PIECES = {
+			"a", "B", "hello", "WORLD", "don't", "123", " ", "  ", "\t", "\n", "\r\n", "\u00a0", "\u0085", "\u2007",
+			"\u202f", "\u2028", "\u3000", "\u001c", "\u00e9", "\u00dcn\u00efc\u00f6d\u00e9", "\u039f\u0394\u039f\u03a3",
+			"\u03c3", "\u03a3", "\u0130", "I", "\u0131", "\u00df", "\ufb01", "\ud835\udc00", "-", "...", "caf\u00e9",
+			"cafe\u0301", "\u0301", "\u2126", "\u03a9", "x" };
+
+	/**
+	 * Returns the words of a text split by a tokenizer.
+	 *
+	 * @param tokenizer the tokenizer
+	 * @param text the text
+	 * @return the words
+	 */
+	private static List<String> tokens(TextTokenizer tokenizer, CharSequence text) {
+		ArrayList<String> words = new ArrayList<>();
+		tokenizer.reset(text);
+		while (tokenizer.next()) {
+			words.add(tokenizer.token().toString());
+		}
+		return words;
+	}
+
+	/**
+	 * Tests random fragments against {@link TextParser#parse(String)} with one
+	 * tokenizer that is reset for every fragment.
+	 *
+	 * @param seed the seed of the fragments
+	 */
+	private static void testFragments(long seed) {
+		Random random = new Random(seed);
+		TextTokenizer tokenizer = new TextTokenizer();
+		for (int i = 0; i < FRAGMENTS; i++) {
+			StringBuilder builder = new StringBuilder();
+			int pieces = random.nextInt(12);
+			for (int j = 0; j < pieces; j++) {
+				builder.append(PIECES[random.nextInt(PIECES.length)]);
+			}
+			String text = builder.toString();
+			List<String> expected = Arrays.asList(TextParser.parse(text));
+			assertEquals(expected, tokens(tokenizer, text), text);
+			// the text of a line reader is a reused buffer and not a string
+			assertEquals(expected, tokens(tokenizer, builder), text);
+		}
+	}
+
+	/**
+	 * Tests random fragments in the default locale.
+	 */
+	@Test
+	public void testSameWords() {
+		testFragments(212);
+	}
+
+	/**
+	 * Tests random fragments in Turkish, where the dotted and dotless i are
+	 * lowercased differently.
+	 */
+	@Test
+	public void testSameWordsTurkish() {
+		Locale locale = Locale.getDefault();
+		try {
+			Locale.setDefault(Locale.forLanguageTag("tr"));
+			testFragments(213);
+		} finally {
+			Locale.setDefault(locale);
+		}
+	}
+
+	/**
+	 * Tests text that only has whitespace, which has no words, and text that
+	 * starts with whitespace {@link String#strip()} keeps, which starts with an
+	 * empty word.
+	 */
+	@Test
+	public void testWhitespace() {
+		TextTokenizer tokenizer = new TextTokenizer();
+		assertEquals(List.of(), tokens(tokenizer, ""));
+		assertEquals(List.of(), tokens(tokenizer, " \t\n"));
+		assertEquals(Arrays.asList(TextParser.parse("\u00a0word")), tokens(tokenizer, "\u00a0word"));
+		assertEquals(Arrays.asList(TextParser.parse("1 2 word")), tokens(tokenizer, "1 2 word"));
+	}
+}